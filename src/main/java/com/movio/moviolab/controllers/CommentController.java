@@ -1,6 +1,8 @@
 package com.movio.moviolab.controllers;
 
+import com.movio.moviolab.dto.CommentBulkResultDto;
 import com.movio.moviolab.dto.CommentDto;
+import com.movio.moviolab.dto.CommentPageDto;
 import com.movio.moviolab.services.CommentService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -16,6 +18,7 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 @RestController
@@ -42,6 +45,19 @@ public class CommentController {
         return commentService.addComment(commentDto);
     }
 
+    @Operation(summary = "Массовое добавление комментариев",
+            description = "Проверяет и сохраняет пачку до 1000 комментариев, "
+                    + "возвращает результат по каждой строке")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Пачка обработана"),
+        @ApiResponse(responseCode = "400", description = "Пустая или слишком большая пачка")
+    })
+    @PostMapping("/bulk")
+    public ResponseEntity<CommentBulkResultDto> createComments(
+            @RequestBody List<CommentDto> commentDtos) {
+        return ResponseEntity.ok(commentService.addComments(commentDtos));
+    }
+
     @Operation(summary = "Вывод всех комментариев", description = "Возвращает все комментарии")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Комментарии найдены"),
@@ -53,6 +69,24 @@ public class CommentController {
         return ResponseEntity.ok(comments);
     }
 
+    @Operation(summary = "Поиск комментариев по словам",
+            description = "Возвращает комментарии, содержащие все слова запроса, лучшие первыми. "
+                    + "Следующая страница запрашивается по nextOffset")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Результаты поиска возвращены"),
+        @ApiResponse(responseCode = "400", description = "Пустой запрос или неверные offset, limit")
+    })
+    @GetMapping("/search")
+    public ResponseEntity<CommentPageDto> searchComments(
+            @RequestParam(name = "q") String query,
+            @RequestParam(name = "movieId", required = false) Integer movieId,
+            @RequestParam(name = "userId", required = false) Integer userId,
+            @RequestParam(name = "offset", defaultValue = "0") int offset,
+            @RequestParam(name = "limit", defaultValue = "20") int limit) {
+        return ResponseEntity.ok(commentService.searchComments(query, movieId, userId,
+                offset, limit));
+    }
+
     @Operation(summary = "Получение комментариев по ID",
             description = "Возвращает комментарий по его ID")
     @ApiResponses(value = {
@@ -0,0 +1,72 @@
+package com.movio.moviolab.controllers;
+
+import com.movio.moviolab.exceptions.BadRequestException;
+import com.movio.moviolab.services.ExportService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+@RestController
+@RequestMapping("/export")
+@Tag(name = "Export Controller", description = "Выгрузка каталога для аналитики и бэкапов")
+public class ExportController {
+
+    private static final MediaType GZIP = MediaType.parseMediaType("application/gzip");
+
+    private final ExportService exportService;
+
+    @Autowired
+    public ExportController(ExportService exportService) {
+        this.exportService = exportService;
+    }
+
+    @Operation(summary = "Выгрузка каталога",
+            description = "Потоково выгружает фильмы, пользователей, комментарии и связи "
+                    + "movie_user в формате NDJSON, сжатом gzip. Параметр since оставляет "
+                    + "только записи, изменённые начиная с указанного момента")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Выгрузка началась"),
+        @ApiResponse(responseCode = "400", description = "Неверный формат since")
+    })
+    @GetMapping
+    public ResponseEntity<StreamingResponseBody> exportCatalog(
+            @RequestParam(name = "since", required = false) String since) {
+        LocalDateTime changedSince = parseSince(since);
+        String filename = "catalog-" + (changedSince == null ? "full" : "since-"
+                + changedSince.toLocalDate()) + ".ndjson.gz";
+
+        StreamingResponseBody body = out -> exportService.exportCatalog(changedSince, out);
+
+        return ResponseEntity.ok()
+                .contentType(GZIP)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"" + filename + "\"")
+                .body(body);
+    }
+
+    private LocalDateTime parseSince(String since) {
+        if (since == null || since.isBlank()) {
+            return null;
+        }
+        try {
+            return since.length() == 10 ? LocalDate.parse(since).atStartOfDay()
+                    : LocalDateTime.parse(since);
+        } catch (DateTimeParseException e) {
+            throw new BadRequestException("Параметр since должен быть в формате "
+                    + "yyyy-MM-dd или yyyy-MM-ddTHH:mm:ss");
+        }
+    }
+}
@@ -1,34 +1,25 @@
 package com.movio.moviolab.controllers;
 
+import com.movio.moviolab.exceptions.BadRequestException;
+import com.movio.moviolab.services.LogFileService;
+import com.movio.moviolab.services.LogRangeService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
 import java.time.LocalDate;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.zip.GZIPInputStream;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 
 @RestController
@@ -36,125 +27,78 @@ import org.springframework.web.bind.annotation.RestController;
 @Tag(name = "Log Controller", description = "Позволяет получать логи на введенную дату")
 public class LogController {
 
-    private static final String LOG_FILE_PATH = "logs/application.log"; // основной лог файл
+    private final LogFileService logFileService;
+    private final LogRangeService logRangeService;
+
+    @Autowired
+    public LogController(LogFileService logFileService, LogRangeService logRangeService) {
+        this.logFileService = logFileService;
+        this.logRangeService = logRangeService;
+    }
 
     @Operation(summary = "Получение информации о логах",
             description = "Возвращает информацию о логах по дате")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Логи найдены"),
+        @ApiResponse(responseCode = "400", description = "Неверный формат даты"),
         @ApiResponse(responseCode = "404", description = "Логи за предложенную дату не найдены")
     })
     @GetMapping("/{date}")
-    public ResponseEntity<Resource> getLogsByDate(@PathVariable String date) throws IOException {
-        List<String> logs = new ArrayList<>();
-
-        if (isToday(date)) {
-            File logFile = new File(LOG_FILE_PATH);
-            if (logFile.exists()) {
-                logs.addAll(readLogsFromFile(logFile));
-            }
-        }
-
-        File archiveLogFile = getArchiveLogFile(date);
-        if (archiveLogFile.exists()) {
-            logs.addAll(readLogsFromGzip(archiveLogFile));
-        }
-
-        List<String> filteredLogs = filterLogsByDate(logs, date);
+    public ResponseEntity<StreamingResponseBody> getLogsByDate(@PathVariable String date)
+            throws IOException {
+        LocalDate day = logFileService.parseDate(date);
 
-        if (filteredLogs.isEmpty()) {
+        if (!logFileService.hasLines(day)) {
             return ResponseEntity.notFound().build();
         }
 
-        File tempLogFile = createTempLogFile(filteredLogs, date);
+        // Строки фильтруются и пишутся клиенту по мере чтения, без списков и временных файлов.
+        StreamingResponseBody body = out -> logFileService.writeLines(day, out);
 
-        return createFileResponse(tempLogFile);
-    }
-
-    private boolean isToday(String date) {
-        String today = LocalDate.now().toString();
-        return today.equals(date);
-    }
-
-    private List<String> readLogsFromFile(File logFile) throws IOException {
-        List<String> logs = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(logFile))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                logs.add(line);
-            }
-        }
-        return logs;
-    }
-
-    private List<String> readLogsFromGzip(File gzipFile) throws IOException {
-        List<String> logs = new ArrayList<>();
-        try (GZIPInputStream gzipInputStream = new GZIPInputStream(new FileInputStream(gzipFile));
-             BufferedReader reader = new BufferedReader(new InputStreamReader(
-                     gzipInputStream, StandardCharsets.UTF_8))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                logs.add(line);
-            }
-        }
-        return logs;
-    }
-
-    private List<String> filterLogsByDate(List<String> logs, String date) {
-        List<String> filteredLogs = new ArrayList<>();
-        for (String log : logs) {
-            if (log.startsWith(date) && !log.contains("INFO - Вход в метод контроллера")) {
-                filteredLogs.add(log);
-            }
-        }
-        return filteredLogs;
-    }
-
-    private File getArchiveLogFile(String date) {
-        String archiveLogFilePath = LOG_FILE_PATH + "." + date + ".0.gz";
-        return new File(archiveLogFilePath);
+        return ResponseEntity.ok()
+                .contentType(MediaType.TEXT_PLAIN)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"logs-" + day + ".log\"")
+                .body(body);
     }
 
-    private File createTempLogFile(List<String> logs, String date) throws IOException {
-        String safeDate = sanitizeFilename(date);
-
-        Path tempDir = Paths.get(System.getProperty("java.io.tmpdir")).toAbsolutePath().normalize();
-
-        if (!Files.isDirectory(tempDir) || Files.isSymbolicLink(tempDir)) {
-            throw new IOException("Unsafe temporary directory: " + tempDir);
+    @Operation(summary = "Получение логов за период",
+            description = "Возвращает логи за дни с from по to включительно одним текстом "
+                    + "или zip-архивом с файлом на каждый день (format=zip)")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Логи найдены"),
+        @ApiResponse(responseCode = "400", description = "Неверный формат даты или периода"),
+        @ApiResponse(responseCode = "404", description = "Логи за предложенный период не найдены"),
+        @ApiResponse(responseCode = "503", description = "Слишком много выгрузок, повторите позже")
+    })
+    @GetMapping
+    public ResponseEntity<StreamingResponseBody> getLogsByRange(
+            @RequestParam String from, @RequestParam String to,
+            @RequestParam(defaultValue = "text") String format) throws IOException {
+        boolean zip = "zip".equalsIgnoreCase(format);
+        if (!zip && !"text".equalsIgnoreCase(format)) {
+            throw new BadRequestException("Формат должен быть text или zip: " + format);
         }
+        List<LocalDate> days = logRangeService.parseRange(from, to);
 
-        Path tempFile = Files.createTempFile(tempDir, "logs-" + safeDate + "-", ".log");
-
-        try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8,
-                StandardOpenOption.WRITE)) {
-            for (String log : logs) {
-                writer.write(log);
-                writer.newLine();
-            }
+        if (!logRangeService.hasLines(days)) {
+            return ResponseEntity.notFound().build();
         }
 
-        tempFile.toFile().deleteOnExit();
-
-        return tempFile.toFile();
-    }
-
-    private String sanitizeFilename(String filename) {
-        if (filename == null) {
-            return "unknown";
+        // Место в пуле занимается до ответа: переполнение дает 503, а не оборванный 200.
+        LogRangeService.Reservation reservation = logRangeService.reserve(days);
+        String name = "logs-" + days.getFirst() + "_" + days.getLast();
+        if (zip) {
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType("application/zip"))
+                    .header(HttpHeaders.CONTENT_DISPOSITION,
+                            "attachment; filename=\"" + name + ".zip\"")
+                    .body(out -> logRangeService.writeZip(reservation, out));
         }
-
-        return filename.replaceAll("[^a-zA-Z0-9.-]", "_");
-    }
-
-    private ResponseEntity<Resource> createFileResponse(File file) throws IOException {
-        Path path = Paths.get(file.getAbsolutePath());
-        Resource resource = new UrlResource(path.toUri());
-
         return ResponseEntity.ok()
                 .contentType(MediaType.TEXT_PLAIN)
                 .header(HttpHeaders.CONTENT_DISPOSITION,
-                        "attachment; filename=\"" + resource.getFilename() + "\"")
-                .body(resource);
+                        "attachment; filename=\"" + name + ".log\"")
+                .body(out -> logRangeService.writeLines(reservation, out));
     }
 }
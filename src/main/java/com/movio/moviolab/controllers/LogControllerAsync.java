@@ -9,12 +9,13 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.constraints.Pattern;
 import java.util.Map;
 import java.util.NoSuchElementException;
-import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -64,6 +65,23 @@ public class LogControllerAsync {
         }
     }
 
+    @Operation(summary = "Отмена задачи",
+            description = "Удаляет задачу вместе с результатом. Создание лог-файла "
+                    + "прерывается, когда его отменили все запросы, которые к нему присоединились")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "204", description = "Задача отменена"),
+        @ApiResponse(responseCode = "404", description = "Процесс не найден"),
+    })
+    @DeleteMapping("/async/{taskId}")
+    public ResponseEntity<Void> cancelTask(@PathVariable String taskId) {
+        try {
+            asyncLogService.cancelTask(taskId);
+            return ResponseEntity.noContent().build();
+        } catch (NoSuchElementException ex) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
     @Operation(summary = "Получение лог-файла",
             description = "Возвращает лог-файл")
     @ApiResponses(value = {
@@ -72,7 +90,7 @@ public class LogControllerAsync {
         @ApiResponse(responseCode = "404", description = "Такого процесса не существует"),
     })
     @GetMapping("/async/file/{taskId}")
-    public ResponseEntity<ByteArrayResource> getLogFile(@PathVariable String taskId) {
+    public ResponseEntity<Resource> getLogFile(@PathVariable String taskId) {
         try {
             LogFileResult result = asyncLogService.getLogFile(taskId);
             return ResponseEntity.ok()
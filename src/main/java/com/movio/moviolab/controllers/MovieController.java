@@ -1,16 +1,28 @@
 package com.movio.moviolab.controllers;
 
-import com.movio.moviolab.dto.CommentDto;
+import com.movio.moviolab.dto.CommentPageDto;
 import com.movio.moviolab.dto.MovieDto;
+import com.movio.moviolab.dto.MovieTopDto;
+import com.movio.moviolab.dto.MovieUserLinkDto;
 import com.movio.moviolab.dto.UserDto;
+import com.movio.moviolab.readmodel.MovieDetailReadModel;
+import com.movio.moviolab.readmodel.ResourceVersions;
+import com.movio.moviolab.services.CommentService;
+import com.movio.moviolab.services.CommentStreamService;
+import com.movio.moviolab.services.MovieImportService;
+import com.movio.moviolab.services.MovieRankingService;
+import com.movio.moviolab.services.MovieRecommendationService;
 import com.movio.moviolab.services.MovieService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import java.util.List;
+import java.util.Map;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -19,9 +31,12 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @RestController
 @RequestMapping("/movies")
@@ -29,10 +44,30 @@ import org.springframework.web.bind.annotation.RestController;
 public class MovieController {
 
     private final MovieService movieService;
+    private final MovieImportService movieImportService;
+    private final MovieRankingService movieRankingService;
+    private final MovieRecommendationService movieRecommendationService;
+    private final ResourceVersions resourceVersions;
+    private final MovieDetailReadModel movieDetailReadModel;
+    private final CommentService commentService;
+    private final CommentStreamService commentStreamService;
 
     @Autowired
-    public MovieController(MovieService movieService) {
+    public MovieController(MovieService movieService, MovieImportService movieImportService,
+                           MovieRankingService movieRankingService,
+                           MovieRecommendationService movieRecommendationService,
+                           ResourceVersions resourceVersions,
+                           MovieDetailReadModel movieDetailReadModel,
+                           CommentService commentService,
+                           CommentStreamService commentStreamService) {
         this.movieService = movieService;
+        this.movieImportService = movieImportService;
+        this.movieRankingService = movieRankingService;
+        this.movieRecommendationService = movieRecommendationService;
+        this.resourceVersions = resourceVersions;
+        this.movieDetailReadModel = movieDetailReadModel;
+        this.commentService = commentService;
+        this.commentStreamService = commentStreamService;
     }
 
     @Operation(summary = "Поиск фильма по фильтру",
@@ -52,28 +87,82 @@ public class MovieController {
                 : ResponseEntity.ok(movies);
     }
 
+    @Operation(summary = "Самые обсуждаемые и самые просматриваемые фильмы",
+            description = "Возвращает топ фильмов по числу комментариев (by=comments) "
+                    + "или пользователей (by=users)")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Топ фильмов возвращен"),
+        @ApiResponse(responseCode = "400", description = "Неверный параметр by или limit")
+    })
+    @GetMapping("/top")
+    public ResponseEntity<List<MovieTopDto>> getTopMovies(
+            @RequestParam(name = "by") final String by,
+            @RequestParam(name = "limit", defaultValue = "10") final int limit) {
+        return ResponseEntity.ok(movieRankingService.getTopMovies(by, limit));
+    }
+
     @Operation(summary = "Получение фильма по ID", description = "Возвращает фильм по ID")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Фильм найден"),
+        @ApiResponse(responseCode = "304", description = "Фильм не изменился"),
         @ApiResponse(responseCode = "404", description = "Фильм с таким ID не найден")
     })
     @GetMapping("/{id}")
-    public ResponseEntity<MovieDto> getMovieById(@PathVariable final Integer id) {
-        MovieDto movie = movieService.getMovieById(id);
-        return ResponseEntity.ok(movie);
+    public ResponseEntity<byte[]> getMovieById(
+            @PathVariable final Integer id,
+            @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false)
+            final String ifNoneMatch) {
+        String etag = resourceVersions.movieETag(id);
+        if (ResourceVersions.matches(ifNoneMatch, etag, () -> movieService.existsById(id))) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(movieDetailReadModel.getJson(id));
+    }
+
+    @Operation(summary = "Похожие фильмы",
+            description = "Возвращает фильмы, которые чаще всего смотрят вместе с этим")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Похожие фильмы возвращены"),
+        @ApiResponse(responseCode = "400", description = "Неверный параметр limit"),
+        @ApiResponse(responseCode = "404", description = "Фильм с таким ID не найден")
+    })
+    @GetMapping("/{id}/similar")
+    public ResponseEntity<List<MovieTopDto>> getSimilarMovies(
+            @PathVariable final Integer id,
+            @RequestParam(name = "limit", defaultValue = "10") final int limit) {
+        return ResponseEntity.ok(movieRecommendationService.getSimilarMovies(id, limit));
     }
 
     @Operation(summary = "Получение комментариев для фильма по его ID",
-            description = "Возвращает комментарии для фильм с ID")
+            description = "Возвращает страницу комментариев для фильма с ID, "
+                    + "следующая страница запрашивается по nextCursor")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Комментарии возвращены"),
+        @ApiResponse(responseCode = "400", description = "Неверные cursor или limit"),
         @ApiResponse(responseCode = "404", description = "Фильм с таким ID не найден")
     })
     @GetMapping("/{id}/comments")
-    public ResponseEntity<List<CommentDto>> getCommentsByMovieId(@PathVariable final Integer id) {
-        List<CommentDto> comments = movieService.getCommentsByMovieId(id);
+    public ResponseEntity<CommentPageDto> getCommentsByMovieId(
+            @PathVariable final Integer id,
+            @RequestParam(name = "cursor", defaultValue = "0") final int cursor,
+            @RequestParam(name = "limit", defaultValue = "20") final int limit) {
+        CommentPageDto comments = commentService.getCommentsByMovieId(id, cursor, limit);
         return ResponseEntity.ok(comments);
+    }
 
+    @Operation(summary = "Поток новых комментариев к фильму",
+            description = "Server-Sent Events: каждое событие comment содержит новый комментарий. "
+                    + "Клиент, не успевающий читать, отключается")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Подписка открыта"),
+        @ApiResponse(responseCode = "404", description = "Фильм с таким ID не найден")
+    })
+    @GetMapping(value = "/{id}/comments/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamComments(@PathVariable final Integer id) {
+        return commentStreamService.subscribe(id);
     }
 
     @Operation(summary = "Добавление нового фильма", description = "Создает новый фильм")
@@ -152,12 +241,35 @@ public class MovieController {
             description = "Возвращает всех пользователей связанных с фильмом")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Список пользователей возвращен"),
+        @ApiResponse(responseCode = "304", description = "Список пользователей не изменился"),
         @ApiResponse(responseCode = "404", description = "Фильм не найден"),
     })
     @GetMapping("/{movieId}/users")
-    public ResponseEntity<List<UserDto>> getUsersForMovie(@PathVariable Integer movieId) {
+    public ResponseEntity<List<UserDto>> getUsersForMovie(
+            @PathVariable Integer movieId,
+            @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false)
+            String ifNoneMatch) {
+        String etag = resourceVersions.movieUsersETag(movieId);
+        if (ResourceVersions.matches(ifNoneMatch, etag,
+                () -> movieService.existsById(movieId))) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
         List<UserDto> users = movieService.getUsersForMovie(movieId);
-        return ResponseEntity.ok(users);
+        return ResponseEntity.ok().eTag(etag).body(users);
+    }
+
+    @Operation(summary = "Массовое добавление пользователей к фильмам",
+            description = "Добавляет пары (movieId, userId); существующие связи, "
+                    + "несуществующие фильмы и пользователи пропускаются")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Связи добавлены"),
+        @ApiResponse(responseCode = "400", description = "Пустой или неверный список связей")
+    })
+    @PostMapping("/users/bulk")
+    public ResponseEntity<Map<String, Integer>> addUsersToMoviesBulk(
+            @RequestBody List<MovieUserLinkDto> links) {
+        int inserted = movieService.addUsersToMoviesBulk(links);
+        return ResponseEntity.ok(Map.of("requested", links.size(), "inserted", inserted));
     }
 
     @Operation(summary = "Добавление нового фильма", description = "Создает новый фильм")
@@ -172,4 +284,29 @@ public class MovieController {
 
         return ResponseEntity.status(HttpStatus.CREATED).body(savedMovies);
     }
+
+    @Operation(summary = "Импорт каталога фильмов из файла",
+            description = "Запускает фоновый импорт фильмов из NDJSON или CSV (title,genre,year)")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "202", description = "Импорт запущен"),
+        @ApiResponse(responseCode = "400", description = "Пустой файл или неверный формат")
+    })
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<Map<String, String>> importMovies(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(name = "format", required = false) String format) {
+        String taskId = movieImportService.startImport(file, format);
+        return ResponseEntity.accepted().body(Map.of("taskId", taskId));
+    }
+
+    @Operation(summary = "Состояние импорта",
+            description = "Возвращает прогресс импорта и строки с ошибками")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Состояние импорта возвращено"),
+        @ApiResponse(responseCode = "404", description = "Задача импорта не найдена")
+    })
+    @GetMapping("/import/{taskId}")
+    public ResponseEntity<Map<String, Object>> getImportStatus(@PathVariable String taskId) {
+        return ResponseEntity.ok(movieImportService.getImportStatus(taskId));
+    }
 }
@@ -1,16 +1,27 @@
 package com.movio.moviolab.controllers;
 
 import com.movio.moviolab.dao.UserDao;
-import com.movio.moviolab.dto.CommentDto;
+import com.movio.moviolab.dto.CommentPageDto;
+import com.movio.moviolab.dto.MovieTopDto;
+import com.movio.moviolab.dto.SimilarUserDto;
 import com.movio.moviolab.dto.UserDto;
+import com.movio.moviolab.index.GenreUserIndex;
+import com.movio.moviolab.models.User;
+import com.movio.moviolab.readmodel.ResourceVersions;
+import com.movio.moviolab.services.CommentService;
+import com.movio.moviolab.services.MovieRecommendationService;
 import com.movio.moviolab.services.UserService;
+import com.movio.moviolab.services.UserSimilarityService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import java.util.List;
+import java.util.function.Function;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -19,6 +30,7 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -31,11 +43,25 @@ public class UserController {
 
     private final UserService userService;
     private final UserDao userDao;
+    private final ResourceVersions resourceVersions;
+    private final GenreUserIndex genreUserIndex;
+    private final MovieRecommendationService movieRecommendationService;
+    private final UserSimilarityService userSimilarityService;
+    private final CommentService commentService;
 
     @Autowired
-    public UserController(UserService userService, UserDao userDao) {
+    public UserController(UserService userService, UserDao userDao,
+                          ResourceVersions resourceVersions, GenreUserIndex genreUserIndex,
+                          MovieRecommendationService movieRecommendationService,
+                          UserSimilarityService userSimilarityService,
+                          CommentService commentService) {
         this.userService = userService;
         this.userDao = userDao;
+        this.resourceVersions = resourceVersions;
+        this.genreUserIndex = genreUserIndex;
+        this.movieRecommendationService = movieRecommendationService;
+        this.userSimilarityService = userSimilarityService;
+        this.commentService = commentService;
     }
 
     @Operation(summary = "Поиск пользователя по фильтру",
@@ -63,16 +89,56 @@ public class UserController {
         return ResponseEntity.ok(userDto);
     }
 
+    @Operation(summary = "Рекомендации фильмов для пользователя",
+            description = "Возвращает фильмы, которые смотрят вместе с просмотренными им")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Рекомендации возвращены"),
+        @ApiResponse(responseCode = "400", description = "Неверный параметр limit"),
+        @ApiResponse(responseCode = "404", description = "Пользователь с таким ID не найден")
+    })
+    @GetMapping("/{id}/recommendations")
+    public ResponseEntity<List<MovieTopDto>> getRecommendations(
+            @PathVariable Integer id,
+            @RequestParam(name = "limit", defaultValue = "10") int limit) {
+        return ResponseEntity.ok(movieRecommendationService.getRecommendations(id, limit));
+    }
+
+    @Operation(summary = "Пользователи с похожими вкусами",
+            description = "Возвращает пользователей с близким набором просмотренных фильмов")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Похожие пользователи возвращены"),
+        @ApiResponse(responseCode = "400", description = "Неверный параметр limit"),
+        @ApiResponse(responseCode = "404", description = "Пользователь с таким ID не найден")
+    })
+    @GetMapping("/{id}/similar")
+    public ResponseEntity<List<SimilarUserDto>> getSimilarUsers(
+            @PathVariable Integer id,
+            @RequestParam(name = "limit", defaultValue = "10") int limit) {
+        return ResponseEntity.ok(userSimilarityService.getSimilarUsers(id, limit));
+    }
+
     @Operation(summary = "Получение комментариев пользователя по его ID",
-            description = "Возвращает все комментарии пользователя с ID")
+            description = "Возвращает страницу комментариев пользователя с ID, "
+                    + "следующая страница запрашивается по nextCursor")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Комментарии возвращены"),
+        @ApiResponse(responseCode = "304", description = "Комментарии не изменились"),
+        @ApiResponse(responseCode = "400", description = "Неверные cursor или limit"),
         @ApiResponse(responseCode = "404", description = "Пользователь с таким ID не найден")
     })
     @GetMapping("/{id}/comments")
-    public ResponseEntity<List<CommentDto>> getCommentsByUserId(@PathVariable Integer id) {
-        List<CommentDto> comments = userService.getCommentsByUserId(id);
-        return ResponseEntity.ok(comments);
+    public ResponseEntity<CommentPageDto> getCommentsByUserId(
+            @PathVariable Integer id,
+            @RequestParam(name = "cursor", defaultValue = "0") int cursor,
+            @RequestParam(name = "limit", defaultValue = "20") int limit,
+            @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false)
+            String ifNoneMatch) {
+        String etag = resourceVersions.userCommentsETag(id);
+        if (ResourceVersions.matches(ifNoneMatch, etag, () -> userDao.existsById(id))) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        CommentPageDto comments = commentService.getCommentsByUserId(id, cursor, limit);
+        return ResponseEntity.ok().eTag(etag).body(comments);
     }
 
     @Operation(summary = "Добавление нового пользователя",
@@ -133,7 +199,7 @@ public class UserController {
     @GetMapping("/by-movie-genre")
     public ResponseEntity<List<UserDto>> getUsersByMovieGenre(@RequestParam String genre) {
         List<UserDto> users = userService.getUsersByGenreFromCacheOrDb(genre,
-                userDao::findUsersByMovieGenre);
+                key -> findUsersByGenre(key, userDao::findUsersByMovieGenre));
         return users.isEmpty() ? ResponseEntity.status(404).body(users) : ResponseEntity.ok(users);
     }
 
@@ -147,7 +213,13 @@ public class UserController {
     @GetMapping("/by-movie-genre-native")
     public ResponseEntity<List<UserDto>> getUsersByMovieGenreNative(@RequestParam String genre) {
         List<UserDto> users = userService.getUsersByGenreFromCacheOrDb(genre,
-                userDao::findUsersByMovieGenreNative);
+                key -> findUsersByGenre(key, userDao::findUsersByMovieGenreNative));
         return users.isEmpty() ? ResponseEntity.status(404).body(users) : ResponseEntity.ok(users);
     }
+
+    private List<User> findUsersByGenre(String genre, Function<String, List<User>> fallback) {
+        return genreUserIndex.userIds(genre)
+                .map(userDao::findAllById)
+                .orElseGet(() -> fallback.apply(genre));
+    }
 }
@@ -0,0 +1,243 @@
+package com.movio.moviolab.dao;
+
+import com.movio.moviolab.models.Comment;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public class CommentBatchDao {
+
+    // Обычный INSERT: занятый id или несуществующие фильм и пользователь дают ошибку,
+    // а не молча пропущенную строку. Уже сохраненные id отсеиваются до вставки, поэтому
+    // повтор пачки (ретрай, воспроизведение журнала) безопасен.
+    private static final String INSERT_SQL = "INSERT INTO comments "
+            + "(id, content, user_id, movie_id, content_hash, updated_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_GENERATED_SQL = "INSERT INTO comments "
+            + "(content, user_id, movie_id, content_hash, updated_at) VALUES (?, ?, ?, ?, ?)";
+    private static final String EXISTING_IDS_SQL = "SELECT id FROM comments WHERE id IN (:ids)";
+    private static final String INCREMENT_MOVIES_SQL =
+            "UPDATE movies SET comment_count = comment_count + ? WHERE id = ?";
+    private static final String INCREMENT_USERS_SQL =
+            "UPDATE users SET comment_count = comment_count + ? WHERE id = ?";
+    // Последовательность id для комментариев, которым id нужен до записи в базу
+    // (отложенная запись, пачки при ней). Блоки выдаются под блокировкой строки,
+    // поэтому несколько экземпляров приложения не получат одинаковых id.
+    private static final String CREATE_ID_SEQUENCE_SQL =
+            "CREATE TABLE IF NOT EXISTS comment_id_sequence "
+            + "(id INT PRIMARY KEY, next_id INT NOT NULL)";
+    private static final String SEED_ID_SEQUENCE_SQL =
+            "INSERT IGNORE INTO comment_id_sequence (id, next_id) VALUES (1, 1)";
+    // Поднимает последовательность выше id, выданных AUTO_INCREMENT, пока отложенная
+    // запись была выключена.
+    private static final String RAISE_ID_SEQUENCE_SQL =
+            "UPDATE comment_id_sequence SET next_id = GREATEST(next_id, "
+            + "(SELECT COALESCE(MAX(id), 0) + 1 FROM comments)) WHERE id = 1";
+    private static final String LOCK_ID_SEQUENCE_SQL =
+            "SELECT next_id FROM comment_id_sequence WHERE id = 1 FOR UPDATE";
+    private static final String ADVANCE_ID_SEQUENCE_SQL =
+            "UPDATE comment_id_sequence SET next_id = next_id + ? WHERE id = 1";
+    // Постранично по первичному ключу: каждая пачка продолжает с последнего id,
+    // а не просматривает заново уже заполненные строки с начала таблицы.
+    private static final String WITHOUT_HASH_SQL = "SELECT id, content FROM comments "
+            + "WHERE id > ? AND content_hash IS NULL ORDER BY id LIMIT ?";
+    private static final String UPDATE_HASH_SQL =
+            "UPDATE comments SET content_hash = ? WHERE id = ?";
+    private static final String COMMENTS_SQL =
+            "SELECT id, movie_id, user_id, content FROM comments";
+    private static final String HASHES_SQL =
+            "SELECT user_id, movie_id, content_hash FROM comments "
+            + "WHERE content_hash IS NOT NULL";
+    private static final String CONTENTS_BY_HASHES_SQL =
+            "SELECT user_id, movie_id, content FROM comments "
+            + "WHERE (user_id, movie_id, content_hash) IN (:keys)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    @Autowired
+    public CommentBatchDao(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+    }
+
+    // Возвращает комментарии, которые действительно вставлены: без уже сохраненных id.
+    @Transactional
+    public List<Comment> insertAll(List<Comment> comments) {
+        if (comments.isEmpty()) {
+            return List.of();
+        }
+        Set<Integer> existing = new HashSet<>(findExistingIds(
+                comments.stream().map(Comment::getId).toList()));
+        List<Comment> fresh = comments.stream()
+                .filter(comment -> !existing.contains(comment.getId()))
+                .toList();
+        if (fresh.isEmpty()) {
+            return fresh;
+        }
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        int[][] counts = jdbcTemplate.batchUpdate(INSERT_SQL, fresh, fresh.size(),
+                (ps, comment) -> {
+                    ps.setInt(1, comment.getId());
+                    ps.setString(2, comment.getContent());
+                    ps.setInt(3, comment.getUserId());
+                    ps.setInt(4, comment.getMovieId());
+                    ps.setLong(5, Comment.hashContent(comment.getContent()));
+                    ps.setTimestamp(6, now);
+                });
+        List<Comment> inserted = new ArrayList<>(fresh.size());
+        int index = 0;
+        for (int[] batch : counts) {
+            for (int count : batch) {
+                // SUCCESS_NO_INFO (-2) при rewriteBatchedStatements тоже означает вставку.
+                if (count != 0) {
+                    inserted.add(fresh.get(index));
+                }
+                index++;
+            }
+        }
+        incrementCommentCounts(inserted);
+        return inserted;
+    }
+
+    public List<Integer> findExistingIds(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return namedJdbcTemplate.queryForList(EXISTING_IDS_SQL, Map.of("ids", ids),
+                Integer.class);
+    }
+
+    public void initIdSequence() {
+        jdbcTemplate.execute(CREATE_ID_SEQUENCE_SQL);
+        jdbcTemplate.update(SEED_ID_SEQUENCE_SQL);
+        jdbcTemplate.update(RAISE_ID_SEQUENCE_SQL);
+    }
+
+    // Резервирует count подряд идущих id и возвращает первый. Своя транзакция: блокировка
+    // последовательности не держится до конца запроса, а откат запроса не возвращает
+    // уже выданный блок, которым экземпляр продолжит пользоваться.
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public int reserveIds(int count) {
+        Integer first = jdbcTemplate.queryForObject(LOCK_ID_SEQUENCE_SQL, Integer.class);
+        jdbcTemplate.update(ADVANCE_ID_SEQUENCE_SQL, count);
+        return first;
+    }
+
+    // Вставляет пачку одним batch-запросом и проставляет комментариям id,
+    // выданные базой: Connector/J возвращает ключи всех строк пачки по порядку.
+    @Transactional
+    public void insertWithGeneratedIds(List<Comment> comments) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.execute((ConnectionCallback<Void>) con -> {
+            try (PreparedStatement statement = con.prepareStatement(INSERT_GENERATED_SQL,
+                    Statement.RETURN_GENERATED_KEYS)) {
+                for (Comment comment : comments) {
+                    statement.setString(1, comment.getContent());
+                    statement.setInt(2, comment.getUserId());
+                    statement.setInt(3, comment.getMovieId());
+                    statement.setLong(4, Comment.hashContent(comment.getContent()));
+                    statement.setTimestamp(5, now);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                try (ResultSet keys = statement.getGeneratedKeys()) {
+                    for (int i = 0; i < comments.size() && keys.next(); i++) {
+                        comments.get(i).setId(keys.getInt(1));
+                    }
+                }
+            }
+            return null;
+        });
+        incrementCommentCounts(comments);
+    }
+
+    // Ищет уже сохраненные комментарии с теми же пользователем, фильмом и хэшем текста
+    // одним запросом на всю пачку; тексты сравнивает вызывающий код.
+    public List<Comment> findByContentHashes(List<Comment> comments) {
+        List<Object[]> keys = comments.stream()
+                .map(comment -> new Object[] {comment.getUserId(), comment.getMovieId(),
+                    Comment.hashContent(comment.getContent())})
+                .toList();
+        return namedJdbcTemplate.query(CONTENTS_BY_HASHES_SQL, Map.of("keys", keys),
+                (rs, rowNum) -> {
+                    Comment comment = new Comment();
+                    comment.setUserId(rs.getInt(1));
+                    comment.setMovieId(rs.getInt(2));
+                    comment.setContent(rs.getString(3));
+                    return comment;
+                });
+    }
+
+    public List<Comment> findWithoutContentHash(int afterId, int limit) {
+        return jdbcTemplate.query(WITHOUT_HASH_SQL, (rs, rowNum) -> {
+            Comment comment = new Comment();
+            comment.setId(rs.getInt(1));
+            comment.setContent(rs.getString(2));
+            return comment;
+        }, afterId, limit);
+    }
+
+    public void updateContentHashes(List<Comment> comments) {
+        jdbcTemplate.batchUpdate(UPDATE_HASH_SQL, comments, comments.size(), (ps, comment) -> {
+            ps.setLong(1, Comment.hashContent(comment.getContent()));
+            ps.setInt(2, comment.getId());
+        });
+    }
+
+    public void streamComments(RowCallbackHandler handler) {
+        stream(COMMENTS_SQL, handler);
+    }
+
+    public void streamContentHashes(RowCallbackHandler handler) {
+        stream(HASHES_SQL, handler);
+    }
+
+    private void stream(String sql, RowCallbackHandler handler) {
+        jdbcTemplate.query(con -> {
+            PreparedStatement statement = con.prepareStatement(sql);
+            // Потоковое чтение MySQL Connector/J, как в ExportDao.
+            statement.setFetchSize(Integer.MIN_VALUE);
+            return statement;
+        }, handler);
+    }
+
+    private void incrementCommentCounts(List<Comment> comments) {
+        increment(INCREMENT_MOVIES_SQL, comments, Comment::getMovieId);
+        increment(INCREMENT_USERS_SQL, comments, Comment::getUserId);
+    }
+
+    private void increment(String sql, List<Comment> comments,
+                           Function<Comment, Integer> key) {
+        if (comments.isEmpty()) {
+            return;
+        }
+        Map<Integer, Integer> counts = new LinkedHashMap<>();
+        comments.forEach(comment -> counts.merge(key.apply(comment), 1, Integer::sum));
+        jdbcTemplate.batchUpdate(sql, new ArrayList<>(counts.entrySet()), counts.size(),
+                (ps, entry) -> {
+                    ps.setInt(1, entry.getValue());
+                    ps.setInt(2, entry.getKey());
+                });
+    }
+}
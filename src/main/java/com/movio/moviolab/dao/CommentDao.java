@@ -5,6 +5,7 @@ import com.movio.moviolab.repositories.CommentRepository;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Repository;
 
 @Repository
@@ -29,6 +30,10 @@ public class CommentDao {
         return commentRepository.findById(id);
     }
 
+    public List<Comment> findAllById(List<Integer> ids) {
+        return commentRepository.findAllById(ids);
+    }
+
     public void delete(Comment comment) {
         commentRepository.delete(comment);
     }
@@ -38,4 +43,22 @@ public class CommentDao {
         return commentRepository
                 .existsByUserIdAndMovieIdAndContent(userId, movieId, content);
     }
+
+    public List<Comment> findMoviePage(Integer movieId, int afterId, int limit) {
+        return commentRepository.findByMovieIdAndIdGreaterThanOrderByIdAsc(movieId, afterId,
+                Limit.of(limit));
+    }
+
+    public List<Comment> findUserPage(Integer userId, int afterId, int limit) {
+        return commentRepository.findByUserIdAndIdGreaterThanOrderByIdAsc(userId, afterId,
+                Limit.of(limit));
+    }
+
+    public List<String> findContentsByHash(Integer userId, Integer movieId, long contentHash) {
+        return commentRepository.findContentsByHash(userId, movieId, contentHash);
+    }
+
+    public List<Object[]> countCommentsByMovie() {
+        return commentRepository.countCommentsByMovie();
+    }
 }
@@ -0,0 +1,62 @@
+package com.movio.moviolab.dao;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public class ExportDao {
+
+    private static final String MOVIES_SQL =
+            "SELECT id, title, genre, year, updated_at FROM movies";
+    private static final String USERS_SQL =
+            "SELECT id, name, email, updated_at FROM users";
+    private static final String COMMENTS_SQL =
+            "SELECT id, content, user_id, movie_id, updated_at FROM comments";
+    private static final String MOVIE_USER_SQL =
+            "SELECT mu.movie_id, mu.user_id FROM movie_user mu";
+    private static final String CHANGED_MOVIE_USER_SQL = MOVIE_USER_SQL
+            + " JOIN movies m ON m.id = mu.movie_id WHERE m.updated_at >= ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public ExportDao(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        // Integer.MIN_VALUE переводит MySQL Connector/J в потоковый режим:
+        // строки читаются с сервера по одной, а не буферизуются целиком.
+        this.jdbcTemplate.setFetchSize(Integer.MIN_VALUE);
+    }
+
+    public void streamMovies(LocalDateTime since, RowCallbackHandler handler) {
+        query(MOVIES_SQL, since, handler);
+    }
+
+    public void streamUsers(LocalDateTime since, RowCallbackHandler handler) {
+        query(USERS_SQL, since, handler);
+    }
+
+    public void streamComments(LocalDateTime since, RowCallbackHandler handler) {
+        query(COMMENTS_SQL, since, handler);
+    }
+
+    public void streamMovieUsers(LocalDateTime since, RowCallbackHandler handler) {
+        if (since == null) {
+            jdbcTemplate.query(MOVIE_USER_SQL, handler);
+        } else {
+            jdbcTemplate.query(CHANGED_MOVIE_USER_SQL, handler, Timestamp.valueOf(since));
+        }
+    }
+
+    private void query(String sql, LocalDateTime since, RowCallbackHandler handler) {
+        if (since == null) {
+            jdbcTemplate.query(sql, handler);
+        } else {
+            jdbcTemplate.query(sql + " WHERE updated_at >= ?", handler, Timestamp.valueOf(since));
+        }
+    }
+}
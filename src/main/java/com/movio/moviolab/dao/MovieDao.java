@@ -3,7 +3,10 @@ package com.movio.moviolab.dao;
 import com.movio.moviolab.models.Movie;
 import com.movio.moviolab.repositories.MovieRepository;
 import jakarta.transaction.Transactional;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
@@ -26,10 +29,19 @@ public class MovieDao {
         return movieRepository.findById(id);
     }
 
+    public List<Movie> findAllById(Iterable<Integer> ids) {
+        return movieRepository.findAllById(ids);
+    }
+
     public List<Movie> findByGenreAndYearAndTitle(String genre, Integer year, String title) {
         return movieRepository.findByGenreIgnoreCaseAndYearAndTitleIgnoreCase(genre, year, title);
     }
 
+    public List<Object[]> findKeysByTitlesAndYears(Collection<String> titles,
+                                                   Collection<Integer> years) {
+        return movieRepository.findKeysByTitlesAndYears(titles, years);
+    }
+
     public Movie save(Movie movie) {
         return movieRepository.save(movie);
     }
@@ -38,12 +50,55 @@ public class MovieDao {
         return movieRepository.saveAll(movies);
     }
 
+    // Возвращает число удаленных комментариев фильма по пользователям.
     @Transactional
-    public void deleteById(Integer id) {
-        movieRepository.deleteById(id);
+    public Map<Integer, Long> deleteWithAssociations(Integer id) {
+        Map<Integer, Long> commentCounts = new HashMap<>();
+        for (Integer userId : movieRepository.lockCommentUserIdsByMovieId(id)) {
+            commentCounts.merge(userId, 1L, Long::sum);
+        }
+        movieRepository.deleteUserLinksByMovieId(id);
+        movieRepository.decrementUserCommentCountsByMovieId(id);
+        movieRepository.deleteCommentsByMovieId(id);
+        movieRepository.deleteMovieRow(id);
+        return commentCounts;
+    }
+
+    @Transactional
+    public int adjustCommentCount(Integer movieId, int delta) {
+        return movieRepository.adjustCommentCount(movieId, delta);
+    }
+
+    @Transactional
+    public int backfillCommentCounts(int batchSize) {
+        return movieRepository.backfillCommentCounts(batchSize);
+    }
+
+    public List<Object[]> findCommentCounts() {
+        return movieRepository.findCommentCounts();
     }
 
     public boolean existsById(Integer id) {
         return movieRepository.existsById(id);
     }
+
+    public List<Integer> findExistingIds(Collection<Integer> ids) {
+        return movieRepository.findExistingIds(ids);
+    }
+
+    public List<Object[]> countUsersByMovie() {
+        return movieRepository.countUsersByMovie();
+    }
+
+    public List<Object[]> findAllGenres() {
+        return movieRepository.findAllGenres();
+    }
+
+    public List<Object[]> countLinksByGenreAndUser() {
+        return movieRepository.countLinksByGenreAndUser();
+    }
+
+    public List<Object[]> countLinksByUserForGenre(String genre) {
+        return movieRepository.countLinksByUserForGenre(genre);
+    }
 }
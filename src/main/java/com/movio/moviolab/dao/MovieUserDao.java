@@ -0,0 +1,124 @@
+package com.movio.moviolab.dao;
+
+import com.movio.moviolab.dto.MovieUserLinkDto;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public class MovieUserDao {
+
+    private static final int BATCH_SIZE = 1000;
+
+    // Пара вставляется, только если фильм и пользователь существуют. Уже существующую
+    // связь отсекает уникальный индекс uk_movie_user, в том числе при одновременных вставках.
+    private static final String INSERT_IF_ABSENT_SQL =
+            "INSERT IGNORE INTO movie_user (movie_id, user_id) "
+            + "SELECT m.id, u.id FROM movies m JOIN users u ON u.id = ? WHERE m.id = ?";
+    private static final String GENRES_SQL =
+            "SELECT DISTINCT genre FROM movies WHERE id IN (:ids) AND genre IS NOT NULL";
+    private static final String TOUCH_MOVIES_SQL =
+            "UPDATE movies SET updated_at = CURRENT_TIMESTAMP(6) WHERE id IN (:ids)";
+    private static final String LINKS_SQL = "SELECT movie_id, user_id FROM movie_user";
+    private static final String UNIQUE_INDEX_EXISTS_SQL =
+            "SELECT COUNT(*) FROM information_schema.statistics "
+            + "WHERE table_schema = DATABASE() AND table_name = 'movie_user' "
+            + "AND index_name = 'uk_movie_user'";
+    private static final String DUPLICATE_LINKS_SQL =
+            "SELECT movie_id, user_id, COUNT(*) FROM movie_user "
+            + "GROUP BY movie_id, user_id HAVING COUNT(*) > 1";
+    // Повторы неотличимы друг от друга, поэтому удаляются все, кроме одного, через LIMIT.
+    private static final String DELETE_DUPLICATE_LINKS_SQL =
+            "DELETE FROM movie_user WHERE movie_id = ? AND user_id = ? LIMIT ?";
+    private static final String ADD_UNIQUE_INDEX_SQL =
+            "ALTER TABLE movie_user ADD CONSTRAINT uk_movie_user UNIQUE (movie_id, user_id)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    @Autowired
+    public MovieUserDao(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.streamingJdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        // Потоковый режим MySQL Connector/J, как в ExportDao: все связи не
+        // буферизуются в драйвере.
+        this.streamingJdbcTemplate.setFetchSize(Integer.MIN_VALUE);
+    }
+
+    // Все связи фильм - пользователь: movie_id, user_id.
+    public void streamLinks(RowCallbackHandler handler) {
+        streamingJdbcTemplate.query(LINKS_SQL, handler);
+    }
+
+    public List<MovieUserLinkDto> insertIfAbsent(List<MovieUserLinkDto> links) {
+        List<MovieUserLinkDto> inserted = new ArrayList<>();
+        int[][] counts = jdbcTemplate.batchUpdate(INSERT_IF_ABSENT_SQL, links, BATCH_SIZE,
+                (ps, link) -> {
+                    ps.setInt(1, link.getUserId());
+                    ps.setInt(2, link.getMovieId());
+                });
+        int index = 0;
+        for (int[] batch : counts) {
+            for (int count : batch) {
+                if (count > 0) {
+                    inserted.add(links.get(index));
+                }
+                index++;
+            }
+        }
+        return inserted;
+    }
+
+    public boolean hasUniqueLinkIndex() {
+        Integer count = jdbcTemplate.queryForObject(UNIQUE_INDEX_EXISTS_SQL, Integer.class);
+        return count != null && count > 0;
+    }
+
+    // Возвращает число удаленных строк.
+    public int deleteDuplicateLinks() {
+        List<Object[]> duplicates = jdbcTemplate.query(DUPLICATE_LINKS_SQL,
+                (rs, rowNum) -> new Object[]{rs.getInt(1), rs.getInt(2), rs.getLong(3) - 1});
+        if (duplicates.isEmpty()) {
+            return 0;
+        }
+        int removed = 0;
+        for (int[] batch : jdbcTemplate.batchUpdate(DELETE_DUPLICATE_LINKS_SQL, duplicates,
+                BATCH_SIZE, (ps, duplicate) -> {
+                    ps.setInt(1, (Integer) duplicate[0]);
+                    ps.setInt(2, (Integer) duplicate[1]);
+                    ps.setLong(3, (Long) duplicate[2]);
+                })) {
+            for (int count : batch) {
+                removed += Math.max(count, 0);
+            }
+        }
+        return removed;
+    }
+
+    public void addUniqueLinkIndex() {
+        jdbcTemplate.execute(ADD_UNIQUE_INDEX_SQL);
+    }
+
+    public List<String> findGenres(Collection<Integer> movieIds) {
+        if (movieIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return namedJdbcTemplate.queryForList(GENRES_SQL,
+                new MapSqlParameterSource("ids", movieIds), String.class);
+    }
+
+    public void touchMovies(Collection<Integer> movieIds) {
+        if (!movieIds.isEmpty()) {
+            namedJdbcTemplate.update(TOUCH_MOVIES_SQL, new MapSqlParameterSource("ids", movieIds));
+        }
+    }
+}
@@ -2,7 +2,11 @@ package com.movio.moviolab.dao;
 
 import com.movio.moviolab.models.User;
 import com.movio.moviolab.repositories.UserRepository;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
@@ -11,6 +15,8 @@ import org.springframework.transaction.annotation.Transactional;
 @Repository
 public class UserDao {
 
+    private static final int ID_BATCH_SIZE = 1000;
+
     private final UserRepository userRepository;
 
     @Autowired
@@ -27,29 +33,105 @@ public class UserDao {
     }
 
     public List<User> findByNameIgnoreCase(String name) {
-        return userRepository.findByNameIgnoreCase(name);
+        return userRepository.findByNameNormalized(User.normalize(name));
     }
 
     public List<User> findByEmailIgnoreCase(String email) {
-        return userRepository.findByEmailIgnoreCase(email);
+        return userRepository.findByEmailNormalized(User.normalize(email));
     }
 
     public List<User> findByNameIgnoreCaseAndEmailIgnoreCase(String name, String email) {
-        return userRepository.findByNameIgnoreCaseAndEmailIgnoreCase(name, email);
+        return userRepository.findByNameNormalizedAndEmailNormalized(User.normalize(name),
+                User.normalize(email));
+    }
+
+    public List<User> findAllById(List<Integer> ids) {
+        List<User> users = new ArrayList<>(ids.size());
+        for (int from = 0; from < ids.size(); from += ID_BATCH_SIZE) {
+            List<Integer> batch = ids.subList(from, Math.min(from + ID_BATCH_SIZE, ids.size()));
+            users.addAll(userRepository.findAllById(batch));
+        }
+        return users;
+    }
+
+    public List<String> findConflictingNames(String nameNormalized, String emailNormalized) {
+        return userRepository.findConflictingNames(nameNormalized, emailNormalized, null);
+    }
+
+    public List<String> findConflictingNames(String nameNormalized, String emailNormalized,
+                                             Integer exceptId) {
+        return userRepository.findConflictingNames(nameNormalized, emailNormalized, exceptId);
+    }
+
+    public boolean hasUnnormalizedRows() {
+        return !userRepository.findAnyIdWithoutNormalizedColumns().isEmpty();
+    }
+
+    public List<Integer> findUnnormalizedIdsWithDuplicateName() {
+        return userRepository.findUnnormalizedIdsWithDuplicateName();
+    }
+
+    public List<Integer> findUnnormalizedIdsWithDuplicateEmail() {
+        return userRepository.findUnnormalizedIdsWithDuplicateEmail();
+    }
+
+    public List<Object[]> findWithoutNormalizedColumns(int afterId, int batchSize) {
+        return userRepository.findWithoutNormalizedColumns(afterId, batchSize);
+    }
+
+    @Transactional
+    public int fillNormalizedNames(Collection<Integer> ids) {
+        return ids.isEmpty() ? 0 : userRepository.fillNormalizedNames(ids);
+    }
+
+    @Transactional
+    public int fillNormalizedEmails(Collection<Integer> ids) {
+        return ids.isEmpty() ? 0 : userRepository.fillNormalizedEmails(ids);
+    }
+
+    @Transactional
+    public int adjustCommentCount(Integer userId, int delta) {
+        return userRepository.adjustCommentCount(userId, delta);
+    }
+
+    @Transactional
+    public int backfillCommentCounts(int batchSize) {
+        return userRepository.backfillCommentCounts(batchSize);
+    }
+
+    public List<Object[]> findCommentCounts() {
+        return userRepository.findCommentCounts();
     }
 
     public boolean existsById(Integer id) {
         return userRepository.existsById(id);
     }
 
+    public List<Integer> findExistingIds(Collection<Integer> ids) {
+        return userRepository.findExistingIds(ids);
+    }
+
     @Transactional
     public User save(User user) {
         return userRepository.save(user);
     }
 
+    public List<Object[]> findMovieIdsAndGenresByUserId(Integer userId) {
+        return userRepository.findMovieIdsAndGenresByUserId(userId);
+    }
+
+    // Возвращает число удаленных комментариев пользователя по фильмам.
     @Transactional
-    public void deleteById(Integer id) {
-        userRepository.deleteById(id);
+    public Map<Integer, Long> deleteWithAssociations(Integer id) {
+        Map<Integer, Long> commentCounts = new HashMap<>();
+        for (Integer movieId : userRepository.lockCommentMovieIdsByUserId(id)) {
+            commentCounts.merge(movieId, 1L, Long::sum);
+        }
+        userRepository.deleteMovieLinksByUserId(id);
+        userRepository.decrementMovieCommentCountsByUserId(id);
+        userRepository.deleteCommentsByUserId(id);
+        userRepository.deleteUserRow(id);
+        return commentCounts;
     }
 
     public List<User> findUsersByMovieGenre(String genre) {
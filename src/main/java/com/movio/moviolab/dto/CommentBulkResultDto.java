@@ -0,0 +1,30 @@
+package com.movio.moviolab.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Getter;
+import lombok.Setter;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Getter
+@Setter
+public class CommentBulkResultDto {
+
+    public enum Status { CREATED, REJECTED }
+
+    private int created;
+    private int rejected;
+    private List<Row> rows = new ArrayList<>();
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @Getter
+    @Setter
+    public static class Row {
+
+        private int index;
+        private Status status;
+        private Integer id;
+        private String message;
+    }
+}
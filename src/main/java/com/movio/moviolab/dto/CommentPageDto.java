@@ -0,0 +1,20 @@
+package com.movio.moviolab.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Getter;
+import lombok.Setter;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Getter
+@Setter
+public class CommentPageDto {
+
+    private List<CommentDto> items = new ArrayList<>();
+    // Страницы комментариев фильма и пользователя продолжаются с последнего id (nextCursor),
+    // а результаты поиска - со смещения в выдаче (nextOffset).
+    private Integer nextCursor;
+    private Integer nextOffset;
+    private Integer total;
+}
@@ -15,6 +15,7 @@ public class MovieDto {
     private String title;
     private String genre;
     private Integer year;
+    private Long commentCount;
     private List<UserDto> users = new ArrayList<>();
     private List<CommentDto> comments = new ArrayList<>();
 }
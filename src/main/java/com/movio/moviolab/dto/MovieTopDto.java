@@ -0,0 +1,17 @@
+package com.movio.moviolab.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Getter;
+import lombok.Setter;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Getter
+@Setter
+public class MovieTopDto {
+
+    private Integer id;
+    private String title;
+    private String genre;
+    private Integer year;
+    private Long count;
+}
@@ -0,0 +1,37 @@
+package com.movio.moviolab.dto;
+
+import java.util.Objects;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+public class MovieUserLinkDto {
+
+    private Integer movieId;
+    private Integer userId;
+
+    public MovieUserLinkDto(Integer movieId, Integer userId) {
+        this.movieId = movieId;
+        this.userId = userId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        MovieUserLinkDto that = (MovieUserLinkDto) o;
+        return Objects.equals(movieId, that.movieId) && Objects.equals(userId, that.userId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(movieId, userId);
+    }
+}
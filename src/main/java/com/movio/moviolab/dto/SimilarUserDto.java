@@ -0,0 +1,15 @@
+package com.movio.moviolab.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Getter;
+import lombok.Setter;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Getter
+@Setter
+public class SimilarUserDto {
+
+    private Integer id;
+    private String name;
+    private Double similarity;
+}
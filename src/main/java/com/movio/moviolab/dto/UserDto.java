@@ -16,6 +16,7 @@ public class UserDto {
     private String name;
     private String email;
     private String password;
+    private Long commentCount;
 
     private List<CommentDto> comments = new ArrayList<>();
     private List<MovieDto> movies = new ArrayList<>();
@@ -33,12 +34,13 @@ public class UserDto {
                 && Objects.equals(name, userDto.name)
                 && Objects.equals(email, userDto.email)
                 && Objects.equals(password, userDto.password)
+                && Objects.equals(commentCount, userDto.commentCount)
                 && Objects.equals(comments, userDto.comments)
                 && Objects.equals(movies, userDto.movies);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(id, name, email, password, comments, movies);
+        return Objects.hash(id, name, email, password, commentCount, comments, movies);
     }
 }
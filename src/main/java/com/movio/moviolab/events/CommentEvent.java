@@ -0,0 +1,7 @@
+package com.movio.moviolab.events;
+
+public record CommentEvent(Type type, Integer commentId, Integer movieId,
+                           Integer userId, String content) {
+
+    public enum Type { CREATED, UPDATED, DELETED }
+}
@@ -0,0 +1,15 @@
+package com.movio.moviolab.events;
+
+import java.util.Map;
+
+// commentCountsByUser - сколько комментариев к удаленному фильму было у каждого
+// пользователя: подписчики вычитают их из своих счётчиков, не пересчитывая всё по базе.
+public record MovieEvent(Type type, Integer movieId, String oldGenre, String genre,
+                         Map<Integer, Long> commentCountsByUser) {
+
+    public enum Type { UPDATED, DELETED }
+
+    public MovieEvent(Type type, Integer movieId, String oldGenre, String genre) {
+        this(type, movieId, oldGenre, genre, Map.of());
+    }
+}
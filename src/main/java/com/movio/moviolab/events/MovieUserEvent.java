@@ -0,0 +1,6 @@
+package com.movio.moviolab.events;
+
+public record MovieUserEvent(Type type, Integer movieId, Integer userId) {
+
+    public enum Type { LINKED, UNLINKED }
+}
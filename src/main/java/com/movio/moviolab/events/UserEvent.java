@@ -0,0 +1,16 @@
+package com.movio.moviolab.events;
+
+import java.util.List;
+import java.util.Map;
+
+// commentCountsByMovie - сколько комментариев удаленного пользователя было у каждого
+// фильма: подписчики вычитают их из своих счётчиков, не пересчитывая всё по базе.
+public record UserEvent(Type type, Integer userId, List<Integer> movieIds,
+                        Map<Integer, Long> commentCountsByMovie) {
+
+    public enum Type { UPDATED, DELETED }
+
+    public UserEvent(Type type, Integer userId, List<Integer> movieIds) {
+        this(type, userId, movieIds, Map.of());
+    }
+}
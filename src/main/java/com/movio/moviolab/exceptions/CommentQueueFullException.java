@@ -0,0 +1,7 @@
+package com.movio.moviolab.exceptions;
+
+public class CommentQueueFullException extends RuntimeException {
+    public CommentQueueFullException(String message) {
+        super(message);
+    }
+}
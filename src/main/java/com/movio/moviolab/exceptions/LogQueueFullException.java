@@ -0,0 +1,7 @@
+package com.movio.moviolab.exceptions;
+
+public class LogQueueFullException extends RuntimeException {
+    public LogQueueFullException(String message) {
+        super(message);
+    }
+}
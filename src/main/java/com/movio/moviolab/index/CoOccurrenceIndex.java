@@ -0,0 +1,392 @@
+package com.movio.moviolab.index;
+
+import com.movio.moviolab.dao.MovieDao;
+import com.movio.moviolab.dao.MovieUserDao;
+import com.movio.moviolab.events.MovieEvent;
+import com.movio.moviolab.events.MovieUserEvent;
+import com.movio.moviolab.events.UserEvent;
+import com.movio.moviolab.models.Movie;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+@Component
+public class CoOccurrenceIndex {
+
+    public static final int ORDER = 0;
+
+    private static final Logger log = LoggerFactory.getLogger(CoOccurrenceIndex.class);
+
+    private static final Comparator<Score> BEST_FIRST = Comparator
+            .comparingInt(Score::count).reversed()
+            .thenComparingInt(Score::movieId);
+
+    public record Score(int movieId, int count) {
+    }
+
+    public record MovieSummary(int id, String title, String genre, Integer year) {
+    }
+
+    private final MovieUserDao movieUserDao;
+    private final MovieDao movieDao;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Map<Integer, IntCountMap> userMovies = new HashMap<>();
+    private Map<Integer, IntCountMap> movieUsers = new HashMap<>();
+    private Map<Integer, IntCountMap> cooccurrence = new HashMap<>();
+
+    // Названия фильмов для ответа. Хранятся только для фильмов со связями, то есть тех,
+    // что могут попасть в выдачу, и подгружаются из базы при первом обращении.
+    // summaryVersion растет с каждым изменением фильма: загрузка, которая шла
+    // одновременно с изменением, в кэш не кладется.
+    private final Map<Integer, MovieSummary> summaries = new HashMap<>();
+    private long summaryVersion;
+
+    @Autowired
+    public CoOccurrenceIndex(MovieUserDao movieUserDao, MovieDao movieDao) {
+        this.movieUserDao = movieUserDao;
+        this.movieDao = movieDao;
+    }
+
+    // Фильм или пользователь со связями точно существует: удаление снимает их из индекса.
+    public boolean hasMovie(Integer movieId) {
+        lock.readLock().lock();
+        try {
+            return movieUsers.containsKey(movieId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean hasUser(Integer userId) {
+        lock.readLock().lock();
+        try {
+            return userMovies.containsKey(userId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Map<Integer, MovieSummary> summaries(Collection<Integer> movieIds) {
+        Map<Integer, MovieSummary> result = new HashMap<>(movieIds.size() * 2);
+        List<Integer> missing = new ArrayList<>();
+        long version;
+        lock.readLock().lock();
+        try {
+            version = summaryVersion;
+            for (Integer movieId : movieIds) {
+                MovieSummary summary = summaries.get(movieId);
+                if (summary == null) {
+                    missing.add(movieId);
+                } else {
+                    result.put(movieId, summary);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        List<MovieSummary> loaded = movieDao.findAllById(missing).stream()
+                .map(movie -> new MovieSummary(movie.getId(), movie.getTitle(),
+                        movie.getGenre(), movie.getYear()))
+                .toList();
+        lock.writeLock().lock();
+        try {
+            for (MovieSummary summary : loaded) {
+                result.put(summary.id(), summary);
+                if (version == summaryVersion && movieUsers.containsKey(summary.id())) {
+                    summaries.put(summary.id(), summary);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return result;
+    }
+
+    public List<Score> similar(Integer movieId, int limit) {
+        lock.readLock().lock();
+        try {
+            IntCountMap row = cooccurrence.get(movieId);
+            return row == null ? List.of() : top(row, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Score> recommendations(Integer userId, int limit) {
+        lock.readLock().lock();
+        try {
+            IntCountMap watched = userMovies.get(userId);
+            if (watched == null) {
+                return List.of();
+            }
+            IntCountMap scores = new IntCountMap(64);
+            watched.forEach((movieId, ignored) -> {
+                IntCountMap row = cooccurrence.get(movieId);
+                if (row != null) {
+                    row.forEach((other, count) -> {
+                        if (!watched.contains(other)) {
+                            scores.add(other, count);
+                        }
+                    });
+                }
+            });
+            return top(scores, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int[] moviesOf(Integer userId) {
+        lock.readLock().lock();
+        try {
+            IntCountMap watched = userMovies.get(userId);
+            if (watched == null) {
+                return new int[0];
+            }
+            int[] movieIds = watched.keys();
+            Arrays.sort(movieIds);
+            return movieIds;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int[] users() {
+        lock.readLock().lock();
+        try {
+            return userMovies.keySet().stream().mapToInt(Integer::intValue).toArray();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int[] usersOf(Integer movieId) {
+        lock.readLock().lock();
+        try {
+            IntCountMap users = movieUsers.get(movieId);
+            return users == null ? new int[0] : users.keys();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Order(ORDER)
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        // Блокировка на запись держится всё построение: события, пришедшие во время
+        // чтения связей, применятся после и будут отброшены как уже учтенные.
+        lock.writeLock().lock();
+        try {
+            Map<Integer, IntCountMap> byUser = new HashMap<>();
+            Map<Integer, IntCountMap> byMovie = new HashMap<>();
+            movieUserDao.streamLinks(rs -> {
+                int movieId = rs.getInt(1);
+                int userId = rs.getInt(2);
+                byUser.computeIfAbsent(userId, key -> new IntCountMap()).add(movieId, 1);
+                byMovie.computeIfAbsent(movieId, key -> new IntCountMap()).add(userId, 1);
+            });
+
+            int[] movieIds = byMovie.keySet().stream().mapToInt(Integer::intValue).toArray();
+            IntCountMap[] rows = new IntCountMap[movieIds.length];
+            ForkJoinPool.commonPool().invoke(
+                    new RowTask(movieIds, rows, byUser, byMovie, 0, movieIds.length));
+
+            Map<Integer, IntCountMap> matrix = new HashMap<>(movieIds.length * 2);
+            for (int i = 0; i < movieIds.length; i++) {
+                if (!rows[i].isEmpty()) {
+                    matrix.put(movieIds[i], rows[i]);
+                }
+            }
+            userMovies = byUser;
+            movieUsers = byMovie;
+            cooccurrence = matrix;
+            summaries.keySet().retainAll(byMovie.keySet());
+            summaryVersion++;
+            log.info("Матрица совместных просмотров построена: {} фильмов, {} пользователей",
+                    byMovie.size(), byUser.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Order(ORDER)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMovieUserEvent(MovieUserEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (event.type() == MovieUserEvent.Type.LINKED) {
+                link(event.movieId(), event.userId());
+            } else {
+                unlink(event.movieId(), event.userId());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Order(ORDER)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMovieEvent(MovieEvent event) {
+        lock.writeLock().lock();
+        try {
+            summaries.remove(event.movieId());
+            summaryVersion++;
+            if (event.type() != MovieEvent.Type.DELETED) {
+                return;
+            }
+            IntCountMap users = movieUsers.get(event.movieId());
+            if (users != null) {
+                for (int userId : users.keys()) {
+                    unlink(event.movieId(), userId);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Order(ORDER)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserEvent(UserEvent event) {
+        if (event.type() != UserEvent.Type.DELETED) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            IntCountMap watched = userMovies.get(event.userId());
+            if (watched != null) {
+                for (int movieId : watched.keys()) {
+                    unlink(movieId, event.userId());
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void link(int movieId, int userId) {
+        IntCountMap watched = userMovies.computeIfAbsent(userId, key -> new IntCountMap());
+        if (watched.contains(movieId)) {
+            return;
+        }
+        watched.forEach((other, ignored) -> {
+            row(movieId).add(other, 1);
+            row(other).add(movieId, 1);
+        });
+        watched.add(movieId, 1);
+        movieUsers.computeIfAbsent(movieId, key -> new IntCountMap()).add(userId, 1);
+    }
+
+    private void unlink(int movieId, int userId) {
+        IntCountMap watched = userMovies.get(userId);
+        if (watched == null || !watched.contains(movieId)) {
+            return;
+        }
+        watched.remove(movieId);
+        watched.forEach((other, ignored) -> {
+            decrement(movieId, other);
+            decrement(other, movieId);
+        });
+        if (watched.isEmpty()) {
+            userMovies.remove(userId);
+        }
+        IntCountMap users = movieUsers.get(movieId);
+        users.remove(userId);
+        if (users.isEmpty()) {
+            movieUsers.remove(movieId);
+            summaries.remove(movieId);
+        }
+    }
+
+    private IntCountMap row(int movieId) {
+        return cooccurrence.computeIfAbsent(movieId, key -> new IntCountMap());
+    }
+
+    private void decrement(int movieId, int other) {
+        IntCountMap row = cooccurrence.get(movieId);
+        if (row != null && row.add(other, -1) == 0 && row.isEmpty()) {
+            cooccurrence.remove(movieId);
+        }
+    }
+
+    private static List<Score> top(IntCountMap counts, int limit) {
+        PriorityQueue<Score> heap = new PriorityQueue<>(limit + 1, BEST_FIRST.reversed());
+        counts.forEach((movieId, count) -> {
+            heap.add(new Score(movieId, count));
+            if (heap.size() > limit) {
+                heap.poll();
+            }
+        });
+        List<Score> result = new ArrayList<>(heap);
+        result.sort(BEST_FIRST);
+        return result;
+    }
+
+    private static final class RowTask extends RecursiveAction {
+        private static final int THRESHOLD = 64;
+
+        private final int[] movieIds;
+        private final IntCountMap[] rows;
+        private final Map<Integer, IntCountMap> byUser;
+        private final Map<Integer, IntCountMap> byMovie;
+        private final int from;
+        private final int to;
+
+        RowTask(int[] movieIds, IntCountMap[] rows, Map<Integer, IntCountMap> byUser,
+                Map<Integer, IntCountMap> byMovie, int from, int to) {
+            this.movieIds = movieIds;
+            this.rows = rows;
+            this.byUser = byUser;
+            this.byMovie = byMovie;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    rows[i] = buildRow(movieIds[i]);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new RowTask(movieIds, rows, byUser, byMovie, from, middle),
+                    new RowTask(movieIds, rows, byUser, byMovie, middle, to));
+        }
+
+        private IntCountMap buildRow(int movieId) {
+            IntCountMap row = new IntCountMap();
+            for (int userId : byMovie.get(movieId).keys()) {
+                byUser.get(userId).forEach((other, ignored) -> {
+                    if (other != movieId) {
+                        row.add(other, 1);
+                    }
+                });
+            }
+            return row;
+        }
+    }
+}
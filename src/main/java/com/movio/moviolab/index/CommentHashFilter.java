@@ -0,0 +1,100 @@
+package com.movio.moviolab.index;
+
+import com.movio.moviolab.dao.CommentBatchDao;
+import com.movio.moviolab.events.CommentEvent;
+import com.movio.moviolab.models.Comment;
+import java.util.Arrays;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+// Фильтр Блума по ключам (пользователь, фильм, хэш текста). Отрицательный ответ точен,
+// поэтому для нового комментария проверка дубликата обходится без запроса к базе.
+// Удалённые комментарии из фильтра не убираются: это даёт лишь ложные срабатывания,
+// которые отсекает запрос по индексу.
+@Component
+public class CommentHashFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(CommentHashFilter.class);
+
+    private final CommentBatchDao commentBatchDao;
+    private final long[] bits;
+    private final int hashes;
+    private final long mask;
+    private long size;
+    private boolean ready;
+
+    @Autowired
+    public CommentHashFilter(CommentBatchDao commentBatchDao,
+                             @Value("${moviolab.comments.hash-filter.bits-log2:23}") int bitsLog2,
+                             @Value("${moviolab.comments.hash-filter.hashes:5}") int hashes) {
+        if (bitsLog2 < 6 || bitsLog2 > 34 || hashes < 1) {
+            throw new IllegalArgumentException("Некорректные параметры фильтра комментариев");
+        }
+        this.commentBatchDao = commentBatchDao;
+        this.bits = new long[1 << (bitsLog2 - 6)];
+        this.hashes = hashes;
+        this.mask = (1L << bitsLog2) - 1;
+    }
+
+    public synchronized boolean isReady() {
+        return ready;
+    }
+
+    public synchronized boolean mightContain(int userId, int movieId, long contentHash) {
+        if (!ready) {
+            return true;
+        }
+        long key = key(userId, movieId, contentHash);
+        long step = step(key);
+        for (int i = 0; i < hashes; i++) {
+            long bit = (key + i * step) & mask;
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Вызывается после заполнения content_hash у старых строк.
+    public synchronized void rebuild() {
+        Arrays.fill(bits, 0L);
+        size = 0;
+        commentBatchDao.streamContentHashes(rs -> add(rs.getInt(1), rs.getInt(2),
+                rs.getLong(3)));
+        ready = true;
+        log.info("Фильтр дубликатов комментариев построен: {} записей", size);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onCommentEvent(CommentEvent event) {
+        if (event.type() != CommentEvent.Type.DELETED) {
+            add(event.userId(), event.movieId(), Comment.hashContent(event.content()));
+        }
+    }
+
+    private void add(int userId, int movieId, long contentHash) {
+        long key = key(userId, movieId, contentHash);
+        long step = step(key);
+        for (int i = 0; i < hashes; i++) {
+            long bit = (key + i * step) & mask;
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+        size++;
+    }
+
+    private static long key(int userId, int movieId, long contentHash) {
+        long key = contentHash ^ (((long) userId << 32) | (movieId & 0xFFFFFFFFL));
+        key = (key ^ (key >>> 33)) * 0xFF51AFD7ED558CCDL;
+        key = (key ^ (key >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return key ^ (key >>> 33);
+    }
+
+    // Двойное хэширование: нечётный шаг обходит все позиции таблицы размера 2^n.
+    private static long step(long key) {
+        return Long.rotateLeft(key, 32) | 1;
+    }
+}
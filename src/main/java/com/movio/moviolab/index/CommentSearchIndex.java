@@ -0,0 +1,251 @@
+package com.movio.moviolab.index;
+
+import com.movio.moviolab.dao.CommentBatchDao;
+import com.movio.moviolab.events.CommentEvent;
+import com.movio.moviolab.events.MovieEvent;
+import com.movio.moviolab.events.UserEvent;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+@Component
+public class CommentSearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(CommentSearchIndex.class);
+
+    // Параметры BM25.
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private static final Comparator<Hit> BEST_FIRST = Comparator
+            .comparingDouble(Hit::score).reversed()
+            .thenComparing(Comparator.comparingInt(Hit::commentId).reversed());
+
+    public record Hit(int commentId, double score) {
+    }
+
+    public record Result(List<Hit> hits, int total) {
+    }
+
+    private record Document(int movieId, int userId, int length, String[] terms) {
+    }
+
+    private final CommentBatchDao commentBatchDao;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Contents current = new Contents();
+    // Изменения, пришедшие во время перестроения: повторяются на новом индексе перед
+    // подменой. Все они идемпотентны, поэтому уже прочитанные из базы не мешают.
+    private List<Consumer<Contents>> pending;
+
+    @Autowired
+    public CommentSearchIndex(CommentBatchDao commentBatchDao) {
+        this.commentBatchDao = commentBatchDao;
+    }
+
+    // Находит комментарии, содержащие все слова запроса, и возвращает отрезок
+    // [offset, offset + limit) лучших по BM25: в куче держится только offset + limit записей.
+    public Result search(String query, Integer movieId, Integer userId, int offset, int limit) {
+        List<String> terms = CommentTokenizer.tokenize(query).stream().distinct().toList();
+        if (terms.isEmpty()) {
+            return new Result(List.of(), 0);
+        }
+
+        lock.readLock().lock();
+        try {
+            Map<String, IntCountMap> postings = current.postings;
+            Map<Integer, Document> documents = current.documents;
+            long totalLength = current.totalLength;
+            List<IntCountMap> lists = new ArrayList<>(terms.size());
+            for (String term : terms) {
+                IntCountMap list = postings.get(term);
+                if (list == null) {
+                    return new Result(List.of(), 0);
+                }
+                lists.add(list);
+            }
+            lists.sort(Comparator.comparingInt(IntCountMap::size));
+
+            double averageLength = documents.isEmpty()
+                    ? 1 : (double) totalLength / documents.size();
+            double[] idf = lists.stream().mapToDouble(list -> Math.log(1
+                    + (documents.size() - list.size() + 0.5) / (list.size() + 0.5))).toArray();
+            IntPredicate matchesFilter = commentId -> {
+                Document document = documents.get(commentId);
+                return (movieId == null || document.movieId() == movieId)
+                        && (userId == null || document.userId() == userId);
+            };
+
+            int window = offset + limit;
+            PriorityQueue<Hit> best = new PriorityQueue<>(window + 1, BEST_FIRST.reversed());
+            int[] total = new int[1];
+            lists.getFirst().forEach((commentId, ignored) -> {
+                for (int i = 1; i < lists.size(); i++) {
+                    if (!lists.get(i).contains(commentId)) {
+                        return;
+                    }
+                }
+                if (!matchesFilter.test(commentId)) {
+                    return;
+                }
+                total[0]++;
+                double lengthNorm = K1 * (1 - B + B * documents.get(commentId).length()
+                        / averageLength);
+                double score = 0;
+                for (int i = 0; i < lists.size(); i++) {
+                    int frequency = lists.get(i).get(commentId);
+                    score += idf[i] * frequency * (K1 + 1) / (frequency + lengthNorm);
+                }
+                best.add(new Hit(commentId, score));
+                if (best.size() > window) {
+                    best.poll();
+                }
+            });
+
+            List<Hit> hits = new ArrayList<>(best);
+            hits.sort(BEST_FIRST);
+            List<Hit> page = offset >= hits.size()
+                    ? List.of() : new ArrayList<>(hits.subList(offset, hits.size()));
+            return new Result(page, total[0]);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Индекс строится без блокировки в отдельных картах, поиск и события тем временем
+    // работают со старым. Под блокировкой только повтор накопленных событий и подмена.
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        lock.writeLock().lock();
+        try {
+            pending = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Contents built = new Contents();
+        boolean loaded = false;
+        try {
+            commentBatchDao.streamComments(rs -> built.add(rs.getInt("id"),
+                    rs.getInt("movie_id"), rs.getInt("user_id"), rs.getString("content")));
+            loaded = true;
+        } finally {
+            lock.writeLock().lock();
+            try {
+                if (loaded) {
+                    pending.forEach(change -> change.accept(built));
+                    current = built;
+                }
+                pending = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        log.info("Поисковый индекс комментариев построен: {} комментариев, {} слов",
+                built.documents.size(), built.postings.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCommentEvent(CommentEvent event) {
+        apply(contents -> {
+            contents.remove(event.commentId());
+            if (event.type() != CommentEvent.Type.DELETED) {
+                contents.add(event.commentId(), event.movieId(), event.userId(),
+                        event.content());
+            }
+        });
+    }
+
+    // Каскадное удаление фильма или пользователя не публикует событий по комментариям,
+    // поэтому их документы ищутся перебором: такие удаления редки.
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMovieEvent(MovieEvent event) {
+        if (event.type() == MovieEvent.Type.DELETED) {
+            apply(contents -> contents.removeWhere(
+                    document -> document.movieId() == event.movieId()));
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserEvent(UserEvent event) {
+        if (event.type() == UserEvent.Type.DELETED) {
+            apply(contents -> contents.removeWhere(
+                    document -> document.userId() == event.userId()));
+        }
+    }
+
+    private void apply(Consumer<Contents> change) {
+        lock.writeLock().lock();
+        try {
+            change.accept(current);
+            if (pending != null) {
+                pending.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static final class Contents {
+
+        private final Map<String, IntCountMap> postings = new HashMap<>();
+        private final Map<Integer, Document> documents = new HashMap<>();
+        private long totalLength;
+
+        private void add(int commentId, int movieId, int userId, String content) {
+            List<String> tokens = CommentTokenizer.tokenize(content);
+            if (tokens.isEmpty()) {
+                return;
+            }
+            Map<String, Integer> frequencies = new HashMap<>();
+            for (String token : tokens) {
+                frequencies.merge(token, 1, Integer::sum);
+            }
+            frequencies.forEach((term, frequency) -> postings
+                    .computeIfAbsent(term, key -> new IntCountMap()).add(commentId, frequency));
+            documents.put(commentId, new Document(movieId, userId, tokens.size(),
+                    frequencies.keySet().toArray(new String[0])));
+            totalLength += tokens.size();
+        }
+
+        private void remove(int commentId) {
+            Document document = documents.remove(commentId);
+            if (document == null) {
+                return;
+            }
+            for (String term : document.terms()) {
+                IntCountMap list = postings.get(term);
+                if (list != null) {
+                    list.remove(commentId);
+                    if (list.isEmpty()) {
+                        postings.remove(term);
+                    }
+                }
+            }
+            totalLength -= document.length();
+        }
+
+        private void removeWhere(Predicate<Document> condition) {
+            List<Integer> commentIds = documents.entrySet().stream()
+                    .filter(entry -> condition.test(entry.getValue()))
+                    .map(Map.Entry::getKey)
+                    .toList();
+            commentIds.forEach(this::remove);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.movio.moviolab.index;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+// Разбивает текст на слова, приводит к нижнему регистру и отрезает частые окончания
+// русских и английских слов, чтобы "фильмы" находились по запросу "фильм".
+public final class CommentTokenizer {
+
+    private static final int MIN_STEM = 3;
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "и", "в", "во", "не", "что", "он", "на", "я", "с", "со", "как", "а", "то", "все",
+            "она", "так", "его", "но", "да", "ты", "к", "у", "же", "вы", "за", "бы", "по",
+            "только", "ее", "мне", "было", "вот", "от", "меня", "еще", "нет", "о", "из", "ему",
+            "это", "the", "a", "an", "and", "or", "of", "to", "in", "on", "at", "is", "it",
+            "this", "that", "was", "for", "with", "as", "be", "are", "but", "not");
+
+    // Отсортированы по убыванию длины: отрезается самое длинное подходящее окончание.
+    private static final String[] RUSSIAN_SUFFIXES = {
+        "иями", "ями", "ами", "ого", "его", "ому", "ему", "ыми", "ими", "ией", "ать", "ять",
+        "ить", "ешь", "ете", "ишь", "ите", "ая", "яя", "ое", "ее", "ые", "ие", "ый", "ий",
+        "ой", "ую", "юю", "ом", "ем", "ам", "ям", "ах", "ях", "ов", "ев", "ей", "ия", "ью",
+        "ть", "ет", "ит", "ут", "ют", "ат", "ят", "ла", "ли", "ло",
+        "а", "я", "о", "е", "ы", "и", "у", "ю", "ь", "й"
+    };
+    private static final String[] ENGLISH_SUFFIXES = {"ing", "ed", "ly", "s"};
+
+    private CommentTokenizer() {
+    }
+
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        String normalized = text.toLowerCase(Locale.ROOT).replace('ё', 'е');
+        int start = -1;
+        for (int i = 0; i <= normalized.length(); i++) {
+            boolean wordChar = i < normalized.length()
+                    && Character.isLetterOrDigit(normalized.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                addToken(tokens, normalized.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private static void addToken(List<String> tokens, String word) {
+        if (word.length() < 2 || STOP_WORDS.contains(word)) {
+            return;
+        }
+        tokens.add(stem(word));
+    }
+
+    static String stem(String word) {
+        String[] suffixes = isCyrillic(word) ? RUSSIAN_SUFFIXES : ENGLISH_SUFFIXES;
+        for (String suffix : suffixes) {
+            if (word.endsWith(suffix) && word.length() - suffix.length() >= MIN_STEM) {
+                return word.substring(0, word.length() - suffix.length());
+            }
+        }
+        return word;
+    }
+
+    private static boolean isCyrillic(String word) {
+        return Character.UnicodeBlock.of(word.charAt(0)) == Character.UnicodeBlock.CYRILLIC;
+    }
+}
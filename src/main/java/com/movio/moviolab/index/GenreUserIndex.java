@@ -0,0 +1,203 @@
+package com.movio.moviolab.index;
+
+import com.movio.moviolab.dao.MovieDao;
+import com.movio.moviolab.events.MovieEvent;
+import com.movio.moviolab.events.MovieUserEvent;
+import com.movio.moviolab.events.UserEvent;
+import com.movio.moviolab.models.Movie;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+// Запросы к базе выполняются без блокировки, под ней только применяется результат,
+// чтобы поиск по жанру не ждал чужих обращений к базе. Каждое изменение жанра
+// увеличивает его версию: если за время чтения из базы версия сменилась, прочитанное
+// могло устареть, и чтение повторяется. После RELOAD_ATTEMPTS неудач жанр читается
+// под блокировкой, как раньше, чтобы поток событий не откладывал пересчет бесконечно.
+@Component
+public class GenreUserIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(GenreUserIndex.class);
+    private static final int RELOAD_ATTEMPTS = 3;
+
+    private final MovieDao movieDao;
+
+    private final Map<Integer, String> movieGenres = new HashMap<>();
+    private final Map<String, GenreUsers> genres = new HashMap<>();
+    private final Map<String, Long> versions = new HashMap<>();
+    private boolean ready;
+
+    @Autowired
+    public GenreUserIndex(MovieDao movieDao) {
+        this.movieDao = movieDao;
+    }
+
+    public synchronized Optional<List<Integer>> userIds(String genre) {
+        if (!ready) {
+            return Optional.empty();
+        }
+        GenreUsers genreUsers = genres.get(key(genre));
+        return Optional.of(genreUsers == null ? List.of() : genreUsers.ids());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        movieGenres.clear();
+        genres.clear();
+        for (Object[] row : movieDao.findAllGenres()) {
+            if (row[1] != null) {
+                movieGenres.put(((Number) row[0]).intValue(), key((String) row[1]));
+            }
+        }
+        for (Object[] row : movieDao.countLinksByGenreAndUser()) {
+            if (row[0] != null) {
+                genres.computeIfAbsent(key((String) row[0]), genre -> new GenreUsers())
+                        .add(((Number) row[1]).intValue(), ((Number) row[2]).intValue());
+            }
+        }
+        ready = true;
+        log.info("Индекс пользователей по жанрам построен: {} жанров", genres.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMovieUserEvent(MovieUserEvent event) {
+        String genre = genreOf(event.movieId());
+        if (genre == null) {
+            return;
+        }
+        int delta = event.type() == MovieUserEvent.Type.LINKED ? 1 : -1;
+        synchronized (this) {
+            genres.computeIfAbsent(genre, key -> new GenreUsers()).add(event.userId(), delta);
+            touch(genre);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMovieEvent(MovieEvent event) {
+        String oldGenre = key(event.oldGenre());
+        if (event.type() == MovieEvent.Type.DELETED) {
+            synchronized (this) {
+                movieGenres.remove(event.movieId());
+            }
+            reload(oldGenre);
+            return;
+        }
+        String genre = key(event.genre());
+        synchronized (this) {
+            if (genre == null) {
+                movieGenres.remove(event.movieId());
+            } else {
+                movieGenres.put(event.movieId(), genre);
+            }
+        }
+        // Связи фильма со старым жанром событие не перечисляет: оба жанра
+        // пересчитываем по базе, смена жанра случается редко.
+        if (!Objects.equals(oldGenre, genre)) {
+            reload(oldGenre);
+            reload(genre);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onUserEvent(UserEvent event) {
+        if (event.type() == UserEvent.Type.DELETED) {
+            genres.forEach((genre, genreUsers) -> {
+                genreUsers.remove(event.userId());
+                touch(genre);
+            });
+        }
+    }
+
+    private String genreOf(Integer movieId) {
+        synchronized (this) {
+            String genre = movieGenres.get(movieId);
+            if (genre != null) {
+                return genre;
+            }
+        }
+        String genre = movieDao.findById(movieId).map(Movie::getGenre).map(this::key)
+                .orElse(null);
+        if (genre != null) {
+            synchronized (this) {
+                movieGenres.putIfAbsent(movieId, genre);
+            }
+        }
+        return genre;
+    }
+
+    private void reload(String genre) {
+        if (genre == null) {
+            return;
+        }
+        for (int attempt = 0; attempt < RELOAD_ATTEMPTS; attempt++) {
+            long version;
+            synchronized (this) {
+                version = versions.getOrDefault(genre, 0L);
+            }
+            GenreUsers genreUsers = load(genre);
+            synchronized (this) {
+                if (versions.getOrDefault(genre, 0L) == version) {
+                    genres.put(genre, genreUsers);
+                    touch(genre);
+                    return;
+                }
+            }
+        }
+        synchronized (this) {
+            genres.put(genre, load(genre));
+            touch(genre);
+        }
+    }
+
+    private GenreUsers load(String genre) {
+        GenreUsers genreUsers = new GenreUsers();
+        for (Object[] row : movieDao.countLinksByUserForGenre(genre)) {
+            genreUsers.add(((Number) row[0]).intValue(), ((Number) row[1]).intValue());
+        }
+        return genreUsers;
+    }
+
+    // Вызывается под блокировкой.
+    private void touch(String genre) {
+        versions.merge(genre, 1L, Long::sum);
+    }
+
+    private String key(String genre) {
+        return genre == null ? null : genre.toLowerCase(Locale.ROOT);
+    }
+
+    private static final class GenreUsers {
+        private final BitSet users = new BitSet();
+        private final Map<Integer, Integer> links = new HashMap<>();
+
+        void add(int userId, int delta) {
+            int updated = links.getOrDefault(userId, 0) + delta;
+            if (updated > 0) {
+                links.put(userId, updated);
+                users.set(userId);
+            } else {
+                remove(userId);
+            }
+        }
+
+        void remove(int userId) {
+            links.remove(userId);
+            users.clear(userId);
+        }
+
+        List<Integer> ids() {
+            return users.stream().boxed().toList();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.movio.moviolab.index;
+
+import java.util.Arrays;
+
+// Счетчики int -> int на открытой адресации без упаковки в Integer.
+// Ключи неотрицательные, записи с нулевым счетчиком удаляются.
+public final class IntCountMap {
+
+    private static final int FREE = -1;
+
+    private int[] keys;
+    private int[] counts;
+    private int mask;
+    private int size;
+
+    public IntCountMap() {
+        this(4);
+    }
+
+    public IntCountMap(int expectedSize) {
+        int capacity = 8;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    public int get(int key) {
+        int slot = slotOf(key);
+        return keys[slot] == key ? counts[slot] : 0;
+    }
+
+    public boolean contains(int key) {
+        return keys[slotOf(key)] == key;
+    }
+
+    public int add(int key, int delta) {
+        if (key < 0) {
+            throw new IllegalArgumentException("Ключ должен быть неотрицательным: " + key);
+        }
+        int slot = slotOf(key);
+        if (keys[slot] == key) {
+            int updated = counts[slot] + delta;
+            if (updated <= 0) {
+                removeAt(slot);
+                return 0;
+            }
+            counts[slot] = updated;
+            return updated;
+        }
+        if (delta <= 0) {
+            return 0;
+        }
+        keys[slot] = key;
+        counts[slot] = delta;
+        if (++size * 2 > keys.length) {
+            rehash(keys.length << 1);
+        }
+        return delta;
+    }
+
+    public void remove(int key) {
+        int slot = slotOf(key);
+        if (keys[slot] == key) {
+            removeAt(slot);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int[] keys() {
+        int[] result = new int[size];
+        int i = 0;
+        for (int key : keys) {
+            if (key != FREE) {
+                result[i++] = key;
+            }
+        }
+        return result;
+    }
+
+    public void forEach(EntryConsumer consumer) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != FREE) {
+                consumer.accept(keys[slot], counts[slot]);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(int key, int count);
+    }
+
+    private int slotOf(int key) {
+        int slot = home(key);
+        while (keys[slot] != FREE && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private int home(int key) {
+        int hash = key * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private void removeAt(int slot) {
+        // Сдвигаем следующие записи цепочки назад, чтобы не оставлять "надгробий".
+        int gap = slot;
+        int next = (slot + 1) & mask;
+        while (keys[next] != FREE) {
+            if (((next - home(keys[next])) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                counts[gap] = counts[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = FREE;
+        counts[gap] = 0;
+        size--;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldCounts = counts;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                int slot = slotOf(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        Arrays.fill(keys, FREE);
+        counts = new int[capacity];
+        mask = capacity - 1;
+    }
+}
@@ -0,0 +1,267 @@
+package com.movio.moviolab.index;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+// Индекс текущего лог-файла: для каждой минуты хранит смещение первой строки этой минуты.
+// Строится инкрементально - при каждом обращении дочитываются только новые байты файла -
+// и сохраняется рядом с логом (application.log.idx), чтобы после перезапуска не читать
+// файл с начала. Архивы .gz не индексируются: по ним нельзя перейти к смещению.
+@Component
+public class LogTimeIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(LogTimeIndex.class);
+
+    // Строки начинаются с "yyyy-MM-dd HH:mm:ss" (logging.pattern.file).
+    private static final int MINUTE_PREFIX_LENGTH = 16;
+    private static final int FINGERPRINT_LENGTH = 19;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final String HEADER_PREFIX = "# ";
+
+    // Отрезок [start, end) текущего файла; end - конец последней полной строки.
+    public record Range(long start, long end) {
+        public boolean isEmpty() {
+            return start >= end;
+        }
+    }
+
+    private final Path logFile;
+    private final Path indexFile;
+
+    private final NavigableMap<Long, Long> offsets = new TreeMap<>();
+    private String fingerprint;
+    private long indexedBytes;
+    private long lastMinute = Long.MIN_VALUE;
+    private boolean loaded;
+
+    @Autowired
+    public LogTimeIndex(@Value("${logging.file.name}") String logFilePath) {
+        this.logFile = Path.of(logFilePath);
+        this.indexFile = logFile.resolveSibling(logFile.getFileName() + ".idx");
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        try {
+            synchronized (this) {
+                refresh();
+                log.info("Индекс лог-файла готов: {} минут", offsets.size());
+            }
+        } catch (IOException e) {
+            log.warn("Не удалось построить индекс лог-файла: {}", e.getMessage());
+        }
+    }
+
+    // Смещения строк со временем из [from, to). Границы округляются до минут наружу,
+    // поэтому крайние строки отрезка вызывающий код всё равно проверяет по времени.
+    public synchronized Range range(LocalDateTime from, LocalDateTime to) throws IOException {
+        refresh();
+        long start = offsetFrom(minuteOf(from));
+        LocalDateTime ceiling = to.truncatedTo(ChronoUnit.MINUTES).equals(to)
+                ? to : to.truncatedTo(ChronoUnit.MINUTES).plusMinutes(1);
+        long end = offsetFrom(minuteOf(ceiling));
+        return new Range(start, Math.max(start, end));
+    }
+
+    private long offsetFrom(long minute) {
+        Map.Entry<Long, Long> entry = offsets.ceilingEntry(minute);
+        return entry == null ? indexedBytes : entry.getValue();
+    }
+
+    private void refresh() throws IOException {
+        if (!Files.exists(logFile)) {
+            reset("");
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.READ)) {
+            long size = channel.size();
+            String currentFingerprint = readFingerprint(channel);
+            if (!loaded) {
+                loaded = true;
+                load(currentFingerprint, size);
+            }
+            // Файл стал короче или начинается иначе - его заменила ротация.
+            if (size < indexedBytes || !currentFingerprint.equals(fingerprint)) {
+                reset(currentFingerprint);
+            }
+            if (size > indexedBytes) {
+                scan(channel, size);
+            }
+        }
+    }
+
+    private void scan(FileChannel channel, long size) throws IOException {
+        List<long[]> added = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        byte[] prefix = new byte[MINUTE_PREFIX_LENGTH];
+        int prefixLength = 0;
+        long lineStart = indexedBytes;
+        long position = indexedBytes;
+
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                byte b = buffer.get(i);
+                if (b == '\n') {
+                    long minute = parseMinute(prefix, prefixLength);
+                    if (minute > lastMinute) {
+                        lastMinute = minute;
+                        offsets.put(minute, lineStart);
+                        added.add(new long[] {minute, lineStart});
+                    }
+                    lineStart = position + i + 1;
+                    prefixLength = 0;
+                } else if (prefixLength < MINUTE_PREFIX_LENGTH) {
+                    prefix[prefixLength++] = b;
+                }
+            }
+            position += read;
+        }
+        // Недописанная последняя строка будет прочитана при следующем обращении.
+        indexedBytes = lineStart;
+        append(added);
+    }
+
+    // Минута от начала эпохи или Long.MIN_VALUE, если строка не начинается со времени
+    // (продолжение стектрейса, многострочное сообщение).
+    private static long parseMinute(byte[] prefix, int length) {
+        if (length < MINUTE_PREFIX_LENGTH || prefix[4] != '-' || prefix[7] != '-'
+                || prefix[10] != ' ' || prefix[13] != ':') {
+            return Long.MIN_VALUE;
+        }
+        int year = digits(prefix, 0, 4);
+        int month = digits(prefix, 5, 2);
+        int day = digits(prefix, 8, 2);
+        int hour = digits(prefix, 11, 2);
+        int minute = digits(prefix, 14, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59) {
+            return Long.MIN_VALUE;
+        }
+        try {
+            return minuteOf(LocalDateTime.of(year, month, day, hour, minute));
+        } catch (DateTimeException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    private static int digits(byte[] bytes, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static long minuteOf(LocalDateTime time) {
+        // Смещение UTC только кодирует локальное время лога числом, зона не учитывается.
+        return time.toEpochSecond(ZoneOffset.UTC) / 60;
+    }
+
+    private static String readFingerprint(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(FINGERPRINT_LENGTH);
+        int read = channel.read(buffer, 0);
+        return read <= 0 ? "" : new String(buffer.array(), 0, read, StandardCharsets.ISO_8859_1);
+    }
+
+    private void reset(String newFingerprint) throws IOException {
+        offsets.clear();
+        indexedBytes = 0;
+        lastMinute = Long.MIN_VALUE;
+        fingerprint = newFingerprint;
+        if (Files.exists(logFile)) {
+            Files.writeString(indexFile, HEADER_PREFIX + newFingerprint + "\n",
+                    StandardCharsets.ISO_8859_1);
+        } else {
+            Files.deleteIfExists(indexFile);
+        }
+    }
+
+    // Читает сохраненный индекс, если он относится к этому же файлу. Сканирование
+    // продолжается с начала последней известной минуты: её строки повторно не добавятся.
+    private void load(String currentFingerprint, long size) throws IOException {
+        if (!Files.exists(indexFile)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(indexFile,
+                StandardCharsets.ISO_8859_1)) {
+            String header = reader.readLine();
+            if (header == null || !header.equals(HEADER_PREFIX + currentFingerprint)) {
+                return;
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int space = line.indexOf(' ');
+                if (space < 0) {
+                    break;
+                }
+                long minute;
+                long offset;
+                try {
+                    minute = Long.parseLong(line.substring(0, space));
+                    offset = Long.parseLong(line.substring(space + 1));
+                } catch (NumberFormatException e) {
+                    // Запись, оборванная при остановке, - дальше ничего нет.
+                    break;
+                }
+                if (minute <= lastMinute || offset < indexedBytes || offset > size) {
+                    break;
+                }
+                offsets.put(minute, offset);
+                lastMinute = minute;
+                indexedBytes = offset;
+            }
+        }
+        fingerprint = currentFingerprint;
+        rewrite();
+    }
+
+    private void rewrite() throws IOException {
+        StringBuilder content = new StringBuilder(HEADER_PREFIX).append(fingerprint).append('\n');
+        offsets.forEach((minute, offset) ->
+                content.append(minute).append(' ').append(offset).append('\n'));
+        Files.writeString(indexFile, content, StandardCharsets.ISO_8859_1);
+    }
+
+    private void append(List<long[]> entries) throws IOException {
+        if (entries.isEmpty()) {
+            return;
+        }
+        StringBuilder content = new StringBuilder();
+        for (long[] entry : entries) {
+            content.append(entry[0]).append(' ').append(entry[1]).append('\n');
+        }
+        Files.writeString(indexFile, content, StandardCharsets.ISO_8859_1,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+}
@@ -0,0 +1,194 @@
+package com.movio.moviolab.index;
+
+import com.movio.moviolab.dao.CommentDao;
+import com.movio.moviolab.dao.MovieDao;
+import com.movio.moviolab.events.CommentEvent;
+import com.movio.moviolab.events.MovieEvent;
+import com.movio.moviolab.events.MovieUserEvent;
+import com.movio.moviolab.events.UserEvent;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+@Component
+public class MovieLeaderboard {
+
+    private static final Logger log = LoggerFactory.getLogger(MovieLeaderboard.class);
+
+    public enum Metric { COMMENTS, USERS }
+
+    public record Entry(Integer movieId, long count) {
+    }
+
+    private final CommentDao commentDao;
+    private final MovieDao movieDao;
+    private final Map<Metric, Board> boards = new EnumMap<>(Metric.class);
+
+    @Autowired
+    public MovieLeaderboard(CommentDao commentDao, MovieDao movieDao) {
+        this.commentDao = commentDao;
+        this.movieDao = movieDao;
+        for (Metric metric : Metric.values()) {
+            boards.put(metric, new Board());
+        }
+    }
+
+    public List<Entry> top(Metric metric, int limit) {
+        return boards.get(metric).top(limit);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        rebuild(boards.get(Metric.COMMENTS), commentDao::countCommentsByMovie);
+        rebuild(boards.get(Metric.USERS), movieDao::countUsersByMovie);
+        log.info("Рейтинги фильмов перестроены из базы данных");
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCommentEvent(CommentEvent event) {
+        if (event.type() == CommentEvent.Type.CREATED) {
+            boards.get(Metric.COMMENTS).add(event.movieId(), 1);
+        } else if (event.type() == CommentEvent.Type.DELETED) {
+            boards.get(Metric.COMMENTS).add(event.movieId(), -1);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMovieUserEvent(MovieUserEvent event) {
+        int delta = event.type() == MovieUserEvent.Type.LINKED ? 1 : -1;
+        boards.get(Metric.USERS).add(event.movieId(), delta);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMovieEvent(MovieEvent event) {
+        if (event.type() == MovieEvent.Type.DELETED) {
+            boards.values().forEach(board -> board.remove(event.movieId()));
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserEvent(UserEvent event) {
+        if (event.type() != UserEvent.Type.DELETED) {
+            return;
+        }
+        for (Integer movieId : event.movieIds()) {
+            boards.get(Metric.USERS).add(movieId, -1);
+        }
+        event.commentCountsByMovie().forEach((movieId, count) ->
+                boards.get(Metric.COMMENTS).add(movieId, -count));
+    }
+
+    // События, пришедшие, пока идет запрос, запоминаются и повторяются поверх
+    // прочитанных счетчиков, иначе reset затер бы их.
+    private void rebuild(Board board, Supplier<List<Object[]>> query) {
+        board.beginReset();
+        try {
+            board.reset(toCounts(query.get()));
+        } finally {
+            board.endReset();
+        }
+    }
+
+    private Map<Integer, Long> toCounts(List<Object[]> rows) {
+        Map<Integer, Long> counts = new HashMap<>(rows.size() * 2);
+        for (Object[] row : rows) {
+            if (row[0] != null) {
+                counts.put(((Number) row[0]).intValue(), ((Number) row[1]).longValue());
+            }
+        }
+        return counts;
+    }
+
+    private static final class Board {
+        private static final Comparator<Entry> RANKING = Comparator
+                .comparingLong(Entry::count).reversed()
+                .thenComparing(Entry::movieId);
+
+        private final Map<Integer, Long> counts = new HashMap<>();
+        private final NavigableSet<Entry> ranking = new TreeSet<>(RANKING);
+        // Изменения с начала перестроения; null вне перестроения.
+        private List<Consumer<Board>> pending;
+
+        synchronized void add(Integer movieId, long delta) {
+            change(board -> board.applyAdd(movieId, delta));
+        }
+
+        synchronized void remove(Integer movieId) {
+            change(board -> board.applyRemove(movieId));
+        }
+
+        synchronized void beginReset() {
+            pending = new ArrayList<>();
+        }
+
+        synchronized void endReset() {
+            pending = null;
+        }
+
+        private void change(Consumer<Board> change) {
+            change.accept(this);
+            if (pending != null) {
+                pending.add(change);
+            }
+        }
+
+        private void applyAdd(Integer movieId, long delta) {
+            long current = counts.getOrDefault(movieId, 0L);
+            long updated = Math.max(0, current + delta);
+            if (current > 0) {
+                ranking.remove(new Entry(movieId, current));
+            }
+            if (updated > 0) {
+                counts.put(movieId, updated);
+                ranking.add(new Entry(movieId, updated));
+            } else {
+                counts.remove(movieId);
+            }
+        }
+
+        private void applyRemove(Integer movieId) {
+            Long current = counts.remove(movieId);
+            if (current != null) {
+                ranking.remove(new Entry(movieId, current));
+            }
+        }
+
+        synchronized void reset(Map<Integer, Long> newCounts) {
+            counts.clear();
+            ranking.clear();
+            newCounts.forEach((movieId, count) -> {
+                if (count > 0) {
+                    counts.put(movieId, count);
+                    ranking.add(new Entry(movieId, count));
+                }
+            });
+            if (pending != null) {
+                pending.forEach(change -> change.accept(this));
+            }
+        }
+
+        synchronized List<Entry> top(int limit) {
+            List<Entry> result = new ArrayList<>(Math.min(limit, ranking.size()));
+            Iterator<Entry> iterator = ranking.iterator();
+            while (iterator.hasNext() && result.size() < limit) {
+                result.add(iterator.next());
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.movio.moviolab.index;
+
+import com.movio.moviolab.events.MovieEvent;
+import com.movio.moviolab.events.MovieUserEvent;
+import com.movio.moviolab.events.UserEvent;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+@Component
+public class SimilarUserIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(SimilarUserIndex.class);
+
+    private static final long PRIME = (1L << 31) - 1;
+    private static final long SEED = 42;
+
+    private static final Comparator<Match> BEST_FIRST = Comparator
+            .comparingDouble(Match::similarity).reversed()
+            .thenComparingInt(Match::userId);
+
+    public record Match(int userId, double similarity) {
+    }
+
+    private final CoOccurrenceIndex coOccurrenceIndex;
+    private final int bands;
+    private final int rows;
+    private final int maxCandidates;
+    private final long[] hashA;
+    private final long[] hashB;
+
+    private final Map<Integer, int[]> signatures = new HashMap<>();
+    private final Map<Long, IntCountMap> buckets = new HashMap<>();
+
+    @Autowired
+    public SimilarUserIndex(CoOccurrenceIndex coOccurrenceIndex,
+                            @Value("${moviolab.similar-users.bands:20}") int bands,
+                            @Value("${moviolab.similar-users.rows:5}") int rows,
+                            @Value("${moviolab.similar-users.max-candidates:1000}")
+                            int maxCandidates) {
+        if (bands < 1 || rows < 1 || maxCandidates < 1) {
+            throw new IllegalArgumentException("Параметры LSH должны быть положительными");
+        }
+        this.coOccurrenceIndex = coOccurrenceIndex;
+        this.bands = bands;
+        this.rows = rows;
+        this.maxCandidates = maxCandidates;
+
+        int hashes = bands * rows;
+        this.hashA = new long[hashes];
+        this.hashB = new long[hashes];
+        Random random = new Random(SEED);
+        for (int i = 0; i < hashes; i++) {
+            hashA[i] = 1 + random.nextInt((int) PRIME - 1);
+            hashB[i] = random.nextInt((int) PRIME);
+        }
+    }
+
+    public synchronized List<Match> similar(Integer userId, int limit) {
+        int[] signature = signatures.get(userId);
+        if (signature == null) {
+            return List.of();
+        }
+
+        IntCountMap candidates = new IntCountMap(64);
+        for (int band = 0; band < bands && candidates.size() < maxCandidates; band++) {
+            IntCountMap bucket = buckets.get(bandKey(band, signature));
+            if (bucket != null) {
+                bucket.forEach((candidate, ignored) -> candidates.add(candidate, 1));
+            }
+        }
+        candidates.remove(userId);
+
+        List<Match> matches = new ArrayList<>(candidates.size());
+        candidates.forEach((candidate, ignored) -> matches.add(new Match(candidate,
+                estimateSimilarity(signature, signatures.get(candidate)))));
+        matches.sort(BEST_FIRST);
+        return matches.size() > limit ? new ArrayList<>(matches.subList(0, limit)) : matches;
+    }
+
+    @Order(CoOccurrenceIndex.ORDER + 1)
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        int[] userIds = coOccurrenceIndex.users();
+        int[][] computed = new int[userIds.length][];
+        Arrays.parallelSetAll(computed, i -> signature(coOccurrenceIndex.moviesOf(userIds[i])));
+
+        signatures.clear();
+        buckets.clear();
+        for (int i = 0; i < userIds.length; i++) {
+            if (computed[i].length > 0) {
+                insert(userIds[i], computed[i]);
+            }
+        }
+        log.info("LSH-индекс похожих пользователей построен: {} пользователей, {}x{}",
+                userIds.length, bands, rows);
+    }
+
+    @Order(CoOccurrenceIndex.ORDER + 1)
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onMovieUserEvent(MovieUserEvent event) {
+        update(event.userId(), coOccurrenceIndex.moviesOf(event.userId()));
+    }
+
+    // Выполняется до CoOccurrenceIndex, пока зрители удаляемого фильма ещё известны.
+    @Order(CoOccurrenceIndex.ORDER - 1)
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onMovieEvent(MovieEvent event) {
+        if (event.type() != MovieEvent.Type.DELETED) {
+            return;
+        }
+        int movieId = event.movieId();
+        for (int userId : coOccurrenceIndex.usersOf(movieId)) {
+            int[] movies = Arrays.stream(coOccurrenceIndex.moviesOf(userId))
+                    .filter(other -> other != movieId)
+                    .toArray();
+            update(userId, movies);
+        }
+    }
+
+    @Order(CoOccurrenceIndex.ORDER + 1)
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onUserEvent(UserEvent event) {
+        if (event.type() == UserEvent.Type.DELETED) {
+            remove(event.userId());
+        }
+    }
+
+    private void update(int userId, int[] movies) {
+        remove(userId);
+        int[] signature = signature(movies);
+        if (signature.length > 0) {
+            insert(userId, signature);
+        }
+    }
+
+    private void insert(int userId, int[] signature) {
+        signatures.put(userId, signature);
+        for (int band = 0; band < bands; band++) {
+            buckets.computeIfAbsent(bandKey(band, signature), key -> new IntCountMap())
+                    .add(userId, 1);
+        }
+    }
+
+    private void remove(int userId) {
+        int[] signature = signatures.remove(userId);
+        if (signature == null) {
+            return;
+        }
+        for (int band = 0; band < bands; band++) {
+            long key = bandKey(band, signature);
+            IntCountMap bucket = buckets.get(key);
+            if (bucket != null) {
+                bucket.remove(userId);
+                if (bucket.isEmpty()) {
+                    buckets.remove(key);
+                }
+            }
+        }
+    }
+
+    private int[] signature(int[] movies) {
+        if (movies.length == 0) {
+            return new int[0];
+        }
+        int[] signature = new int[hashA.length];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        for (int movieId : movies) {
+            for (int i = 0; i < signature.length; i++) {
+                int hash = (int) ((hashA[i] * movieId + hashB[i]) % PRIME);
+                if (hash < signature[i]) {
+                    signature[i] = hash;
+                }
+            }
+        }
+        return signature;
+    }
+
+    private long bandKey(int band, int[] signature) {
+        long key = band * 0x9E3779B97F4A7C15L;
+        for (int row = band * rows; row < (band + 1) * rows; row++) {
+            key = (key ^ signature[row]) * 0x100000001B3L;
+        }
+        return key;
+    }
+
+    private double estimateSimilarity(int[] signature, int[] other) {
+        int equal = 0;
+        for (int i = 0; i < signature.length; i++) {
+            if (signature[i] == other[i]) {
+                equal++;
+            }
+        }
+        return (double) equal / signature.length;
+    }
+}
@@ -1,17 +1,32 @@
 package com.movio.moviolab.models;
 
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
 import jakarta.persistence.Table;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.UpdateTimestamp;
 
 @Entity
 @Getter
 @Setter
-@Table(name = "comments")
+@Table(name = "comments", indexes = {
+    @Index(name = "idx_comments_user_movie_hash",
+            columnList = "user_id, movie_id, content_hash"),
+    @Index(name = "idx_comments_movie_id_id", columnList = "movie_id, id"),
+    @Index(name = "idx_comments_user_id_id", columnList = "user_id, id")
+})
 public class Comment {
 
     @Id
@@ -19,6 +34,37 @@ public class Comment {
     private Integer id;
 
     private String content;
+
+    @Column(name = "user_id")
     private Integer userId;
+
+    @Column(name = "movie_id")
     private Integer movieId;
+
+    @Column(name = "content_hash")
+    private Long contentHash;
+
+    @UpdateTimestamp
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    public void computeContentHash() {
+        contentHash = hashContent(content);
+    }
+
+    // Первые 8 байт SHA-256: коллизии практически исключены, но при совпадении
+    // хэша текст всё равно сравнивается целиком.
+    public static long hashContent(String content) {
+        if (content == null) {
+            return 0L;
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(content.getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(digest).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
 }
@@ -2,6 +2,7 @@ package com.movio.moviolab.models;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.CascadeType;
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
@@ -12,10 +13,13 @@ import jakarta.persistence.JoinTable;
 import jakarta.persistence.ManyToMany;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.UpdateTimestamp;
 
 @Entity
 @Getter
@@ -30,6 +34,14 @@ public class Movie {
     private String genre;
     private Integer year;
 
+    // Меняется только атомарными UPDATE вместе с комментариями, поэтому сохранение
+    // загруженной сущности не должно перезаписывать его старым значением.
+    @Column(name = "comment_count", updatable = false)
+    private Long commentCount = 0L;
+
+    @UpdateTimestamp
+    private LocalDateTime updatedAt;
+
     @OneToMany(mappedBy = "movieId", fetch = FetchType.LAZY,
             cascade = CascadeType.ALL, orphanRemoval = true)
     private List<Comment> comments;
@@ -38,7 +50,9 @@ public class Movie {
     @JsonIgnore
     @JoinTable(name = "movie_user",
             joinColumns = @JoinColumn(name = "movie_id"),
-            inverseJoinColumns = @JoinColumn(name = "user_id")
+            inverseJoinColumns = @JoinColumn(name = "user_id"),
+            uniqueConstraints = @UniqueConstraint(name = "uk_movie_user",
+                    columnNames = {"movie_id", "user_id"})
     )
     private List<User> users = new ArrayList<>();
 }
@@ -0,0 +1,249 @@
+package com.movio.moviolab.readmodel;
+
+import com.movio.moviolab.dao.CommentBatchDao;
+import com.movio.moviolab.dao.MovieDao;
+import com.movio.moviolab.dao.UserDao;
+import com.movio.moviolab.events.CommentEvent;
+import com.movio.moviolab.events.MovieEvent;
+import com.movio.moviolab.events.UserEvent;
+import com.movio.moviolab.models.Movie;
+import com.movio.moviolab.models.User;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.IntUnaryOperator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// Кэш столбцов comment_count. Сами столбцы меняются в одной транзакции с комментариями,
+// а здесь после коммита к счётчикам прибавляются те же дельты.
+@Component
+public class CommentCounters {
+
+    private static final Logger log = LoggerFactory.getLogger(CommentCounters.class);
+    private static final int BACKFILL_BATCH_SIZE = 10_000;
+
+    private final MovieDao movieDao;
+    private final UserDao userDao;
+    private final CommentBatchDao commentBatchDao;
+    private final TransactionTemplate snapshotTransaction;
+
+    private final Map<Integer, LongAdder> movies = new ConcurrentHashMap<>();
+    private final Map<Integer, LongAdder> users = new ConcurrentHashMap<>();
+    // События, пришедшие во время загрузки снимка; null, пока загрузка не началась.
+    // Меняется и читается под блокировкой loading, пока счётчики не готовы.
+    private final Object loading = new Object();
+    private List<Object> pending;
+    private volatile boolean ready;
+
+    @Autowired
+    public CommentCounters(MovieDao movieDao, UserDao userDao, CommentBatchDao commentBatchDao,
+                           PlatformTransactionManager transactionManager) {
+        this.movieDao = movieDao;
+        this.userDao = userDao;
+        this.commentBatchDao = commentBatchDao;
+        this.snapshotTransaction = new TransactionTemplate(transactionManager);
+        this.snapshotTransaction.setReadOnly(true);
+        this.snapshotTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+    }
+
+    public long movieCount(Movie movie) {
+        return count(movies, movie.getId(), movie.getCommentCount());
+    }
+
+    public long userCount(User user) {
+        return count(users, user.getId(), user.getCommentCount());
+    }
+
+    // Снимок читается в транзакции REPEATABLE READ, а события, пришедшие во время чтения,
+    // копятся. Затем в той же транзакции проверяется, видны ли в снимке их комментарии,
+    // фильмы и пользователи: так видно, какие события снимок уже учел.
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long filled = backfill(movieDao::backfillCommentCounts)
+                + backfill(userDao::backfillCommentCounts);
+        if (filled > 0) {
+            log.info("Заполнены счётчики комментариев у {} фильмов и пользователей", filled);
+        }
+        synchronized (loading) {
+            pending = new ArrayList<>();
+        }
+        snapshotTransaction.executeWithoutResult(status -> {
+            List<Object[]> movieRows = movieDao.findCommentCounts();
+            List<Object[]> userRows = userDao.findCommentCounts();
+            synchronized (loading) {
+                load(movies, movieRows);
+                load(users, userRows);
+                replayAfterSnapshot(pending);
+                pending = null;
+                ready = true;
+            }
+        });
+        log.info("Счётчики комментариев загружены: {} фильмов, {} пользователей",
+                movies.size(), users.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCommentEvent(CommentEvent event) {
+        if (event.type() != CommentEvent.Type.UPDATED && !deferred(event)) {
+            apply(event);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMovieEvent(MovieEvent event) {
+        if (event.type() == MovieEvent.Type.DELETED && !deferred(event)) {
+            apply(event);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserEvent(UserEvent event) {
+        if (event.type() == UserEvent.Type.DELETED && !deferred(event)) {
+            apply(event);
+        }
+    }
+
+    // До готовности событие откладывается до сверки со снимком, а до начала загрузки
+    // отбрасывается: снимок его всё равно учтет.
+    private boolean deferred(Object event) {
+        if (ready) {
+            return false;
+        }
+        synchronized (loading) {
+            if (ready) {
+                return false;
+            }
+            if (pending != null) {
+                pending.add(event);
+            }
+            return true;
+        }
+    }
+
+    // Удаление фильма или пользователя видно в снимке, если его строки там уже нет.
+    // События комментариев повторяются по их видимости в снимке: создание считается,
+    // если комментария в снимке не было, удаление - если был. Комментарий, за которым
+    // в очереди идет учтенное снимком каскадное удаление, тоже учтен снимком.
+    private void replayAfterSnapshot(List<Object> events) {
+        List<Integer> commentIds = new ArrayList<>();
+        List<Integer> movieIds = new ArrayList<>();
+        List<Integer> userIds = new ArrayList<>();
+        for (Object event : events) {
+            switch (event) {
+                case CommentEvent comment -> commentIds.add(comment.commentId());
+                case MovieEvent movie -> movieIds.add(movie.movieId());
+                case UserEvent user -> userIds.add(user.userId());
+                default -> throw new IllegalStateException("Неизвестное событие " + event);
+            }
+        }
+        Map<Integer, Boolean> commentExists = new HashMap<>();
+        visible(commentIds, commentBatchDao::findExistingIds)
+                .forEach(id -> commentExists.put(id, true));
+        Set<Integer> visibleMovies = visible(movieIds, movieDao::findExistingIds);
+        Set<Integer> visibleUsers = visible(userIds, userDao::findExistingIds);
+
+        boolean[] counted = new boolean[events.size()];
+        Set<Integer> goneMovies = new HashSet<>();
+        Set<Integer> goneUsers = new HashSet<>();
+        for (int i = events.size() - 1; i >= 0; i--) {
+            switch (events.get(i)) {
+                case MovieEvent movie when !visibleMovies.contains(movie.movieId()) -> {
+                    goneMovies.add(movie.movieId());
+                    counted[i] = true;
+                }
+                case UserEvent user when !visibleUsers.contains(user.userId()) -> {
+                    goneUsers.add(user.userId());
+                    counted[i] = true;
+                }
+                case CommentEvent comment -> counted[i] = goneMovies.contains(comment.movieId())
+                        || goneUsers.contains(comment.userId());
+                default -> {
+                }
+            }
+        }
+
+        for (int i = 0; i < events.size(); i++) {
+            if (counted[i]) {
+                continue;
+            }
+            if (events.get(i) instanceof CommentEvent comment) {
+                boolean exists = commentExists.getOrDefault(comment.commentId(), false);
+                boolean created = comment.type() == CommentEvent.Type.CREATED;
+                if (exists == created) {
+                    continue;
+                }
+                commentExists.put(comment.commentId(), created);
+            }
+            apply(events.get(i));
+        }
+    }
+
+    private void apply(Object event) {
+        switch (event) {
+            case CommentEvent comment -> {
+                int delta = comment.type() == CommentEvent.Type.CREATED ? 1 : -1;
+                movies.computeIfAbsent(comment.movieId(), key -> new LongAdder()).add(delta);
+                users.computeIfAbsent(comment.userId(), key -> new LongAdder()).add(delta);
+            }
+            case MovieEvent movie -> {
+                movies.remove(movie.movieId());
+                subtract(users, movie.commentCountsByUser());
+            }
+            case UserEvent user -> {
+                users.remove(user.userId());
+                subtract(movies, user.commentCountsByMovie());
+            }
+            default -> throw new IllegalStateException("Неизвестное событие " + event);
+        }
+    }
+
+    private long count(Map<Integer, LongAdder> counters, Integer id, Long stored) {
+        if (!ready) {
+            return stored == null ? 0 : stored;
+        }
+        LongAdder counter = counters.get(id);
+        return counter == null ? 0 : Math.max(0, counter.sum());
+    }
+
+    private long backfill(IntUnaryOperator batch) {
+        long total = 0;
+        int updated;
+        do {
+            updated = batch.applyAsInt(BACKFILL_BATCH_SIZE);
+            total += updated;
+        } while (updated == BACKFILL_BATCH_SIZE);
+        return total;
+    }
+
+    private static Set<Integer> visible(List<Integer> ids,
+                                        Function<List<Integer>, List<Integer>> existing) {
+        return ids.isEmpty() ? Set.of() : new HashSet<>(existing.apply(ids));
+    }
+
+    private static void subtract(Map<Integer, LongAdder> counters, Map<Integer, Long> deltas) {
+        deltas.forEach((id, count) ->
+                counters.computeIfAbsent(id, key -> new LongAdder()).add(-count));
+    }
+
+    private static void load(Map<Integer, LongAdder> counters, List<Object[]> rows) {
+        for (Object[] row : rows) {
+            counters.computeIfAbsent(((Number) row[0]).intValue(), key -> new LongAdder())
+                    .add(((Number) row[1]).longValue());
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.movio.moviolab.readmodel;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.movio.moviolab.dto.MovieDto;
+import com.movio.moviolab.events.CommentEvent;
+import com.movio.moviolab.events.MovieEvent;
+import com.movio.moviolab.events.MovieUserEvent;
+import com.movio.moviolab.events.UserEvent;
+import com.movio.moviolab.services.MovieService;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@Component
+public class MovieDetailReadModel {
+
+    private final MovieService movieService;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnlyTransaction;
+
+    // Готовые JSON с вытеснением давно не читанных, как в InMemoryCache. loading хранит
+    // метку идущей загрузки фильма: инвалидация её снимает, и устаревший результат
+    // загрузки в модель не попадет. Обе карты меняются только под блокировкой details.
+    private final Map<Integer, byte[]> details;
+    private final Map<Integer, Object> loading = new HashMap<>();
+
+    @Autowired
+    public MovieDetailReadModel(MovieService movieService, ObjectMapper objectMapper,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${moviolab.movies.detail-cache.max-entries:10000}")
+                                int maxEntries) {
+        this.movieService = movieService;
+        this.objectMapper = objectMapper;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.details = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, byte[]> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public byte[] getJson(Integer movieId) {
+        byte[] json;
+        synchronized (details) {
+            json = details.get(movieId);
+        }
+        return json != null ? json : load(movieId);
+    }
+
+    public int size() {
+        synchronized (details) {
+            return details.size();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMovieEvent(MovieEvent event) {
+        invalidate(event.movieId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMovieUserEvent(MovieUserEvent event) {
+        invalidate(event.movieId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCommentEvent(CommentEvent event) {
+        invalidate(event.movieId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserEvent(UserEvent event) {
+        event.movieIds().forEach(this::invalidate);
+    }
+
+    private byte[] load(Integer movieId) {
+        Object ticket = new Object();
+        synchronized (details) {
+            loading.put(movieId, ticket);
+        }
+        try {
+            MovieDto movieDto = readOnlyTransaction.execute(status ->
+                    movieService.getMovieById(movieId));
+            byte[] json = serialize(movieDto);
+
+            // Запись могла закоммититься, пока мы читали фильм: тогда метку уже сняли,
+            // собранные байты устарели и в модель их класть нельзя.
+            synchronized (details) {
+                if (loading.get(movieId) == ticket) {
+                    details.put(movieId, json);
+                }
+            }
+            return json;
+        } finally {
+            synchronized (details) {
+                loading.remove(movieId, ticket);
+            }
+        }
+    }
+
+    // Удаляет и готовый JSON, и метку загрузки, поэтому после удаления фильма
+    // о нем в модели ничего не остается.
+    private void invalidate(Integer movieId) {
+        synchronized (details) {
+            details.remove(movieId);
+            loading.remove(movieId);
+        }
+    }
+
+    private byte[] serialize(MovieDto movieDto) {
+        try {
+            return objectMapper.writeValueAsBytes(movieDto);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Не удалось сериализовать фильм "
+                    + movieDto.getId(), e);
+        }
+    }
+}
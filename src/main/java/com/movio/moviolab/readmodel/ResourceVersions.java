@@ -0,0 +1,95 @@
+package com.movio.moviolab.readmodel;
+
+import com.movio.moviolab.events.CommentEvent;
+import com.movio.moviolab.events.MovieEvent;
+import com.movio.moviolab.events.MovieUserEvent;
+import com.movio.moviolab.events.UserEvent;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+@Component
+public class ResourceVersions {
+
+    private static final String MOVIE = "movie-";
+    private static final String MOVIE_USERS = "movie-users-";
+    private static final String USER_COMMENTS = "user-comments-";
+
+    // Метка запуска входит в ETag, чтобы после рестарта счётчики с нуля
+    // не совпали с тегами, выданными предыдущим процессом.
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final Map<String, Long> versions = new ConcurrentHashMap<>();
+
+    public String movieETag(Integer movieId) {
+        return etag(MOVIE + movieId);
+    }
+
+    public String movieUsersETag(Integer movieId) {
+        return etag(MOVIE_USERS + movieId);
+    }
+
+    public String userCommentsETag(Integer userId) {
+        return etag(USER_COMMENTS + userId);
+    }
+
+    // "*" означает "любое текущее представление", поэтому для отсутствующего ресурса
+    // он не совпадает: exists проверяется только в этом случае, обычный 304 базу не трогает.
+    public static boolean matches(String ifNoneMatch, String etag, BooleanSupplier exists) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        boolean any = false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag)) {
+                return true;
+            }
+            any |= tag.equals("*");
+        }
+        return any && exists.getAsBoolean();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMovieEvent(MovieEvent event) {
+        bump(MOVIE + event.movieId());
+        if (event.type() == MovieEvent.Type.DELETED) {
+            bump(MOVIE_USERS + event.movieId());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMovieUserEvent(MovieUserEvent event) {
+        bump(MOVIE + event.movieId());
+        bump(MOVIE_USERS + event.movieId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserEvent(UserEvent event) {
+        for (Integer movieId : event.movieIds()) {
+            bump(MOVIE + movieId);
+            bump(MOVIE_USERS + movieId);
+        }
+        if (event.type() == UserEvent.Type.DELETED) {
+            bump(USER_COMMENTS + event.userId());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCommentEvent(CommentEvent event) {
+        bump(MOVIE + event.movieId());
+        bump(USER_COMMENTS + event.userId());
+    }
+
+    private void bump(String key) {
+        versions.merge(key, 1L, Long::sum);
+    }
+
+    private String etag(String key) {
+        return "\"" + key + "-" + epoch + "-" + versions.getOrDefault(key, 0L) + "\"";
+    }
+}
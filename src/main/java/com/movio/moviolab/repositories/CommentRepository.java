@@ -1,11 +1,29 @@
 package com.movio.moviolab.repositories;
 
 import com.movio.moviolab.models.Comment;
+import java.util.List;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface CommentRepository extends JpaRepository<Comment, Integer> {
 
     boolean existsByUserIdAndMovieIdAndContent(Integer userId, Integer movieId, String content);
 
+    List<Comment> findByMovieIdAndIdGreaterThanOrderByIdAsc(Integer movieId, Integer id,
+                                                            Limit limit);
+
+    List<Comment> findByUserIdAndIdGreaterThanOrderByIdAsc(Integer userId, Integer id,
+                                                           Limit limit);
+
+    @Query("SELECT c.content FROM Comment c WHERE c.userId = :userId "
+            + "AND c.movieId = :movieId AND c.contentHash = :contentHash")
+    List<String> findContentsByHash(@Param("userId") Integer userId,
+                                    @Param("movieId") Integer movieId,
+                                    @Param("contentHash") Long contentHash);
+
+    @Query("SELECT c.movieId, COUNT(c) FROM Comment c GROUP BY c.movieId")
+    List<Object[]> countCommentsByMovie();
 
 }
@@ -1,11 +1,81 @@
 package com.movio.moviolab.repositories;
 
 import com.movio.moviolab.models.Movie;
+import java.util.Collection;
 import java.util.List;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface MovieRepository extends JpaRepository<Movie, Integer> {
 
     List<Movie> findByGenreIgnoreCaseAndYearAndTitleIgnoreCase(String genre,
                                                               Integer year, String title);
+
+    // Кандидаты в дубликаты для целой пачки импорта; точное совпадение жанра
+    // сравнивает вызывающий код.
+    @Query("SELECT m.genre, m.year, m.title FROM Movie m "
+            + "WHERE LOWER(m.title) IN :titles AND m.year IN :years")
+    List<Object[]> findKeysByTitlesAndYears(@Param("titles") Collection<String> titles,
+                                            @Param("years") Collection<Integer> years);
+
+    @Query(value = "SELECT movie_id, COUNT(*) FROM movie_user GROUP BY movie_id",
+            nativeQuery = true)
+    List<Object[]> countUsersByMovie();
+
+    @Query("SELECT m.id FROM Movie m WHERE m.id IN :ids")
+    List<Integer> findExistingIds(@Param("ids") Collection<Integer> ids);
+
+    @Query("SELECT m.id, m.genre FROM Movie m")
+    List<Object[]> findAllGenres();
+
+    @Query(value = "SELECT m.genre, mu.user_id, COUNT(*) FROM movie_user mu "
+            + "JOIN movies m ON m.id = mu.movie_id "
+            + "GROUP BY m.genre, mu.user_id", nativeQuery = true)
+    List<Object[]> countLinksByGenreAndUser();
+
+    @Query(value = "SELECT mu.user_id, COUNT(*) FROM movie_user mu "
+            + "JOIN movies m ON m.id = mu.movie_id "
+            + "WHERE m.genre = :genre GROUP BY mu.user_id", nativeQuery = true)
+    List<Object[]> countLinksByUserForGenre(@Param("genre") String genre);
+
+    // FOR UPDATE блокирует комментарии фильма до удаления, чтобы подсчитанное совпало
+    // с удаленным.
+    @Query(value = "SELECT user_id FROM comments WHERE movie_id = :movieId FOR UPDATE",
+            nativeQuery = true)
+    List<Integer> lockCommentUserIdsByMovieId(@Param("movieId") Integer movieId);
+
+    @Modifying
+    @Query(value = "DELETE FROM movie_user WHERE movie_id = :movieId", nativeQuery = true)
+    int deleteUserLinksByMovieId(@Param("movieId") Integer movieId);
+
+    @Modifying
+    @Query(value = "DELETE FROM comments WHERE movie_id = :movieId", nativeQuery = true)
+    int deleteCommentsByMovieId(@Param("movieId") Integer movieId);
+
+    @Modifying
+    @Query(value = "DELETE FROM movies WHERE id = :movieId", nativeQuery = true)
+    int deleteMovieRow(@Param("movieId") Integer movieId);
+
+    @Modifying
+    @Query(value = "UPDATE movies SET comment_count = comment_count + :delta "
+            + "WHERE id = :movieId", nativeQuery = true)
+    int adjustCommentCount(@Param("movieId") Integer movieId, @Param("delta") int delta);
+
+    @Modifying
+    @Query(value = "UPDATE users u JOIN (SELECT user_id, COUNT(*) AS cnt FROM comments "
+            + "WHERE movie_id = :movieId GROUP BY user_id) c ON c.user_id = u.id "
+            + "SET u.comment_count = u.comment_count - c.cnt", nativeQuery = true)
+    int decrementUserCommentCountsByMovieId(@Param("movieId") Integer movieId);
+
+    @Modifying
+    @Query(value = "UPDATE movies m SET m.comment_count = "
+            + "(SELECT COUNT(*) FROM comments c WHERE c.movie_id = m.id) "
+            + "WHERE m.comment_count IS NULL LIMIT :batchSize", nativeQuery = true)
+    int backfillCommentCounts(@Param("batchSize") int batchSize);
+
+    @Query(value = "SELECT id, comment_count FROM movies WHERE comment_count > 0",
+            nativeQuery = true)
+    List<Object[]> findCommentCounts();
 }
@@ -1,18 +1,36 @@
 package com.movio.moviolab.repositories;
 
 import com.movio.moviolab.models.User;
+import java.util.Collection;
 import java.util.List;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 public interface UserRepository extends JpaRepository<User, Integer> {
 
-    List<User> findByNameIgnoreCase(String name);
+    // Строки, которые миграция не заполнила из-за дубликатов без учета регистра (NULL
+    // в нормализованном столбце), сравниваются по LOWER. Для MySQL это одно чтение
+    // индекса ref_or_null: "col = ? OR col IS NULL".
+    @Query("SELECT u FROM User u WHERE u.nameNormalized = :name "
+            + "OR (u.nameNormalized IS NULL AND LOWER(u.name) = :name)")
+    List<User> findByNameNormalized(@Param("name") String nameNormalized);
 
-    List<User> findByEmailIgnoreCase(String email);
+    @Query("SELECT u FROM User u WHERE u.emailNormalized = :email "
+            + "OR (u.emailNormalized IS NULL AND LOWER(u.email) = :email)")
+    List<User> findByEmailNormalized(@Param("email") String emailNormalized);
 
-    List<User> findByNameIgnoreCaseAndEmailIgnoreCase(String name, String email);
+    @Query("SELECT u FROM User u "
+            + "WHERE (u.nameNormalized = :name "
+            + "OR (u.nameNormalized IS NULL AND LOWER(u.name) = :name)) "
+            + "AND (u.emailNormalized = :email "
+            + "OR (u.emailNormalized IS NULL AND LOWER(u.email) = :email))")
+    List<User> findByNameNormalizedAndEmailNormalized(@Param("name") String nameNormalized,
+                                                      @Param("email") String emailNormalized);
+
+    @Query("SELECT u.id FROM User u WHERE u.id IN :ids")
+    List<Integer> findExistingIds(@Param("ids") Collection<Integer> ids);
 
     @Query("SELECT DISTINCT u FROM User u JOIN u.movies m WHERE m.genre = :genre")
     List<User> findUsersByMovieGenre(@Param("genre") String genre);
@@ -23,5 +41,98 @@ public interface UserRepository extends JpaRepository<User, Integer> {
             + "WHERE m.genre = :genre", nativeQuery = true)
     List<User> findUsersByMovieGenreNative(@Param("genre") String genre);
 
+    // exceptId - изменяемый пользователь, при регистрации null.
+    @Query("SELECT LOWER(u.name) FROM User u "
+            + "WHERE (:exceptId IS NULL OR u.id <> :exceptId) "
+            + "AND (u.nameNormalized = :name OR u.emailNormalized = :email "
+            + "OR (u.nameNormalized IS NULL AND LOWER(u.name) = :name) "
+            + "OR (u.emailNormalized IS NULL AND LOWER(u.email) = :email))")
+    List<String> findConflictingNames(@Param("name") String nameNormalized,
+                                      @Param("email") String emailNormalized,
+                                      @Param("exceptId") Integer exceptId);
+
+    @Query(value = "SELECT m.id, m.genre FROM movies m "
+            + "JOIN movie_user mu ON mu.movie_id = m.id "
+            + "WHERE mu.user_id = :userId", nativeQuery = true)
+    List<Object[]> findMovieIdsAndGenresByUserId(@Param("userId") Integer userId);
+
+    // FOR UPDATE блокирует комментарии пользователя до удаления, чтобы подсчитанное
+    // совпало с удаленным.
+    @Query(value = "SELECT movie_id FROM comments WHERE user_id = :userId FOR UPDATE",
+            nativeQuery = true)
+    List<Integer> lockCommentMovieIdsByUserId(@Param("userId") Integer userId);
+
+    @Modifying
+    @Query(value = "DELETE FROM movie_user WHERE user_id = :userId", nativeQuery = true)
+    int deleteMovieLinksByUserId(@Param("userId") Integer userId);
+
+    @Modifying
+    @Query(value = "DELETE FROM comments WHERE user_id = :userId", nativeQuery = true)
+    int deleteCommentsByUserId(@Param("userId") Integer userId);
+
+    @Modifying
+    @Query(value = "DELETE FROM users WHERE id = :userId", nativeQuery = true)
+    int deleteUserRow(@Param("userId") Integer userId);
+
+    @Query(value = "SELECT id FROM users WHERE (name_normalized IS NULL AND name IS NOT NULL) "
+            + "OR (email_normalized IS NULL AND email IS NOT NULL) LIMIT 1", nativeQuery = true)
+    List<Integer> findAnyIdWithoutNormalizedColumns();
+
+    // Незаполненные строки, чье имя совпадает с чужим без учета регистра: уникальный
+    // индекс не даст их заполнить. Читаются только незаполненные строки: совпадение
+    // с заполненной ищется по индексу name_normalized, совпадения между незаполненными -
+    // группировкой только по ним. Сравнение идет в сопоставлении столбца, как у индекса.
+    @Query(value = "SELECT u.id FROM users u "
+            + "WHERE u.name_normalized IS NULL AND u.name IS NOT NULL "
+            + "AND (EXISTS (SELECT 1 FROM users o WHERE o.name_normalized = LOWER(u.name)) "
+            + "OR LOWER(u.name) IN (SELECT LOWER(o.name) FROM users o "
+            + "WHERE o.name_normalized IS NULL AND o.name IS NOT NULL "
+            + "GROUP BY LOWER(o.name) HAVING COUNT(*) > 1))", nativeQuery = true)
+    List<Integer> findUnnormalizedIdsWithDuplicateName();
+
+    @Query(value = "SELECT u.id FROM users u "
+            + "WHERE u.email_normalized IS NULL AND u.email IS NOT NULL "
+            + "AND (EXISTS (SELECT 1 FROM users o WHERE o.email_normalized = LOWER(u.email)) "
+            + "OR LOWER(u.email) IN (SELECT LOWER(o.email) FROM users o "
+            + "WHERE o.email_normalized IS NULL AND o.email IS NOT NULL "
+            + "GROUP BY LOWER(o.email) HAVING COUNT(*) > 1))", nativeQuery = true)
+    List<Integer> findUnnormalizedIdsWithDuplicateEmail();
+
+    @Query(value = "SELECT id, name, email, name_normalized, email_normalized FROM users "
+            + "WHERE id > :afterId AND ((name_normalized IS NULL AND name IS NOT NULL) "
+            + "OR (email_normalized IS NULL AND email IS NOT NULL)) "
+            + "ORDER BY id LIMIT :batchSize", nativeQuery = true)
+    List<Object[]> findWithoutNormalizedColumns(@Param("afterId") int afterId,
+                                                @Param("batchSize") int batchSize);
+
+    @Modifying
+    @Query(value = "UPDATE users SET name_normalized = LOWER(name) WHERE id IN (:ids)",
+            nativeQuery = true)
+    int fillNormalizedNames(@Param("ids") Collection<Integer> ids);
+
+    @Modifying
+    @Query(value = "UPDATE users SET email_normalized = LOWER(email) WHERE id IN (:ids)",
+            nativeQuery = true)
+    int fillNormalizedEmails(@Param("ids") Collection<Integer> ids);
+
+    @Modifying
+    @Query(value = "UPDATE users SET comment_count = comment_count + :delta "
+            + "WHERE id = :userId", nativeQuery = true)
+    int adjustCommentCount(@Param("userId") Integer userId, @Param("delta") int delta);
+
+    @Modifying
+    @Query(value = "UPDATE movies m JOIN (SELECT movie_id, COUNT(*) AS cnt FROM comments "
+            + "WHERE user_id = :userId GROUP BY movie_id) c ON c.movie_id = m.id "
+            + "SET m.comment_count = m.comment_count - c.cnt", nativeQuery = true)
+    int decrementMovieCommentCountsByUserId(@Param("userId") Integer userId);
+
+    @Modifying
+    @Query(value = "UPDATE users u SET u.comment_count = "
+            + "(SELECT COUNT(*) FROM comments c WHERE c.user_id = u.id) "
+            + "WHERE u.comment_count IS NULL LIMIT :batchSize", nativeQuery = true)
+    int backfillCommentCounts(@Param("batchSize") int batchSize);
 
+    @Query(value = "SELECT id, comment_count FROM users WHERE comment_count > 0",
+            nativeQuery = true)
+    List<Object[]> findCommentCounts();
 }
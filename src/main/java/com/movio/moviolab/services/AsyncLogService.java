@@ -1,60 +1,164 @@
 package com.movio.moviolab.services;
 
 import com.movio.moviolab.exceptions.LogNotReadyException;
+import com.movio.moviolab.exceptions.LogQueueFullException;
 import jakarta.annotation.PreDestroy;
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Optional;
 import java.util.UUID;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.CompletionException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-import java.util.zip.GZIPInputStream;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
 
 @Service
 public class AsyncLogService {
+    private static final Logger log = LoggerFactory.getLogger(AsyncLogService.class);
     private static final long TASK_TTL_MINUTES = 5;
+
+    public enum TaskState { QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED }
+
+    // У каждого запроса свой taskId, присоединившиеся к одной выгрузке делят TaskWrapper.
     private final Map<String, TaskWrapper> tasks = new ConcurrentHashMap<>();
+    private final Map<LocalDate, TaskWrapper> tasksByDate = new ConcurrentHashMap<>();
+    // Выгрузки в кэше, которые сейчас нужны задачам или читателям: вытеснение их не трогает.
+    // Закрепление и удаление идут под одной блокировкой, поэтому закрепленный файл
+    // не пропадет между проверкой и удалением.
+    private final Map<Path, Integer> pinned = new HashMap<>();
     private final ScheduledExecutorService cleanupExecutor =
             Executors.newSingleThreadScheduledExecutor();
+    private final ThreadPoolExecutor taskExecutor;
 
-    @Value("${logging.file.name}")
-    private String logFilePath;
+    private final LogFileService logFileService;
+    private final Path cacheDir;
+    private final long cacheMaxBytes;
 
-    public AsyncLogService() {
-        cleanupExecutor.scheduleAtFixedRate(this::cleanupExpiredTasks, 1, 1, TimeUnit.MINUTES);
+    // Задачи читают файлы и держат результат в памяти, поэтому их число ограничено
+    // собственным пулом с ограниченной очередью, а не общим ForkJoinPool.
+    @Autowired
+    public AsyncLogService(LogFileService logFileService,
+                           @Value("${moviolab.logs.async.threads:2}") int threads,
+                           @Value("${moviolab.logs.async.queue-capacity:16}") int queueCapacity,
+                           @Value("${moviolab.logs.async.cache-dir:data/log-cache}")
+                           String cacheDir,
+                           @Value("${moviolab.logs.async.cache-max-mb:1024}") long cacheMaxMb) {
+        this.logFileService = logFileService;
+        this.cacheDir = Path.of(cacheDir);
+        this.cacheMaxBytes = cacheMaxMb * 1024 * 1024;
+        this.taskExecutor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                Thread.ofPlatform().name("log-task-", 1).daemon(true).factory());
+        cleanupExecutor.scheduleAtFixedRate(this::cleanupExpiredTasks, 0, 1, TimeUnit.MINUTES);
     }
 
     @PreDestroy
     public void shutdownExecutor() {
+        taskExecutor.shutdownNow();
         cleanupExecutor.shutdown();
     }
 
+    // Запрос той же даты присоединяется к её незавершенной задаче, а для прошедших дней,
+    // уже выгруженных на диск, - и к завершенной, пока она не устарела. Присоединившийся
+    // получает собственный taskId, чтобы его отмена не отменяла выгрузку остальным.
+    // Файлы читаются и задача запускается вне compute, чтобы не держать блокировку карты
+    // на время работы с диском: внутри только выбор задачи и регистрация запроса.
     public String createLogTask(String date) {
+        LocalDate day = logFileService.parseDate(date);
+        Path cachedPath = cachedPath(day);
         String taskId = UUID.randomUUID().toString();
-        CompletableFuture<LogFileResult> future =
-                CompletableFuture.supplyAsync(() -> processLogs(date));
-        tasks.put(taskId, new TaskWrapper(future));
+        TaskWrapper[] created = new TaskWrapper[1];
+        TaskWrapper joined = tasksByDate.compute(day, (key, existing) -> {
+            TaskWrapper wrapper = existing;
+            if (!canJoin(existing)) {
+                wrapper = newTask(day, cachedPath);
+                created[0] = wrapper;
+            }
+            wrapper.joiners++;
+            tasks.put(taskId, wrapper);
+            return wrapper;
+        });
+        if (created[0] != null) {
+            start(taskId, joined);
+        }
         return taskId;
     }
 
+    private static boolean canJoin(TaskWrapper wrapper) {
+        if (wrapper == null || wrapper.isExpired()) {
+            return false;
+        }
+        TaskState state = wrapper.getState();
+        return state == TaskState.QUEUED || state == TaskState.RUNNING
+                || state == TaskState.COMPLETED && wrapper.cached;
+    }
+
+    // Файл кэша закрепляется до запуска задачи: вытеснение, запущенное чужой выгрузкой,
+    // не удалит его, пока задача жива.
+    private TaskWrapper newTask(LocalDate day, Path cachedPath) {
+        TaskWrapper wrapper = new TaskWrapper(day, cachedPath);
+        wrapper.attach(new FutureTask<>(() -> processLogs(day, wrapper)) {
+            @Override
+            protected void done() {
+                wrapper.finish();
+            }
+        });
+        if (cachedPath != null) {
+            pin(cachedPath);
+        }
+        return wrapper;
+    }
+
+    private void start(String taskId, TaskWrapper wrapper) {
+        if (wrapper.cachedPath != null && Files.exists(wrapper.cachedPath)) {
+            // Готовый файл на диске: задача лишь открывает его, очередь не нужна.
+            wrapper.future.run();
+            return;
+        }
+        try {
+            taskExecutor.execute(wrapper.future);
+        } catch (RejectedExecutionException e) {
+            // Присоединившиеся за это время увидят отмененную задачу, а не вечную очередь.
+            wrapper.future.cancel(false);
+            tasks.remove(taskId);
+            release(wrapper);
+            throw new LogQueueFullException("Слишком много задач выгрузки логов, повторите позже");
+        }
+    }
+
     public Map<String, Object> getTaskStatus(String taskId) {
         TaskWrapper wrapper = tasks.get(taskId.trim());
         if (wrapper == null || wrapper.isExpired()) {
@@ -74,108 +178,238 @@ public class AsyncLogService {
         return wrapper.getResult();
     }
 
+    // Отмена снимает только этот запрос. Когда уходит последний присоединившийся,
+    // поток задачи прерывается: чтение останавливается на ближайшей порции данных.
+    public void cancelTask(String taskId) {
+        TaskWrapper wrapper = tasks.remove(taskId.trim());
+        if (wrapper == null) {
+            throw new NoSuchElementException("Задача не найдена или устарела");
+        }
+        release(wrapper);
+    }
+
+    // Снимает один запрос с задачи. Последний уходящий прерывает ее и открепляет файл кэша.
+    private void release(TaskWrapper wrapper) {
+        tasksByDate.compute(wrapper.day, (key, current) -> {
+            if (--wrapper.joiners > 0) {
+                return current;
+            }
+            wrapper.future.cancel(true);
+            if (wrapper.cachedPath != null) {
+                unpin(wrapper.cachedPath);
+            }
+            return current == wrapper ? null : current;
+        });
+    }
 
-    private LogFileResult processLogs(String date) {
+    private LogFileResult processLogs(LocalDate date, TaskWrapper wrapper) throws IOException {
+        wrapper.started = true;
+        String filename = "logs_" + date + ".log";
         try {
-            Thread.sleep(30_000);
-            List<String> logs = readLogsByDate(date);
-            String content = String.join("\n", logs);
-            ByteArrayResource resource = new ByteArrayResource(content
-                    .getBytes(StandardCharsets.UTF_8)) {
-                @Override
-                public String getFilename() {
-                    return "logs_" + date + ".log";
-                }
-            };
-            return new LogFileResult(resource, logs.isEmpty());
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new CompletionException("Обработка лог файла была прерана на дату: " + date, e);
-        } catch (Exception e) {
-            throw new CompletionException("Ошибка обработки лог файла на дату: " + date, e);
+            if (wrapper.cachedPath != null) {
+                wrapper.cached = true;
+                return new LogFileResult(new FileSystemResource(extractToCache(date,
+                        wrapper.cachedPath, wrapper.progress)), filename);
+            }
+            // Строки выбираются тем же потоковым чтением, что и в GET /logs/{date}:
+            // в памяти оказывается только итоговый файл, без промежуточных списков.
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            logFileService.writeLines(date, content, wrapper.progress);
+            return new LogFileResult(new ByteArrayResource(content.toByteArray()), filename);
+        } catch (InterruptedIOException | ClosedByInterruptException e) {
+            log.info("Обработка лог файла на дату {} отменена", date);
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            log.error("Ошибка обработки лог файла на дату: {}", date, e);
+            throw e;
         }
     }
 
+    // Открытая выгрузка прошедшего дня из кэша на диске, при необходимости создается.
+    // Пусто, если день еще может измениться. Файл открывается до возврата, поэтому
+    // вытеснение кэша уже не помешает его дочитать.
+    public Optional<CachedLog> openCachedLog(LocalDate date) throws IOException {
+        Optional<Path> cached = cachedFile(date);
+        if (cached.isEmpty()) {
+            return Optional.empty();
+        }
+        pin(cached.get());
+        try {
+            Path file = extractToCache(date, cached.get(), new LogFileService.Progress());
+            long size = Files.size(file);
+            return Optional.of(new CachedLog(Files.newInputStream(file), size));
+        } finally {
+            unpin(cached.get());
+        }
+    }
 
-    private List<String> readLogsByDate(String date) throws IOException {
-        List<String> logs = new ArrayList<>();
-        LocalDate targetDate = LocalDate.parse(date);
+    public record CachedLog(InputStream content, long size) {
+    }
 
-        File archiveLog = new File(logFilePath + "." + date + ".0.gz");
-        if (archiveLog.exists()) {
-            logs.addAll(readFromGzip(archiveLog));
+    private Path cachedPath(LocalDate date) {
+        try {
+            return cachedFile(date).orElse(null);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось проверить кэш выгрузок логов", e);
         }
+    }
 
-        if (targetDate.equals(LocalDate.now())) {
-            File currentLog = new File(logFilePath);
-            if (currentLog.exists()) {
-                logs.addAll(readFromFile(currentLog));
-            }
+    private void pin(Path file) {
+        synchronized (pinned) {
+            pinned.merge(file, 1, Integer::sum);
         }
+    }
 
-        return logs.stream()
-                .filter(line -> line.startsWith(date)
-                        && !line.contains("INFO - Вход в метод контроллера"))
-                .toList();
+    private void unpin(Path file) {
+        synchronized (pinned) {
+            pinned.computeIfPresent(file, (key, count) -> count == 1 ? null : count - 1);
+        }
     }
 
-    private List<String> readFromGzip(File file) throws IOException {
-        try (GZIPInputStream is = new GZIPInputStream(new FileInputStream(file));
-             BufferedReader reader = new BufferedReader(
-                     new InputStreamReader(is, StandardCharsets.UTF_8))) {
-            List<String> logs = new ArrayList<>();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                logs.add(line);
+    // Файл выгрузки прошедшего дня в каталоге кэша; пусто, если день еще может измениться.
+    private Optional<Path> cachedFile(LocalDate date) throws IOException {
+        return logFileService.archiveKey(date).map(key -> cacheDir.resolve(key + ".log"));
+    }
+
+    // Пишет выгрузку во временный файл и переименовывает его, чтобы параллельный читатель
+    // не увидел недописанный файл. Выгрузки прежних версий того же архива удаляются.
+    private Path extractToCache(LocalDate date, Path target, LogFileService.Progress progress)
+            throws IOException {
+        if (Files.exists(target)) {
+            // Время изменения служит временем последнего чтения для вытеснения.
+            Files.setLastModifiedTime(target, FileTime.fromMillis(System.currentTimeMillis()));
+            return target;
+        }
+        Files.createDirectories(cacheDir);
+        Path temp = Files.createTempFile(cacheDir, "extract-", ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                logFileService.writeLines(date, out, progress);
             }
-            return logs;
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        String archivePrefix = target.getFileName().toString();
+        archivePrefix = archivePrefix.substring(0, archivePrefix.indexOf(".gz-") + 4);
+        try (DirectoryStream<Path> stale = Files.newDirectoryStream(cacheDir,
+                archivePrefix + "*.log")) {
+            for (Path file : stale) {
+                if (!file.equals(target)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+        try {
+            cleanupExecutor.execute(this::evictCache);
+        } catch (RejectedExecutionException e) {
+            // Приложение останавливается: кэш очистится при следующем запуске.
         }
+        return target;
     }
 
-    private List<String> readFromFile(File file) throws IOException {
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            List<String> logs = new ArrayList<>();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                logs.add(line);
+    private void cleanupExpiredTasks() {
+        tasks.forEach((taskId, wrapper) -> {
+            if (wrapper.isExpired() && tasks.remove(taskId, wrapper)) {
+                release(wrapper);
             }
-            return logs;
+        });
+        evictCache();
+    }
+
+    // Выгрузки сверх лимита удаляются, начиная с давно не читанных. Закрепленные файлы
+    // не трогаются: их результат еще отдается с диска. Вызывается только из потока
+    // очистки, поэтому два вытеснения не идут одновременно.
+    private void evictCache() {
+        if (!Files.isDirectory(cacheDir)) {
+            return;
+        }
+        try {
+            List<CachedExtract> extracts = new ArrayList<>();
+            long total = 0;
+            try (Stream<Path> files = Files.list(cacheDir)) {
+                for (Path file : files.filter(path -> path.toString().endsWith(".log")).toList()) {
+                    CachedExtract extract = new CachedExtract(file, Files.size(file),
+                            Files.getLastModifiedTime(file).toMillis());
+                    extracts.add(extract);
+                    total += extract.size();
+                }
+            }
+            extracts.sort(Comparator.comparingLong(CachedExtract::lastRead));
+            for (CachedExtract extract : extracts) {
+                if (total <= cacheMaxBytes) {
+                    break;
+                }
+                if (deleteUnpinned(extract.path())) {
+                    total -= extract.size();
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("Не удалось очистить кэш выгрузок логов: {}", e.getMessage());
         }
     }
 
-    private void cleanupExpiredTasks() {
-        tasks.entrySet().removeIf(entry -> entry.getValue().isExpired());
+    private boolean deleteUnpinned(Path file) throws IOException {
+        synchronized (pinned) {
+            return !pinned.containsKey(file) && Files.deleteIfExists(file);
+        }
+    }
+
+    private record CachedExtract(Path path, long size, long lastRead) {
     }
 
-    public record LogFileResult(ByteArrayResource resource, boolean empty) {
-        public ByteArrayResource getResource() {
-            if (empty) {
+    public record LogFileResult(Resource resource, String filename) {
+        public Resource getResource() {
+            if (isEmpty()) {
                 throw new IllegalStateException("Лог пуст");
             }
             return resource;
         }
 
         public long getContentLength() {
-            return empty ? 0 : resource.contentLength();
+            try {
+                return resource.contentLength();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        public boolean isEmpty() {
+            return getContentLength() == 0;
         }
 
         public String getFilename() {
-            return resource.getFilename();
+            return filename;
         }
     }
 
     private static class TaskWrapper {
-        private final CompletableFuture<LogFileResult> future;
+        private final LogFileService.Progress progress = new LogFileService.Progress();
+        private final LocalDate day;
+        // Файл кэша прошедшего дня; null, если день еще может измениться.
+        private final Path cachedPath;
+        private FutureTask<LogFileResult> future;
+        // Число запросов, разделяющих задачу; меняется только внутри tasksByDate.compute.
+        private int joiners;
+        private volatile boolean started;
+        private volatile boolean cached;
         private volatile long expiration = Long.MAX_VALUE;
-        private boolean completed = false;
+        private volatile boolean completed = false;
 
-        TaskWrapper(CompletableFuture<LogFileResult> future) {
-            this.future = future;
-            future.whenComplete((res, ex) -> {
-                this.completed = true;
-                this.expiration = System.currentTimeMillis()
-                        + TimeUnit.MINUTES.toMillis(TASK_TTL_MINUTES);
-            });
+        TaskWrapper(LocalDate day, Path cachedPath) {
+            this.day = day;
+            this.cachedPath = cachedPath;
+        }
+
+        void attach(FutureTask<LogFileResult> task) {
+            this.future = task;
+        }
+
+        void finish() {
+            this.completed = true;
+            this.expiration = System.currentTimeMillis()
+                    + TimeUnit.MINUTES.toMillis(TASK_TTL_MINUTES);
         }
 
         boolean isExpired() {
@@ -188,14 +422,31 @@ public class AsyncLogService {
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
                 throw new IllegalStateException("Задача прервана", e);
+            } catch (CancellationException e) {
+                throw new NoSuchElementException("Задача отменена");
             } catch (ExecutionException e) {
                 throw new IllegalStateException("Ошибка задачи", e.getCause());
             }
         }
 
+        TaskState getState() {
+            if (future.isCancelled()) {
+                return TaskState.CANCELLED;
+            }
+            if (!future.isDone()) {
+                return started ? TaskState.RUNNING : TaskState.QUEUED;
+            }
+            return future.state() == Future.State.SUCCESS
+                    ? TaskState.COMPLETED : TaskState.FAILED;
+        }
+
         Map<String, Object> getStatus() {
             Map<String, Object> map = new HashMap<>();
+            map.put("state", getState());
             map.put("isCompleted", future.isDone());
+            map.put("bytesScanned", progress.getScannedBytes());
+            map.put("totalBytes", progress.getTotalBytes());
+            map.put("cached", cached);
             if (completed) {
                 map.put("expiresIn", Math.max(0, (expiration - System.currentTimeMillis()) / 1000));
             } else {
@@ -1,51 +1,90 @@
 package com.movio.moviolab.services;
 
+import com.movio.moviolab.dao.CommentBatchDao;
 import com.movio.moviolab.dao.CommentDao;
 import com.movio.moviolab.dao.MovieDao;
 import com.movio.moviolab.dao.UserDao;
+import com.movio.moviolab.dto.CommentBulkResultDto;
 import com.movio.moviolab.dto.CommentDto;
+import com.movio.moviolab.dto.CommentPageDto;
+import com.movio.moviolab.events.CommentEvent;
+import com.movio.moviolab.exceptions.BadRequestException;
 import com.movio.moviolab.exceptions.CommentException;
 import com.movio.moviolab.exceptions.MovieException;
 import com.movio.moviolab.exceptions.UserException;
 import com.movio.moviolab.exceptions.ValidationException;
+import com.movio.moviolab.index.CommentHashFilter;
+import com.movio.moviolab.index.CommentSearchIndex;
 import com.movio.moviolab.models.Comment;
+import jakarta.transaction.Transactional;
+import java.net.URI;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 
 @Service
 public class CommentService {
 
+    private static final Logger log = LoggerFactory.getLogger(CommentService.class);
+    private static final int BACKFILL_BATCH_SIZE = 1000;
+    private static final int MAX_LIMIT = 100;
+    private static final int MAX_SEARCH_DEPTH = 1000;
+    private static final int MAX_BULK_SIZE = 1000;
+
     private static final String COMMENT_NOT_FOUND = "Комментарий не найден по id: ";
     private static final String MOVIE_NOT_FOUND_MESSAGE = "Фильм не найден: ";
     private static final String USER_NOT_FOUND_MESSAGE = "Пользователь не найден: ";
     private static final String COMMENT_NOT_BLANK_MESSAGE = "Комментарйи пуст";
     private static final String COMMENT_SIZE_MESSAGE = "Длинна комментария "
            + "должна быть от 2 до 500 символов";
+    static final String DUPLICATE_MESSAGE = "Этот пользователь уже оставил "
+            + "такой комментарий к этому фильму.";
 
     private final CommentDao commentDao;
+    private final CommentBatchDao commentBatchDao;
     private final MovieDao movieDao;
     private final UserDao userDao;
+    private final CommentHashFilter commentHashFilter;
+    private final CommentSearchIndex commentSearchIndex;
+    private final CommentWriteBehindService commentWriteBehindService;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Autowired
-    public CommentService(CommentDao commentDao, MovieDao movieDao, UserDao userDao) {
+    public CommentService(CommentDao commentDao, CommentBatchDao commentBatchDao,
+                          MovieDao movieDao, UserDao userDao,
+                          CommentHashFilter commentHashFilter,
+                          CommentSearchIndex commentSearchIndex,
+                          CommentWriteBehindService commentWriteBehindService,
+                          ApplicationEventPublisher eventPublisher) {
         this.commentDao = commentDao;
+        this.commentBatchDao = commentBatchDao;
         this.movieDao = movieDao;
         this.userDao = userDao;
+        this.commentHashFilter = commentHashFilter;
+        this.commentSearchIndex = commentSearchIndex;
+        this.commentWriteBehindService = commentWriteBehindService;
+        this.eventPublisher = eventPublisher;
     }
 
+    @Transactional
     public ResponseEntity<String> addComment(CommentDto commentDto) {
 
         String content = commentDto.getContent();
-
-        if (content == null || content.trim().isEmpty()) {
-            throw new ValidationException(COMMENT_NOT_BLANK_MESSAGE);
-        }
-
-        if (content.length() < 2 || content.length() > 500) {
-            throw new ValidationException(COMMENT_SIZE_MESSAGE);
-        }
+        validateContent(content);
 
         Integer userId = commentDto.getUserId();
         Integer movieId = commentDto.getMovieId();
@@ -58,19 +97,125 @@ public class CommentService {
             throw new UserException(USER_NOT_FOUND_MESSAGE + userId);
         }
 
-        boolean commentExists = commentDao.existsByUserIdAndMovieIdAndContent(userId,
-                movieId, commentDto.getContent());
-        if (commentExists) {
-            throw new CommentException("Этот пользователь уже оставил "
-                    + "такой комментарий к этому фильму.");
+        if (isDuplicate(userId, movieId, content)) {
+            throw new CommentException(DUPLICATE_MESSAGE);
+        }
+
+        if (commentWriteBehindService.isActive()) {
+            Integer id = commentWriteBehindService.enqueue(commentDto);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/comments/" + id))
+                    .body("Комментарий принят: " + id);
         }
 
         Comment comment = convertToEntity(commentDto);
-        commentDao.save(comment);
+        Comment savedComment = commentDao.save(comment);
+        adjustCommentCounts(savedComment, 1);
+
+        publishCommentEvent(CommentEvent.Type.CREATED, savedComment);
 
         return ResponseEntity.ok("Комментарий создан успешно");
     }
 
+    // Проверяет всю пачку за несколько запросов вместо трех на строку: фильмы и пользователи
+    // ищутся одним IN, дубликаты внутри пачки - по ключу, в базе - одним запросом по хэшам.
+    // Отклоненные строки не мешают остальным, результат возвращается по каждой строке.
+    @Transactional
+    public CommentBulkResultDto addComments(List<CommentDto> commentDtos) {
+        if (commentDtos == null || commentDtos.isEmpty() || commentDtos.size() > MAX_BULK_SIZE) {
+            throw new BadRequestException("В пачке должно быть от 1 до "
+                    + MAX_BULK_SIZE + " комментариев");
+        }
+
+        Set<Integer> movieIds = new HashSet<>(movieDao.findExistingIds(
+                collectIds(commentDtos, CommentDto::getMovieId)));
+        Set<Integer> userIds = new HashSet<>(userDao.findExistingIds(
+                collectIds(commentDtos, CommentDto::getUserId)));
+
+        CommentBulkResultDto result = new CommentBulkResultDto();
+        Map<CommentKey, CommentBulkResultDto.Row> candidates = new LinkedHashMap<>();
+        for (int i = 0; i < commentDtos.size(); i++) {
+            CommentDto commentDto = commentDtos.get(i);
+            CommentBulkResultDto.Row row = new CommentBulkResultDto.Row();
+            row.setIndex(i);
+            result.getRows().add(row);
+            if (commentDto == null) {
+                reject(result, row, COMMENT_NOT_BLANK_MESSAGE);
+                continue;
+            }
+            try {
+                validateContent(commentDto.getContent());
+            } catch (ValidationException e) {
+                reject(result, row, e.getMessage());
+                continue;
+            }
+            if (commentDto.getMovieId() == null || !movieIds.contains(commentDto.getMovieId())) {
+                reject(result, row, MOVIE_NOT_FOUND_MESSAGE + commentDto.getMovieId());
+            } else if (commentDto.getUserId() == null
+                    || !userIds.contains(commentDto.getUserId())) {
+                reject(result, row, USER_NOT_FOUND_MESSAGE + commentDto.getUserId());
+            } else if (candidates.putIfAbsent(CommentKey.of(commentDto), row) != null) {
+                reject(result, row, "Такой же комментарий уже есть в этой пачке");
+            }
+        }
+
+        List<CommentKey> pending = candidates.keySet().stream()
+                .filter(key -> commentWriteBehindService.isPending(key.userId(), key.movieId(),
+                        key.content()))
+                .toList();
+        for (CommentKey key : pending) {
+            reject(result, candidates.remove(key), DUPLICATE_MESSAGE);
+        }
+        for (CommentKey key : findStoredDuplicates(candidates.keySet())) {
+            reject(result, candidates.remove(key), DUPLICATE_MESSAGE);
+        }
+        if (candidates.isEmpty()) {
+            return result;
+        }
+
+        List<Comment> comments = candidates.keySet().stream().map(CommentKey::toEntity).toList();
+        if (commentWriteBehindService.isActive()) {
+            int firstId = commentWriteBehindService.reserveIds(comments.size());
+            for (int i = 0; i < comments.size(); i++) {
+                comments.get(i).setId(firstId + i);
+            }
+            commentBatchDao.insertAll(comments);
+        } else {
+            commentBatchDao.insertWithGeneratedIds(comments);
+        }
+
+        Iterator<CommentBulkResultDto.Row> rows = candidates.values().iterator();
+        for (Comment comment : comments) {
+            CommentBulkResultDto.Row row = rows.next();
+            row.setStatus(CommentBulkResultDto.Status.CREATED);
+            row.setId(comment.getId());
+            publishCommentEvent(CommentEvent.Type.CREATED, comment);
+        }
+        result.setCreated(comments.size());
+        return result;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillContentHashes() {
+        // Хэш считается в Java, поэтому старые строки дочитываются пачками и
+        // обновляются batch-запросом; фильтр строится, когда хэши есть у всех строк.
+        long total = 0;
+        int afterId = 0;
+        List<Comment> batch;
+        do {
+            batch = commentBatchDao.findWithoutContentHash(afterId, BACKFILL_BATCH_SIZE);
+            if (!batch.isEmpty()) {
+                commentBatchDao.updateContentHashes(batch);
+                total += batch.size();
+                afterId = batch.getLast().getId();
+            }
+        } while (batch.size() == BACKFILL_BATCH_SIZE);
+        if (total > 0) {
+            log.info("Заполнен хэш текста у {} комментариев", total);
+        }
+        commentHashFilter.rebuild();
+    }
+
     public ResponseEntity<List<CommentDto>> getAllComments() {
 
         List<CommentDto> comments = commentDao.findAll().stream()
@@ -91,6 +236,58 @@ public class CommentService {
         return ResponseEntity.ok(convertToDto(comment));
     }
 
+    public CommentPageDto getCommentsByMovieId(Integer movieId, int cursor, int limit) {
+        validatePage(cursor, limit);
+        CommentPageDto page = toPage(commentDao.findMoviePage(movieId, cursor, limit + 1), limit);
+        // Фильм проверяется только для пустой страницы: у существующих строк он уже есть.
+        if (page.getItems().isEmpty() && !movieDao.existsById(movieId)) {
+            throw new MovieException(MOVIE_NOT_FOUND_MESSAGE + movieId);
+        }
+        return page;
+    }
+
+    public CommentPageDto getCommentsByUserId(Integer userId, int cursor, int limit) {
+        validatePage(cursor, limit);
+        CommentPageDto page = toPage(commentDao.findUserPage(userId, cursor, limit + 1), limit);
+        if (page.getItems().isEmpty() && !userDao.existsById(userId)) {
+            throw new UserException(USER_NOT_FOUND_MESSAGE + userId);
+        }
+        return page;
+    }
+
+    public CommentPageDto searchComments(String query, Integer movieId, Integer userId,
+                                         int offset, int limit) {
+        if (query == null || query.isBlank()) {
+            throw new BadRequestException("Параметр q не может быть пустым");
+        }
+        validateLimit(limit);
+        if (offset < 0) {
+            throw new BadRequestException("Параметр offset не может быть отрицательным");
+        }
+        if (offset + limit > MAX_SEARCH_DEPTH) {
+            throw new BadRequestException("Можно просмотреть не больше "
+                    + MAX_SEARCH_DEPTH + " результатов поиска");
+        }
+
+        CommentSearchIndex.Result result = commentSearchIndex.search(query, movieId, userId,
+                offset, limit);
+        List<Integer> ids = result.hits().stream().map(CommentSearchIndex.Hit::commentId).toList();
+        Map<Integer, Comment> comments = commentDao.findAllById(ids).stream()
+                .collect(Collectors.toMap(Comment::getId, Function.identity()));
+
+        CommentPageDto page = new CommentPageDto();
+        page.setItems(ids.stream()
+                .map(comments::get)
+                .filter(Objects::nonNull)
+                .map(this::convertToDto)
+                .toList());
+        page.setTotal(result.total());
+        if (offset + limit < result.total()) {
+            page.setNextOffset(offset + limit);
+        }
+        return page;
+    }
+
     public CommentDto updateComment(Integer id, CommentDto partialCommentDto) {
         Comment existingComment = commentDao.findById(id)
                     .orElseThrow(() -> new CommentException(COMMENT_NOT_FOUND + id));
@@ -107,14 +304,122 @@ public class CommentService {
 
         Comment updatedComment = commentDao.save(existingComment);
 
+        publishCommentEvent(CommentEvent.Type.UPDATED, updatedComment);
+
         return convertToDto(updatedComment);
     }
 
+    @Transactional
     public void deleteComment(Integer id) {
         Comment comment = commentDao.findById(id)
                     .orElseThrow(() -> new CommentException("Не найден комментарйи с ID: " + id));
 
         commentDao.delete(comment);
+        adjustCommentCounts(comment, -1);
+
+        publishCommentEvent(CommentEvent.Type.DELETED, comment);
+    }
+
+    private void validatePage(int cursor, int limit) {
+        validateLimit(limit);
+        if (cursor < 0) {
+            throw new BadRequestException("Параметр cursor не может быть отрицательным");
+        }
+    }
+
+    private void validateLimit(int limit) {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new BadRequestException("Параметр limit должен быть от 1 до " + MAX_LIMIT);
+        }
+    }
+
+    // Запрашивается limit + 1 строк: лишняя строка показывает, что есть следующая страница.
+    private CommentPageDto toPage(List<Comment> comments, int limit) {
+        CommentPageDto page = new CommentPageDto();
+        boolean hasMore = comments.size() > limit;
+        List<Comment> items = hasMore ? comments.subList(0, limit) : comments;
+        page.setItems(items.stream().map(this::convertToDto).toList());
+        if (hasMore) {
+            page.setNextCursor(items.getLast().getId());
+        }
+        return page;
+    }
+
+    private void validateContent(String content) {
+        if (content == null || content.trim().isEmpty()) {
+            throw new ValidationException(COMMENT_NOT_BLANK_MESSAGE);
+        }
+
+        if (content.length() < 2 || content.length() > 500) {
+            throw new ValidationException(COMMENT_SIZE_MESSAGE);
+        }
+    }
+
+    private static Set<Integer> collectIds(List<CommentDto> commentDtos,
+                                           Function<CommentDto, Integer> getter) {
+        return commentDtos.stream()
+                .filter(Objects::nonNull)
+                .map(getter)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+    }
+
+    private static void reject(CommentBulkResultDto result, CommentBulkResultDto.Row row,
+                               String message) {
+        row.setStatus(CommentBulkResultDto.Status.REJECTED);
+        row.setMessage(message);
+        result.setRejected(result.getRejected() + 1);
+    }
+
+    private Set<CommentKey> findStoredDuplicates(Set<CommentKey> keys) {
+        if (keys.isEmpty()) {
+            return Set.of();
+        }
+        if (!commentHashFilter.isReady()) {
+            return keys.stream()
+                    .filter(key -> commentDao.existsByUserIdAndMovieIdAndContent(key.userId(),
+                            key.movieId(), key.content()))
+                    .collect(Collectors.toSet());
+        }
+        List<Comment> suspects = keys.stream()
+                .filter(key -> commentHashFilter.mightContain(key.userId(), key.movieId(),
+                        Comment.hashContent(key.content())))
+                .map(CommentKey::toEntity)
+                .toList();
+        if (suspects.isEmpty()) {
+            return Set.of();
+        }
+        return commentBatchDao.findByContentHashes(suspects).stream()
+                .map(comment -> new CommentKey(comment.getUserId(), comment.getMovieId(),
+                        comment.getContent()))
+                .filter(keys::contains)
+                .collect(Collectors.toSet());
+    }
+
+    private boolean isDuplicate(Integer userId, Integer movieId, String content) {
+        // Комментарии из очереди отложенной записи еще не в базе и не в фильтре.
+        if (commentWriteBehindService.isPending(userId, movieId, content)) {
+            return true;
+        }
+        if (!commentHashFilter.isReady()) {
+            return commentDao.existsByUserIdAndMovieIdAndContent(userId, movieId, content);
+        }
+        long contentHash = Comment.hashContent(content);
+        if (!commentHashFilter.mightContain(userId, movieId, contentHash)) {
+            return false;
+        }
+        // Совпал хэш: сравниваем сами тексты, чтобы коллизия не отклонила новый комментарий.
+        return commentDao.findContentsByHash(userId, movieId, contentHash).contains(content);
+    }
+
+    private void adjustCommentCounts(Comment comment, int delta) {
+        movieDao.adjustCommentCount(comment.getMovieId(), delta);
+        userDao.adjustCommentCount(comment.getUserId(), delta);
+    }
+
+    private void publishCommentEvent(CommentEvent.Type type, Comment comment) {
+        eventPublisher.publishEvent(new CommentEvent(type, comment.getId(),
+                comment.getMovieId(), comment.getUserId(), comment.getContent()));
     }
 
     private CommentDto convertToDto(Comment comment) {
@@ -134,4 +439,20 @@ public class CommentService {
         comment.setMovieId(commentDto.getMovieId());
         return comment;
     }
-}
\ No newline at end of file
+
+    private record CommentKey(Integer userId, Integer movieId, String content) {
+
+        static CommentKey of(CommentDto commentDto) {
+            return new CommentKey(commentDto.getUserId(), commentDto.getMovieId(),
+                    commentDto.getContent());
+        }
+
+        Comment toEntity() {
+            Comment comment = new Comment();
+            comment.setUserId(userId);
+            comment.setMovieId(movieId);
+            comment.setContent(content);
+            return comment;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.movio.moviolab.services;
+
+import com.movio.moviolab.dao.MovieDao;
+import com.movio.moviolab.dto.CommentDto;
+import com.movio.moviolab.events.CommentEvent;
+import com.movio.moviolab.exceptions.MovieException;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@Service
+public class CommentStreamService {
+
+    private static final Logger log = LoggerFactory.getLogger(CommentStreamService.class);
+    private static final String EVENT_NAME = "comment";
+    private static final String HEARTBEAT = "ping";
+
+    private final MovieDao movieDao;
+    private final long timeoutMs;
+    private final int bufferSize;
+    private final long heartbeatMs;
+    private final Map<Integer, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+
+    @Autowired
+    public CommentStreamService(
+            MovieDao movieDao,
+            @Value("${moviolab.comments.stream.timeout-ms:1800000}") long timeoutMs,
+            @Value("${moviolab.comments.stream.buffer-size:256}") int bufferSize,
+            @Value("${moviolab.comments.stream.heartbeat-ms:15000}") long heartbeatMs) {
+        this.movieDao = movieDao;
+        this.timeoutMs = timeoutMs;
+        this.bufferSize = bufferSize;
+        this.heartbeatMs = heartbeatMs;
+    }
+
+    public SseEmitter subscribe(Integer movieId) {
+        if (!movieDao.existsById(movieId)) {
+            throw new MovieException("Фильм не найден: " + movieId);
+        }
+        Subscriber subscriber = new Subscriber(movieId, newEmitter(timeoutMs),
+                new ArrayBlockingQueue<>(bufferSize));
+        subscriber.emitter.onCompletion(() -> remove(subscriber));
+        subscriber.emitter.onTimeout(() -> remove(subscriber));
+        subscriber.emitter.onError(e -> remove(subscriber));
+
+        subscribers.compute(movieId, (key, movieSubscribers) -> {
+            Set<Subscriber> result = movieSubscribers != null
+                    ? movieSubscribers : ConcurrentHashMap.newKeySet();
+            result.add(subscriber);
+            return result;
+        });
+        subscriber.sender.start();
+        return subscriber.emitter;
+    }
+
+    public int subscriberCount(Integer movieId) {
+        Set<Subscriber> movieSubscribers = subscribers.get(movieId);
+        return movieSubscribers == null ? 0 : movieSubscribers.size();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCommentEvent(CommentEvent event) {
+        if (event.type() != CommentEvent.Type.CREATED) {
+            return;
+        }
+        Set<Subscriber> movieSubscribers = subscribers.get(event.movieId());
+        if (movieSubscribers == null) {
+            return;
+        }
+        CommentDto comment = new CommentDto();
+        comment.setId(event.commentId());
+        comment.setContent(event.content());
+        comment.setUserId(event.userId());
+        comment.setMovieId(event.movieId());
+
+        // Поток, сохранивший комментарий, только кладёт его в буферы и никогда не ждёт:
+        // клиент, чей буфер переполнен, отключается и может переподключиться.
+        for (Subscriber subscriber : movieSubscribers) {
+            if (!subscriber.buffer.offer(comment)) {
+                log.warn("Подписчик на комментарии фильма {} не успевает читать, отключен",
+                        event.movieId());
+                remove(subscriber);
+                subscriber.emitter.complete();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        List<Subscriber> all = subscribers.values().stream().flatMap(Set::stream).toList();
+        for (Subscriber subscriber : all) {
+            remove(subscriber);
+            subscriber.emitter.complete();
+        }
+    }
+
+    protected SseEmitter newEmitter(long timeout) {
+        return new SseEmitter(timeout);
+    }
+
+    private void deliver(Subscriber subscriber) {
+        try {
+            while (subscriber.active) {
+                CommentDto comment = subscriber.buffer.poll(heartbeatMs, TimeUnit.MILLISECONDS);
+                if (!subscriber.active) {
+                    return;
+                }
+                if (comment == null) {
+                    // Пустой комментарий SSE раз в интервал выявляет отключившихся клиентов.
+                    subscriber.emitter.send(SseEmitter.event().comment(HEARTBEAT));
+                } else {
+                    subscriber.emitter.send(SseEmitter.event()
+                            .id(String.valueOf(comment.getId()))
+                            .name(EVENT_NAME)
+                            .data(comment));
+                }
+            }
+        } catch (IOException | IllegalStateException e) {
+            // Клиент отключился или поток уже завершён: контейнер закроет его сам.
+            remove(subscriber);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void remove(Subscriber subscriber) {
+        if (!subscriber.active) {
+            return;
+        }
+        subscriber.active = false;
+        subscribers.computeIfPresent(subscriber.movieId, (key, movieSubscribers) -> {
+            movieSubscribers.remove(subscriber);
+            return movieSubscribers.isEmpty() ? null : movieSubscribers;
+        });
+        subscriber.sender.interrupt();
+    }
+
+    private final class Subscriber {
+        private final Integer movieId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<CommentDto> buffer;
+        private final Thread sender;
+        private volatile boolean active = true;
+
+        private Subscriber(Integer movieId, SseEmitter emitter, BlockingQueue<CommentDto> buffer) {
+            this.movieId = movieId;
+            this.emitter = emitter;
+            this.buffer = buffer;
+            this.sender = Thread.ofVirtual().name("comment-stream-" + movieId)
+                    .unstarted(() -> deliver(this));
+        }
+    }
+}
@@ -0,0 +1,409 @@
+package com.movio.moviolab.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.movio.moviolab.dao.CommentBatchDao;
+import com.movio.moviolab.dto.CommentDto;
+import com.movio.moviolab.events.CommentEvent;
+import com.movio.moviolab.exceptions.CommentException;
+import com.movio.moviolab.exceptions.CommentQueueFullException;
+import com.movio.moviolab.models.Comment;
+import jakarta.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+// Комментарий попадает в журнал и очередь, клиент получает 202, в базу комментарий
+// пишется пачкой позже. Id выдаются блоками из последовательности в базе, поэтому
+// отложенную запись нужно включать на всех экземплярах сразу: экземпляр без нее
+// берет id из AUTO_INCREMENT и может занять id из уже выданного блока.
+// Доставка "хотя бы один раз": если enqueue упал после записи в журнал, а комментарий
+// уже забрал сборщик пачек или приложение перезапустилось, комментарий будет
+// сохранен, хотя клиент получил ошибку.
+@Service
+public class CommentWriteBehindService {
+
+    private static final Logger log = LoggerFactory.getLogger(CommentWriteBehindService.class);
+    private static final long RETRY_DELAY_MS = 1000;
+    private static final long SHUTDOWN_TIMEOUT_MS = 30_000;
+
+    private final CommentBatchDao commentBatchDao;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final Path journalPath;
+    private final int idBlockSize;
+    private final BlockingQueue<Comment> queue;
+    // Комментарии, принятые, но еще не записанные в базу: фильтр дубликатов узнает
+    // о них только из события после записи.
+    private final Set<PendingKey> pending = ConcurrentHashMap.newKeySet();
+
+    private final Object journalLock = new Object();
+    private final Object forceLock = new Object();
+    private FileChannel journal;
+    private long journaledBytes;
+    private long forcedBytes;
+    private long unflushed;
+    // Текущий блок id, под journalLock.
+    private int nextId;
+    private int blockEnd;
+
+    private volatile boolean running;
+    private Thread flusher;
+
+    @Autowired
+    public CommentWriteBehindService(
+            CommentBatchDao commentBatchDao, ObjectMapper objectMapper,
+            ApplicationEventPublisher eventPublisher,
+            @Value("${moviolab.comments.write-behind.enabled:false}") boolean enabled,
+            @Value("${moviolab.comments.write-behind.queue-capacity:10000}") int queueCapacity,
+            @Value("${moviolab.comments.write-behind.batch-size:500}") int batchSize,
+            @Value("${moviolab.comments.write-behind.flush-interval-ms:200}") long flushIntervalMs,
+            @Value("${moviolab.comments.write-behind.journal:data/comments.journal}")
+            String journalPath,
+            @Value("${moviolab.comments.write-behind.id-block-size:1000}") int idBlockSize) {
+        this.commentBatchDao = commentBatchDao;
+        this.objectMapper = objectMapper;
+        this.eventPublisher = eventPublisher;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.journalPath = Path.of(journalPath);
+        this.idBlockSize = idBlockSize;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    public boolean isActive() {
+        return running;
+    }
+
+    public boolean isPending(Integer userId, Integer movieId, String content) {
+        return pending.contains(new PendingKey(userId, movieId, content));
+    }
+
+    public Integer enqueue(CommentDto commentDto) {
+        Comment comment = new Comment();
+        comment.setContent(commentDto.getContent());
+        comment.setUserId(commentDto.getUserId());
+        comment.setMovieId(commentDto.getMovieId());
+        PendingKey key = PendingKey.of(comment);
+
+        long position;
+        synchronized (journalLock) {
+            if (!running) {
+                throw new CommentQueueFullException("Прием комментариев остановлен");
+            }
+            // Добавляет в очередь только этот метод и только под блокировкой,
+            // поэтому проверенное место не займут до add ниже.
+            if (queue.remainingCapacity() == 0) {
+                throw new CommentQueueFullException(
+                        "Очередь комментариев переполнена, повторите позже");
+            }
+            // Повторная отправка, пока первая копия ждет записи.
+            if (!pending.add(key)) {
+                throw new CommentException(CommentService.DUPLICATE_MESSAGE);
+            }
+            try {
+                comment.setId(nextId());
+                position = append(comment);
+            } catch (RuntimeException e) {
+                pending.remove(key);
+                throw e;
+            }
+            queue.add(comment);
+            unflushed++;
+        }
+        try {
+            awaitDurable(position);
+        } catch (UncheckedIOException e) {
+            // Клиент получит ошибку: забираем комментарий из очереди, если сборщик
+            // пачек еще не взял его.
+            if (queue.remove(comment)) {
+                pending.remove(key);
+                markFlushed(1);
+            }
+            throw e;
+        }
+        return comment.getId();
+    }
+
+    // Пачки массового импорта пишутся в базу сразу, но id берут из той же
+    // последовательности, что и очередь, чтобы не занять id из ее блоков.
+    public int reserveIds(int count) {
+        return commentBatchDao.reserveIds(count);
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Path parent = journalPath.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+
+        // Событий о восстановленных комментариях нет: индексы и счетчики строятся
+        // по базе после этого шага.
+        commentBatchDao.initIdSequence();
+        List<Comment> pending = readJournal();
+        int restored = 0;
+        for (int from = 0; from < pending.size(); from += batchSize) {
+            restored += insert(pending.subList(from,
+                    Math.min(from + batchSize, pending.size()))).size();
+        }
+        if (!pending.isEmpty()) {
+            log.info("Из журнала восстановлено комментариев: {} из {}", restored,
+                    pending.size());
+        }
+
+        journal = FileChannel.open(journalPath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE);
+        journal.truncate(0);
+        journal.force(true);
+
+        running = true;
+        flusher = Thread.ofPlatform().name("comment-write-behind").daemon()
+                .start(this::flushLoop);
+        log.info("Отложенная запись комментариев включена, журнал {}", journalPath);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException, IOException {
+        synchronized (journalLock) {
+            if (!running) {
+                return;
+            }
+            running = false;
+        }
+        flusher.join(SHUTDOWN_TIMEOUT_MS);
+        synchronized (journalLock) {
+            journal.close();
+        }
+    }
+
+    private void flushLoop() {
+        while (running || !queue.isEmpty()) {
+            List<Comment> batch = new ArrayList<>(batchSize);
+            try {
+                collect(batch);
+                if (!batch.isEmpty() && !flush(batch)) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void collect(List<Comment> batch) throws InterruptedException {
+        Comment first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0) {
+                return;
+            }
+            Comment next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private boolean flush(List<Comment> batch) throws InterruptedException {
+        List<Comment> inserted;
+        while (true) {
+            try {
+                inserted = insert(batch);
+                break;
+            } catch (DataAccessException e) {
+                if (!running) {
+                    log.error("Не удалось записать {} комментариев при остановке, "
+                            + "они останутся в журнале", batch.size(), e);
+                    return false;
+                }
+                log.error("Ошибка пакетной записи комментариев, повтор через {} мс",
+                        RETRY_DELAY_MS, e);
+                Thread.sleep(RETRY_DELAY_MS);
+            }
+        }
+
+        // Ключи снимаются после событий: к этому моменту фильтр уже знает о комментариях.
+        publishCreated(inserted);
+        batch.forEach(comment -> pending.remove(PendingKey.of(comment)));
+        markFlushed(batch.size());
+        return true;
+    }
+
+    // Если пачка нарушает ограничения базы (фильм или пользователь удалены после
+    // ответа 202), она пишется по одной строке, и отбрасываются только такие строки.
+    private List<Comment> insert(List<Comment> batch) {
+        try {
+            return commentBatchDao.insertAll(batch);
+        } catch (DataIntegrityViolationException e) {
+            List<Comment> inserted = new ArrayList<>(batch.size());
+            for (Comment comment : batch) {
+                try {
+                    inserted.addAll(commentBatchDao.insertAll(List.of(comment)));
+                } catch (DataIntegrityViolationException rejected) {
+                    log.warn("Комментарий {} не записан: фильм {} или пользователь {} "
+                                    + "не существует", comment.getId(), comment.getMovieId(),
+                            comment.getUserId());
+                }
+            }
+            return inserted;
+        }
+    }
+
+    private void publishCreated(List<Comment> inserted) {
+        for (Comment comment : inserted) {
+            eventPublisher.publishEvent(new CommentEvent(CommentEvent.Type.CREATED,
+                    comment.getId(), comment.getMovieId(), comment.getUserId(),
+                    comment.getContent()));
+        }
+    }
+
+    // Вызывается под journalLock.
+    private int nextId() {
+        if (nextId == blockEnd) {
+            nextId = commentBatchDao.reserveIds(idBlockSize);
+            blockEnd = nextId + idBlockSize;
+        }
+        return nextId++;
+    }
+
+    private void markFlushed(int count) {
+        synchronized (journalLock) {
+            unflushed -= count;
+            if (unflushed == 0) {
+                // Всё, что есть в журнале, уже в базе: обрезаем, чтобы он не рос.
+                try {
+                    journal.truncate(0);
+                } catch (IOException e) {
+                    log.warn("Не удалось обрезать журнал комментариев {}", journalPath, e);
+                }
+            }
+        }
+    }
+
+    private long append(Comment comment) {
+        try {
+            byte[] line = (objectMapper.writeValueAsString(toJournalEntry(comment)) + "\n")
+                    .getBytes(StandardCharsets.UTF_8);
+            ByteBuffer buffer = ByteBuffer.wrap(line);
+            while (buffer.hasRemaining()) {
+                journal.write(buffer);
+            }
+            journaledBytes += line.length;
+            return journaledBytes;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось записать комментарий в журнал", e);
+        }
+    }
+
+    private void awaitDurable(long position) {
+        // Групповой force: первый поток сбрасывает на диск всё записанное к этому моменту,
+        // остальные, чьи строки уже попали в этот сброс, не ждут отдельного fsync.
+        synchronized (forceLock) {
+            if (forcedBytes >= position) {
+                return;
+            }
+            long target;
+            synchronized (journalLock) {
+                target = journaledBytes;
+            }
+            try {
+                journal.force(false);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Не удалось сбросить журнал комментариев", e);
+            }
+            forcedBytes = target;
+        }
+    }
+
+    private List<Comment> readJournal() throws IOException {
+        List<Comment> comments = new ArrayList<>();
+        if (!Files.exists(journalPath)) {
+            return comments;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(journalPath,
+                StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    comments.add(fromJournalEntry(objectMapper.readValue(line,
+                            CommentDto.class)));
+                } catch (JsonProcessingException e) {
+                    // Оборванная последняя строка: запрос не получил ответа 202.
+                    log.warn("Пропущена поврежденная запись журнала комментариев");
+                }
+            }
+        }
+        return comments;
+    }
+
+    private CommentDto toJournalEntry(Comment comment) {
+        CommentDto entry = new CommentDto();
+        entry.setId(comment.getId());
+        entry.setContent(comment.getContent());
+        entry.setUserId(comment.getUserId());
+        entry.setMovieId(comment.getMovieId());
+        return entry;
+    }
+
+    private Comment fromJournalEntry(CommentDto entry) {
+        Comment comment = new Comment();
+        comment.setId(entry.getId());
+        comment.setContent(entry.getContent());
+        comment.setUserId(entry.getUserId());
+        comment.setMovieId(entry.getMovieId());
+        return comment;
+    }
+
+    private record PendingKey(Integer userId, Integer movieId, String content) {
+
+        static PendingKey of(Comment comment) {
+            return new PendingKey(comment.getUserId(), comment.getMovieId(),
+                    comment.getContent());
+        }
+    }
+}
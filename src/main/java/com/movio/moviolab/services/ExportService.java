@@ -0,0 +1,114 @@
+package com.movio.moviolab.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.movio.moviolab.dao.ExportDao;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.zip.GZIPOutputStream;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+
+@Service
+public class ExportService {
+
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    private final ExportDao exportDao;
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public ExportService(ExportDao exportDao, ObjectMapper objectMapper) {
+        this.exportDao = exportDao;
+        this.objectMapper = objectMapper;
+    }
+
+    // Все четыре выборки идут в одной read-only транзакции, чтобы выгрузка
+    // была согласованным снимком базы на момент начала экспорта.
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public void exportCatalog(LocalDateTime since, OutputStream out) throws IOException {
+        GZIPOutputStream gzip = new GZIPOutputStream(out, GZIP_BUFFER_SIZE);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(gzip)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setPrettyPrinter(new MinimalPrettyPrinter(""));
+
+            exportDao.streamMovies(since, rs -> writeRow(generator, () -> {
+                generator.writeStringField("type", "movie");
+                generator.writeNumberField("id", rs.getInt("id"));
+                generator.writeStringField("title", rs.getString("title"));
+                generator.writeStringField("genre", rs.getString("genre"));
+                writeInteger(generator, "year", rs, "year");
+                writeTimestamp(generator, rs);
+            }));
+
+            exportDao.streamUsers(since, rs -> writeRow(generator, () -> {
+                generator.writeStringField("type", "user");
+                generator.writeNumberField("id", rs.getInt("id"));
+                generator.writeStringField("name", rs.getString("name"));
+                generator.writeStringField("email", rs.getString("email"));
+                writeTimestamp(generator, rs);
+            }));
+
+            exportDao.streamComments(since, rs -> writeRow(generator, () -> {
+                generator.writeStringField("type", "comment");
+                generator.writeNumberField("id", rs.getInt("id"));
+                generator.writeStringField("content", rs.getString("content"));
+                writeInteger(generator, "userId", rs, "user_id");
+                writeInteger(generator, "movieId", rs, "movie_id");
+                writeTimestamp(generator, rs);
+            }));
+
+            exportDao.streamMovieUsers(since, rs -> writeRow(generator, () -> {
+                generator.writeStringField("type", "movie_user");
+                generator.writeNumberField("movieId", rs.getInt("movie_id"));
+                generator.writeNumberField("userId", rs.getInt("user_id"));
+            }));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        gzip.finish();
+        gzip.flush();
+    }
+
+    private void writeRow(JsonGenerator generator, RowWriter rowWriter) throws SQLException {
+        try {
+            generator.writeStartObject();
+            rowWriter.write();
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeInteger(JsonGenerator generator, String field, ResultSet rs, String column)
+            throws SQLException, IOException {
+        int value = rs.getInt(column);
+        if (rs.wasNull()) {
+            generator.writeNullField(field);
+        } else {
+            generator.writeNumberField(field, value);
+        }
+    }
+
+    private void writeTimestamp(JsonGenerator generator, ResultSet rs)
+            throws SQLException, IOException {
+        Timestamp updatedAt = rs.getTimestamp("updated_at");
+        if (updatedAt != null) {
+            generator.writeStringField("updatedAt", updatedAt.toLocalDateTime().toString());
+        }
+    }
+
+    @FunctionalInterface
+    private interface RowWriter {
+        void write() throws SQLException, IOException;
+    }
+}
@@ -0,0 +1,279 @@
+package com.movio.moviolab.services;
+
+import com.movio.moviolab.exceptions.BadRequestException;
+import com.movio.moviolab.index.LogTimeIndex;
+import java.io.BufferedOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+// Читает строки лога за день из архива и текущего файла потоком, не собирая их в память:
+// объем памяти на запрос ограничен буферами чтения и записи. Строки отбираются
+// LogLineScanner по байтам и копируются клиенту без декодирования.
+@Service
+public class LogFileService {
+
+    private static final String SKIPPED_LINE = "INFO - Вход в метод контроллера";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAP_WINDOW = 64 * 1024 * 1024;
+
+    private final Path logFile;
+    private final LogTimeIndex logTimeIndex;
+
+    @Autowired
+    public LogFileService(@Value("${logging.file.name}") String logFilePath,
+                          LogTimeIndex logTimeIndex) {
+        this.logFile = Path.of(logFilePath);
+        this.logTimeIndex = logTimeIndex;
+    }
+
+    public LocalDate parseDate(String date) {
+        try {
+            return LocalDate.parse(date);
+        } catch (DateTimeParseException e) {
+            throw new BadRequestException("Дата должна быть в формате yyyy-MM-dd: " + date);
+        }
+    }
+
+    // Дочитывает только до первой подходящей строки, чтобы отличить пустой день от 404.
+    public boolean hasLines(LocalDate date) throws IOException {
+        LogLineScanner scanner = scannerFor(date);
+        Progress progress = new Progress();
+        boolean[] found = new boolean[1];
+        for (Source source : sourcesFor(date)) {
+            scan(source, scanner, progress, (buffer, start, end) -> {
+                found[0] = true;
+                return false;
+            });
+            if (found[0]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public long writeLines(LocalDate date, OutputStream out) throws IOException {
+        return writeLines(date, out, new Progress());
+    }
+
+    public long writeLines(LocalDate date, OutputStream out, Progress progress)
+            throws IOException {
+        LogLineScanner scanner = scannerFor(date);
+        List<Source> sources = sourcesFor(date);
+        for (Source source : sources) {
+            progress.totalBytes.addAndGet(source.length());
+        }
+        OutputStream target = new BufferedOutputStream(out, BUFFER_SIZE);
+        LineWriter writer = new LineWriter(target);
+        for (Source source : sources) {
+            scan(source, scanner, progress, writer);
+        }
+        target.flush();
+        return writer.lines;
+    }
+
+    // Ключ неизменяемых строк прошедшего дня: они целиком лежат в архиве, а текущий файл
+    // этого дня уже не содержит. Архив не переписывается, поэтому его имя, размер и время
+    // изменения однозначно определяют результат. Пусто, если день еще может дополниться.
+    public Optional<String> archiveKey(LocalDate date) throws IOException {
+        if (!date.isBefore(LocalDate.now())) {
+            return Optional.empty();
+        }
+        List<Source> sources = sourcesFor(date);
+        if (sources.size() != 1 || sources.getFirst().end() >= 0) {
+            return Optional.empty();
+        }
+        Path archive = sources.getFirst().path();
+        return Optional.of(archive.getFileName() + "-" + Files.size(archive) + "-"
+                + Files.getLastModifiedTime(archive).toMillis());
+    }
+
+    private static LogLineScanner scannerFor(LocalDate date) {
+        return new LogLineScanner(date.toString(), SKIPPED_LINE);
+    }
+
+    // Архив содержит начало дня, текущий файл - его продолжение, поэтому порядок такой.
+    // Из текущего файла читается только отрезок дня по индексу: до ротации в нем
+    // остаются и строки прошлого дня, поэтому он проверяется для любой даты.
+    private List<Source> sourcesFor(LocalDate date) throws IOException {
+        List<Source> sources = new ArrayList<>(2);
+        Path archive = logFile.resolveSibling(logFile.getFileName() + "." + date + ".0.gz");
+        if (Files.exists(archive)) {
+            sources.add(new Source(archive, 0, -1));
+        }
+        LogTimeIndex.Range range = logTimeIndex.range(date.atStartOfDay(),
+                date.plusDays(1).atStartOfDay());
+        if (!range.isEmpty()) {
+            sources.add(new Source(logFile, range.start(), range.end()));
+        }
+        return sources;
+    }
+
+    private static void scan(Source source, LogLineScanner scanner, Progress progress,
+                             LogLineScanner.LineConsumer consumer) throws IOException {
+        if (source.end() < 0) {
+            scanGzip(source.path(), scanner, progress, consumer);
+        } else {
+            scanMapped(source.path(), source.start(), source.end(), scanner, progress,
+                    consumer);
+        }
+    }
+
+    // Отрезок текущего файла отображается в память окнами; строка, не поместившаяся
+    // в окно целиком, становится началом следующего окна.
+    private static void scanMapped(Path path, long start, long end, LogLineScanner scanner,
+                                   Progress progress, LogLineScanner.LineConsumer consumer)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long position = start;
+            long window = MAP_WINDOW;
+            while (position < end) {
+                checkInterrupted();
+                int size = (int) Math.min(window, end - position);
+                boolean last = position + size >= end;
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+                        position, size);
+                int consumed = scanner.scan(buffer, 0, size, last, consumer);
+                if (consumed < 0) {
+                    return;
+                }
+                if (consumed == 0 && !last) {
+                    window = Math.min(window * 2, Integer.MAX_VALUE);
+                }
+                position += consumed;
+                progress.scannedBytes.addAndGet(consumed);
+            }
+        }
+    }
+
+    // Архив распаковывается в буфер, неполная строка в конце переносится в его начало.
+    // Прогресс считается по сжатым байтам: их общий объем известен заранее.
+    private static void scanGzip(Path path, LogLineScanner scanner, Progress progress,
+                                 LogLineScanner.LineConsumer consumer) throws IOException {
+        try (InputStream in = new GZIPInputStream(new CountingInputStream(
+                Files.newInputStream(path), progress.scannedBytes), BUFFER_SIZE)) {
+            byte[] data = new byte[BUFFER_SIZE];
+            int filled = 0;
+            while (true) {
+                checkInterrupted();
+                int read = in.readNBytes(data, filled, data.length - filled);
+                boolean last = read == 0;
+                int limit = filled + read;
+                int consumed = scanner.scan(ByteBuffer.wrap(data), 0, limit, last, consumer);
+                if (consumed < 0 || last) {
+                    return;
+                }
+                int remaining = limit - consumed;
+                if (remaining == data.length) {
+                    data = Arrays.copyOf(data, data.length * 2);
+                } else {
+                    System.arraycopy(data, consumed, data, 0, remaining);
+                }
+                filled = remaining;
+            }
+        }
+    }
+
+    // Отображенный в память буфер не опрашивает флаг прерывания сам, поэтому отмена
+    // задачи проверяется между окнами и порциями данных.
+    private static void checkInterrupted() throws InterruptedIOException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("Чтение лога прервано");
+        }
+    }
+
+    // Объем прочитанного и общий объем источников в байтах для отчета о ходе задачи.
+    public static final class Progress {
+        private final AtomicLong totalBytes = new AtomicLong();
+        private final AtomicLong scannedBytes = new AtomicLong();
+
+        public long getTotalBytes() {
+            return totalBytes.get();
+        }
+
+        public long getScannedBytes() {
+            return scannedBytes.get();
+        }
+    }
+
+    // Файл целиком (архив, end = -1) или отрезок [start, end) текущего файла.
+    private record Source(Path path, long start, long end) {
+
+        long length() throws IOException {
+            return end < 0 ? Files.size(path) : end - start;
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        private final AtomicLong counter;
+
+        CountingInputStream(InputStream in, AtomicLong counter) {
+            super(in);
+            this.counter = counter;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                counter.incrementAndGet();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                counter.addAndGet(n);
+            }
+            return n;
+        }
+    }
+
+    private static final class LineWriter implements LogLineScanner.LineConsumer {
+        private final OutputStream out;
+        private byte[] copy = new byte[BUFFER_SIZE];
+        private long lines;
+
+        private LineWriter(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public boolean accept(ByteBuffer buffer, int start, int end) throws IOException {
+            int length = end - start;
+            if (buffer.hasArray()) {
+                out.write(buffer.array(), buffer.arrayOffset() + start, length);
+            } else {
+                if (copy.length < length) {
+                    copy = new byte[Math.max(length, copy.length * 2)];
+                }
+                buffer.get(start, copy, 0, length);
+                out.write(copy, 0, length);
+            }
+            out.write('\n');
+            lines++;
+            return true;
+        }
+    }
+}
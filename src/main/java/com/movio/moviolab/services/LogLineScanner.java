@@ -0,0 +1,111 @@
+package com.movio.moviolab.services;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+// Фильтрует строки лога прямо по байтам UTF-8: перевод строки ищется по 8 байт за раз,
+// префикс даты и исключаемая подстрока сравниваются без декодирования в String.
+// Строку получает только потребитель и только если она прошла оба фильтра.
+public final class LogLineScanner {
+
+    private static final long NEWLINES = 0x0A0A0A0A0A0A0A0AL;
+    private static final long LOW_BITS = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    @FunctionalInterface
+    public interface LineConsumer {
+        // Строка [start, end) без перевода строки; false останавливает просмотр.
+        boolean accept(ByteBuffer buffer, int start, int end) throws IOException;
+    }
+
+    private final byte[] prefix;
+    private final byte[] excluded;
+
+    public LogLineScanner(String prefix, String excluded) {
+        this.prefix = prefix.getBytes(StandardCharsets.UTF_8);
+        this.excluded = excluded.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Просматривает полные строки в [from, to) и возвращает начало первой неполной строки,
+    // которую вызывающий код передаст снова вместе со следующей порцией данных. Если last,
+    // хвост без перевода строки считается последней строкой. -1 - потребитель остановил.
+    public int scan(ByteBuffer buffer, int from, int to, boolean last, LineConsumer consumer)
+            throws IOException {
+        // Порядок little-endian нужен поиску перевода строки по словам.
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        int lineStart = from;
+        int newline;
+        while ((newline = indexOfNewline(buffer, lineStart, to)) >= 0) {
+            if (!offer(buffer, lineStart, newline, consumer)) {
+                return -1;
+            }
+            lineStart = newline + 1;
+        }
+        if (last && lineStart < to) {
+            if (!offer(buffer, lineStart, to, consumer)) {
+                return -1;
+            }
+            lineStart = to;
+        }
+        return lineStart;
+    }
+
+    public boolean matches(ByteBuffer buffer, int start, int end) {
+        if (end - start < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer.get(start + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return !contains(buffer, start + prefix.length, end);
+    }
+
+    private boolean offer(ByteBuffer buffer, int start, int end, LineConsumer consumer)
+            throws IOException {
+        if (end > start && buffer.get(end - 1) == '\r') {
+            end--;
+        }
+        return !matches(buffer, start, end) || consumer.accept(buffer, start, end);
+    }
+
+    private boolean contains(ByteBuffer buffer, int start, int end) {
+        byte first = excluded[0];
+        int lastStart = end - excluded.length;
+        for (int i = start; i <= lastStart; i++) {
+            if (buffer.get(i) != first) {
+                continue;
+            }
+            int j = 1;
+            while (j < excluded.length && buffer.get(i + j) == excluded[j]) {
+                j++;
+            }
+            if (j == excluded.length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Классический поиск нулевого байта в слове после XOR с '\n'. Младший отмеченный байт
+    // всегда настоящий, поэтому при little-endian он и есть первый перевод строки в слове.
+    private static int indexOfNewline(ByteBuffer buffer, int from, int to) {
+        int i = from;
+        for (; i + Long.BYTES <= to; i += Long.BYTES) {
+            long word = buffer.getLong(i) ^ NEWLINES;
+            long found = (word - LOW_BITS) & ~word & HIGH_BITS;
+            if (found != 0) {
+                return i + Long.numberOfTrailingZeros(found) / Byte.SIZE;
+            }
+        }
+        for (; i < to; i++) {
+            if (buffer.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,261 @@
+package com.movio.moviolab.services;
+
+import com.movio.moviolab.exceptions.BadRequestException;
+import com.movio.moviolab.exceptions.LogQueueFullException;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+// Выгрузка логов за несколько дней. Архивы дней распаковываются и фильтруются параллельно
+// на собственном пуле, а клиенту дни отдаются строго по порядку дат. Результат дня
+// пишется на диск: прошедшие дни - в кэш выгрузок AsyncLogService, остальные -
+// во временные файлы. Поэтому память на запрос не зависит от объема дня.
+@Service
+public class LogRangeService {
+
+    public static final int MAX_DAYS = 31;
+
+    private final LogFileService logFileService;
+    private final AsyncLogService asyncLogService;
+    private final ThreadPoolExecutor executor;
+    // Места в пуле резервируются до ответа клиенту, поэтому очередь пула не переполняется
+    // и может быть неограниченной: в ней лежат только отмененные задачи сверх резерва.
+    private final Semaphore capacity;
+    private final int parallelism;
+
+    @Autowired
+    public LogRangeService(LogFileService logFileService, AsyncLogService asyncLogService,
+                           @Value("${moviolab.logs.range.threads:4}") int threads,
+                           @Value("${moviolab.logs.range.queue-capacity:32}") int queueCapacity) {
+        this.logFileService = logFileService;
+        this.asyncLogService = asyncLogService;
+        this.parallelism = threads;
+        this.capacity = new Semaphore(threads + queueCapacity);
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                Thread.ofPlatform().name("log-range-", 1).daemon(true).factory());
+    }
+
+    @PreDestroy
+    public void shutdownExecutor() {
+        executor.shutdownNow();
+    }
+
+    public List<LocalDate> parseRange(String from, String to) {
+        LocalDate start = logFileService.parseDate(from);
+        LocalDate end = logFileService.parseDate(to);
+        if (end.isBefore(start)) {
+            throw new BadRequestException("Дата окончания раньше даты начала: "
+                    + from + " - " + to);
+        }
+        if (ChronoUnit.DAYS.between(start, end) >= MAX_DAYS) {
+            throw new BadRequestException("Диапазон не может превышать " + MAX_DAYS + " дней");
+        }
+        return start.datesUntil(end.plusDays(1)).toList();
+    }
+
+    public boolean hasLines(List<LocalDate> days) throws IOException {
+        for (LocalDate day : days) {
+            if (logFileService.hasLines(day)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Вызывается до начала ответа: при занятом пуле клиент получает 503, а не оборванный
+    // ответ 200. Резерв освобождает writeLines или writeZip по окончании записи.
+    public Reservation reserve(List<LocalDate> days) {
+        int permits = Math.min(parallelism, days.size());
+        if (!capacity.tryAcquire(permits)) {
+            throw new LogQueueFullException("Слишком много выгрузок логов, повторите позже");
+        }
+        return new Reservation(days, permits);
+    }
+
+    // Строки всех дней подряд, в порядке дат.
+    public void writeLines(Reservation reservation, OutputStream out) throws IOException {
+        extract(reservation, (day, content) -> content.in().transferTo(out));
+        out.flush();
+    }
+
+    // Один архив, в нем по файлу на каждый день, где есть строки.
+    public void writeZip(Reservation reservation, OutputStream out) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(out);
+        extract(reservation, (day, content) -> {
+            if (content.size() == 0) {
+                return;
+            }
+            zip.putNextEntry(new ZipEntry("logs-" + day + ".log"));
+            content.in().transferTo(zip);
+            zip.closeEntry();
+        });
+        zip.finish();
+        zip.flush();
+    }
+
+    // Держит в работе окно из зарезервированного числа дней: как только самый ранний день
+    // записан, в пул уходит следующий. Ошибка записи клиенту отменяет оставшиеся задачи.
+    private void extract(Reservation reservation, DayConsumer consumer) throws IOException {
+        List<LocalDate> days = reservation.days;
+        Deque<Future<DayContent>> window = new ArrayDeque<>(reservation.permits);
+        List<Future<DayContent>> submitted = new ArrayList<>(days.size());
+        try (reservation; Spools spools = new Spools()) {
+            try {
+                int next = 0;
+                for (int i = 0; i < days.size(); i++) {
+                    while (next < days.size() && window.size() < reservation.permits) {
+                        Future<DayContent> future = submit(days.get(next++), spools);
+                        window.addLast(future);
+                        submitted.add(future);
+                    }
+                    try (DayContent content = await(window.removeFirst())) {
+                        consumer.accept(days.get(i), content);
+                    }
+                }
+            } finally {
+                for (Future<DayContent> future : submitted) {
+                    future.cancel(true);
+                }
+            }
+        }
+    }
+
+    private Future<DayContent> submit(LocalDate day, Spools spools) {
+        FutureTask<DayContent> task = new FutureTask<>(() -> {
+            Optional<AsyncLogService.CachedLog> cached = asyncLogService.openCachedLog(day);
+            if (cached.isPresent()) {
+                return spools.register(new DayContent(cached.get().content(),
+                        cached.get().size()));
+            }
+            Path temp = spools.createTemp();
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                logFileService.writeLines(day, out);
+            }
+            // Размер читается до открытия: DELETE_ON_CLOSE может удалить имя файла сразу.
+            long size = Files.size(temp);
+            return spools.register(new DayContent(Files.newInputStream(temp,
+                    StandardOpenOption.DELETE_ON_CLOSE), size));
+        });
+        executor.execute(task);
+        return task;
+    }
+
+    private static DayContent await(Future<DayContent> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Выгрузка логов прервана");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IllegalStateException("Ошибка выгрузки логов", e.getCause());
+        }
+    }
+
+    public final class Reservation implements AutoCloseable {
+        private final List<LocalDate> days;
+        private final int permits;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Reservation(List<LocalDate> days, int permits) {
+            this.days = days;
+            this.permits = permits;
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                capacity.release(permits);
+            }
+        }
+    }
+
+    // Временные файлы и открытые результаты одной выгрузки. При закрытии удаляется всё,
+    // в том числе результаты задач, которые закончились уже после отмены.
+    private static final class Spools implements AutoCloseable {
+        private final List<Path> temps = new ArrayList<>();
+        private final List<DayContent> contents = new ArrayList<>();
+        private boolean closed;
+
+        synchronized Path createTemp() throws IOException {
+            checkOpen();
+            Path temp = Files.createTempFile("log-range-", ".log");
+            temps.add(temp);
+            return temp;
+        }
+
+        synchronized DayContent register(DayContent content) throws IOException {
+            if (closed) {
+                content.close();
+            }
+            checkOpen();
+            contents.add(content);
+            return content;
+        }
+
+        private void checkOpen() throws InterruptedIOException {
+            if (closed) {
+                throw new InterruptedIOException("Выгрузка логов отменена");
+            }
+        }
+
+        @Override
+        public synchronized void close() {
+            closed = true;
+            for (DayContent content : contents) {
+                try {
+                    content.close();
+                } catch (IOException e) {
+                    // Файл только читался, ошибка закрытия ничего не теряет.
+                }
+            }
+            for (Path temp : temps) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException e) {
+                    temp.toFile().deleteOnExit();
+                }
+            }
+        }
+    }
+
+    private record DayContent(InputStream in, long size) implements AutoCloseable {
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    @FunctionalInterface
+    private interface DayConsumer {
+        void accept(LocalDate day, DayContent content) throws IOException;
+    }
+}
@@ -0,0 +1,364 @@
+package com.movio.moviolab.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.movio.moviolab.dao.MovieDao;
+import com.movio.moviolab.dto.MovieDto;
+import com.movio.moviolab.exceptions.BadRequestException;
+import com.movio.moviolab.exceptions.ValidationException;
+import com.movio.moviolab.models.Movie;
+import jakarta.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+@Service
+public class MovieImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(MovieImportService.class);
+
+    private static final int CHUNK_SIZE = 500;
+    private static final int MAX_ERROR_ROWS = 100;
+    private static final int IMPORT_THREADS = 2;
+    private static final long TASK_TTL_MINUTES = 30;
+    private static final String CSV_HEADER = "title,genre,year";
+
+    public enum ImportFormat { NDJSON, CSV }
+
+    private final MovieService movieService;
+    private final MovieDao movieDao;
+    private final ObjectMapper objectMapper;
+
+    private final Map<String, ImportTask> tasks = new ConcurrentHashMap<>();
+    private final ExecutorService importExecutor = Executors.newFixedThreadPool(IMPORT_THREADS);
+    private final ScheduledExecutorService cleanupExecutor =
+            Executors.newSingleThreadScheduledExecutor();
+
+    @Autowired
+    public MovieImportService(MovieService movieService, MovieDao movieDao,
+                              ObjectMapper objectMapper) {
+        this.movieService = movieService;
+        this.movieDao = movieDao;
+        this.objectMapper = objectMapper;
+        cleanupExecutor.scheduleAtFixedRate(this::cleanupExpiredTasks, 1, 1, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void shutdownExecutors() {
+        importExecutor.shutdownNow();
+        cleanupExecutor.shutdown();
+    }
+
+    public String startImport(MultipartFile file, String format) {
+        if (file == null || file.isEmpty()) {
+            throw new BadRequestException("Файл импорта пуст");
+        }
+
+        ImportFormat importFormat = resolveFormat(format, file.getOriginalFilename());
+
+        Path upload;
+        try {
+            // Multipart-данные удаляются по окончании запроса, поэтому переносим их во
+            // временный файл, который читается фоновой задачей.
+            upload = Files.createTempFile("movies-import-", ".tmp");
+            file.transferTo(upload);
+        } catch (IOException e) {
+            throw new BadRequestException("Не удалось принять файл импорта: " + e.getMessage());
+        }
+
+        String taskId = UUID.randomUUID().toString();
+        ImportTask task = new ImportTask(importFormat, file.getSize());
+        tasks.put(taskId, task);
+        importExecutor.execute(() -> runImport(task, upload));
+        return taskId;
+    }
+
+    public Map<String, Object> getImportStatus(String taskId) {
+        ImportTask task = tasks.get(taskId.trim());
+        if (task == null) {
+            throw new NoSuchElementException("Задача импорта не найдена или устарела");
+        }
+        return task.getStatus();
+    }
+
+    private void runImport(ImportTask task, Path upload) {
+        try (InputStream in = new CountingInputStream(
+                Files.newInputStream(upload), task.bytesRead);
+             BufferedReader reader = new BufferedReader(
+                     new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            importRows(task, reader);
+            task.finish(ImportState.COMPLETED, null);
+        } catch (Exception e) {
+            log.error("Ошибка импорта фильмов", e);
+            task.finish(ImportState.FAILED, e.getMessage());
+        } finally {
+            try {
+                Files.deleteIfExists(upload);
+            } catch (IOException e) {
+                log.warn("Не удалось удалить временный файл импорта {}", upload);
+            }
+        }
+    }
+
+    private void importRows(ImportTask task, BufferedReader reader) throws IOException {
+        List<ImportRow> chunk = new ArrayList<>(CHUNK_SIZE);
+        long lineNumber = 0;
+        String line;
+
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank() || isCsvHeader(task.format, lineNumber, line)) {
+                continue;
+            }
+
+            task.processedRows.incrementAndGet();
+            try {
+                MovieDto movieDto = parseRow(task.format, line);
+                movieService.validateNewMovie(movieDto);
+                chunk.add(new ImportRow(lineNumber, movieService.convertToEntity(movieDto)));
+            } catch (ValidationException | IllegalArgumentException e) {
+                task.addError(lineNumber, e.getMessage());
+            } catch (JsonProcessingException e) {
+                task.addError(lineNumber, "Некорректный JSON: " + e.getOriginalMessage());
+            }
+
+            if (chunk.size() >= CHUNK_SIZE) {
+                commitChunk(task, chunk);
+                chunk.clear();
+            }
+        }
+
+        if (!chunk.isEmpty()) {
+            commitChunk(task, chunk);
+        }
+    }
+
+    private void commitChunk(ImportTask task, List<ImportRow> chunk) {
+        Set<String> chunkKeys = findStoredKeys(chunk);
+        List<Movie> moviesToSave = new ArrayList<>(chunk.size());
+
+        for (ImportRow row : chunk) {
+            Movie movie = row.movie();
+            if (!chunkKeys.add(movieKey(movie.getGenre(), movie.getYear(), movie.getTitle()))) {
+                task.addError(row.lineNumber(), "Фильм уже существует: " + movie.getTitle()
+                        + ", " + movie.getGenre() + ", " + movie.getYear());
+                continue;
+            }
+            moviesToSave.add(movie);
+        }
+
+        if (!moviesToSave.isEmpty()) {
+            movieDao.saveAll(moviesToSave);
+            task.importedRows.addAndGet(moviesToSave.size());
+        }
+    }
+
+    // Уже сохраненные фильмы пачки одним запросом вместо запроса на каждую строку.
+    private Set<String> findStoredKeys(List<ImportRow> chunk) {
+        Set<String> titles = new HashSet<>();
+        Set<Integer> years = new HashSet<>();
+        for (ImportRow row : chunk) {
+            titles.add(row.movie().getTitle().toLowerCase(Locale.ROOT));
+            years.add(row.movie().getYear());
+        }
+        Set<String> keys = new HashSet<>();
+        for (Object[] stored : movieDao.findKeysByTitlesAndYears(titles, years)) {
+            keys.add(movieKey((String) stored[0], (Integer) stored[1], (String) stored[2]));
+        }
+        return keys;
+    }
+
+    private static String movieKey(String genre, Integer year, String title) {
+        return String.valueOf(genre).toLowerCase(Locale.ROOT) + '|' + year
+                + '|' + String.valueOf(title).toLowerCase(Locale.ROOT);
+    }
+
+    private MovieDto parseRow(ImportFormat format, String line) throws JsonProcessingException {
+        if (format == ImportFormat.NDJSON) {
+            MovieDto movieDto = objectMapper.readValue(line, MovieDto.class);
+            movieDto.setId(null);
+            return movieDto;
+        }
+
+        List<String> columns = parseCsvLine(line);
+        if (columns.size() != 3) {
+            throw new IllegalArgumentException("Ожидалось 3 колонки (title,genre,year), получено: "
+                    + columns.size());
+        }
+
+        MovieDto movieDto = new MovieDto();
+        movieDto.setTitle(columns.get(0).trim());
+        movieDto.setGenre(columns.get(1).trim());
+        try {
+            movieDto.setYear(Integer.valueOf(columns.get(2).trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Некорректный год: " + columns.get(2));
+        }
+        return movieDto;
+    }
+
+    private static List<String> parseCsvLine(String line) {
+        List<String> columns = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                columns.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        columns.add(current.toString());
+        return columns;
+    }
+
+    private boolean isCsvHeader(ImportFormat format, long lineNumber, String line) {
+        return format == ImportFormat.CSV && lineNumber == 1
+                && line.replace(" ", "").equalsIgnoreCase(CSV_HEADER);
+    }
+
+    private ImportFormat resolveFormat(String format, String filename) {
+        if (format != null && !format.isBlank()) {
+            try {
+                return ImportFormat.valueOf(format.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new BadRequestException("Неподдерживаемый формат импорта: " + format);
+            }
+        }
+        if (filename != null && filename.toLowerCase(Locale.ROOT).endsWith(".csv")) {
+            return ImportFormat.CSV;
+        }
+        return ImportFormat.NDJSON;
+    }
+
+    private void cleanupExpiredTasks() {
+        tasks.entrySet().removeIf(entry -> entry.getValue().isExpired());
+    }
+
+    private record ImportRow(long lineNumber, Movie movie) {
+    }
+
+    private enum ImportState { RUNNING, COMPLETED, FAILED }
+
+    private static class ImportTask {
+        private final ImportFormat format;
+        private final long totalBytes;
+        private final AtomicLong bytesRead = new AtomicLong();
+        private final AtomicLong processedRows = new AtomicLong();
+        private final AtomicLong importedRows = new AtomicLong();
+        private final AtomicLong errorCount = new AtomicLong();
+        private final List<Map<String, Object>> errors = new ArrayList<>();
+        private volatile ImportState state = ImportState.RUNNING;
+        private volatile String failure;
+        private volatile long expiration = Long.MAX_VALUE;
+
+        ImportTask(ImportFormat format, long totalBytes) {
+            this.format = format;
+            this.totalBytes = totalBytes;
+        }
+
+        void addError(long lineNumber, String message) {
+            errorCount.incrementAndGet();
+            synchronized (errors) {
+                if (errors.size() < MAX_ERROR_ROWS) {
+                    errors.add(Map.of("line", lineNumber, "message", String.valueOf(message)));
+                }
+            }
+        }
+
+        void finish(ImportState finalState, String failureMessage) {
+            this.failure = failureMessage;
+            this.state = finalState;
+            this.expiration = System.currentTimeMillis()
+                    + TimeUnit.MINUTES.toMillis(TASK_TTL_MINUTES);
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() > expiration;
+        }
+
+        Map<String, Object> getStatus() {
+            Map<String, Object> map = new HashMap<>();
+            map.put("state", state);
+            map.put("format", format);
+            map.put("bytesRead", bytesRead.get());
+            map.put("totalBytes", totalBytes);
+            map.put("processedRows", processedRows.get());
+            map.put("importedRows", importedRows.get());
+            map.put("errorRows", errorCount.get());
+            synchronized (errors) {
+                map.put("errors", List.copyOf(errors));
+            }
+            if (failure != null) {
+                map.put("failure", failure);
+            }
+            return map;
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        private final AtomicLong counter;
+
+        CountingInputStream(InputStream in, AtomicLong counter) {
+            super(in);
+            this.counter = counter;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                counter.incrementAndGet();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                counter.addAndGet(n);
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.movio.moviolab.services;
+
+import com.movio.moviolab.dao.MovieDao;
+import com.movio.moviolab.dto.MovieTopDto;
+import com.movio.moviolab.exceptions.BadRequestException;
+import com.movio.moviolab.index.MovieLeaderboard;
+import com.movio.moviolab.models.Movie;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+@Service
+public class MovieRankingService {
+
+    private static final int MAX_LIMIT = 100;
+
+    private final MovieLeaderboard movieLeaderboard;
+    private final MovieDao movieDao;
+
+    @Autowired
+    public MovieRankingService(MovieLeaderboard movieLeaderboard, MovieDao movieDao) {
+        this.movieLeaderboard = movieLeaderboard;
+        this.movieDao = movieDao;
+    }
+
+    public List<MovieTopDto> getTopMovies(String by, int limit) {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new BadRequestException("Параметр limit должен быть от 1 до " + MAX_LIMIT);
+        }
+
+        List<MovieLeaderboard.Entry> entries = movieLeaderboard.top(parseMetric(by), limit);
+        if (entries.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Integer, Movie> movies = movieDao.findAllById(entries.stream()
+                        .map(MovieLeaderboard.Entry::movieId).toList()).stream()
+                .collect(Collectors.toMap(Movie::getId, Function.identity()));
+
+        List<MovieTopDto> result = new ArrayList<>(entries.size());
+        for (MovieLeaderboard.Entry entry : entries) {
+            Movie movie = movies.get(entry.movieId());
+            if (movie != null) {
+                result.add(convertToDto(movie, entry.count()));
+            }
+        }
+        return result;
+    }
+
+    private MovieLeaderboard.Metric parseMetric(String by) {
+        if (by == null) {
+            throw new BadRequestException("Параметр by должен быть comments или users");
+        }
+        return switch (by.trim().toLowerCase(Locale.ROOT)) {
+            case "comments" -> MovieLeaderboard.Metric.COMMENTS;
+            case "users" -> MovieLeaderboard.Metric.USERS;
+            default -> throw new BadRequestException(
+                    "Параметр by должен быть comments или users");
+        };
+    }
+
+    private MovieTopDto convertToDto(Movie movie, long count) {
+        MovieTopDto movieTopDto = new MovieTopDto();
+        movieTopDto.setId(movie.getId());
+        movieTopDto.setTitle(movie.getTitle());
+        movieTopDto.setGenre(movie.getGenre());
+        movieTopDto.setYear(movie.getYear());
+        movieTopDto.setCount(count);
+        return movieTopDto;
+    }
+}
@@ -0,0 +1,85 @@
+package com.movio.moviolab.services;
+
+import com.movio.moviolab.dao.MovieDao;
+import com.movio.moviolab.dao.UserDao;
+import com.movio.moviolab.dto.MovieTopDto;
+import com.movio.moviolab.exceptions.BadRequestException;
+import com.movio.moviolab.exceptions.MovieException;
+import com.movio.moviolab.exceptions.UserException;
+import com.movio.moviolab.index.CoOccurrenceIndex;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+// Выдача и названия фильмов берутся из памяти индекса. В базу запрос идет, только
+// если у фильма или пользователя нет ни одной связи (проверить, что он существует),
+// и при первом показе фильма, пока его названия нет в индексе.
+@Service
+public class MovieRecommendationService {
+
+    private static final int MAX_LIMIT = 100;
+
+    private final CoOccurrenceIndex coOccurrenceIndex;
+    private final MovieDao movieDao;
+    private final UserDao userDao;
+
+    @Autowired
+    public MovieRecommendationService(CoOccurrenceIndex coOccurrenceIndex, MovieDao movieDao,
+                                      UserDao userDao) {
+        this.coOccurrenceIndex = coOccurrenceIndex;
+        this.movieDao = movieDao;
+        this.userDao = userDao;
+    }
+
+    public List<MovieTopDto> getSimilarMovies(Integer movieId, int limit) {
+        validateLimit(limit);
+        if (!coOccurrenceIndex.hasMovie(movieId) && !movieDao.existsById(movieId)) {
+            throw new MovieException("Фильм не найден: " + movieId);
+        }
+        return toDtos(coOccurrenceIndex.similar(movieId, limit));
+    }
+
+    public List<MovieTopDto> getRecommendations(Integer userId, int limit) {
+        validateLimit(limit);
+        if (!coOccurrenceIndex.hasUser(userId) && !userDao.existsById(userId)) {
+            throw new UserException("Пользователь не найден: " + userId);
+        }
+        return toDtos(coOccurrenceIndex.recommendations(userId, limit));
+    }
+
+    private void validateLimit(int limit) {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new BadRequestException("Параметр limit должен быть от 1 до " + MAX_LIMIT);
+        }
+    }
+
+    private List<MovieTopDto> toDtos(List<CoOccurrenceIndex.Score> scores) {
+        if (scores.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Integer, CoOccurrenceIndex.MovieSummary> movies = coOccurrenceIndex.summaries(
+                scores.stream().map(CoOccurrenceIndex.Score::movieId).toList());
+
+        List<MovieTopDto> result = new ArrayList<>(scores.size());
+        for (CoOccurrenceIndex.Score score : scores) {
+            CoOccurrenceIndex.MovieSummary movie = movies.get(score.movieId());
+            if (movie != null) {
+                result.add(convertToDto(movie, score.count()));
+            }
+        }
+        return result;
+    }
+
+    private MovieTopDto convertToDto(CoOccurrenceIndex.MovieSummary movie, long count) {
+        MovieTopDto movieTopDto = new MovieTopDto();
+        movieTopDto.setId(movie.id());
+        movieTopDto.setTitle(movie.title());
+        movieTopDto.setGenre(movie.genre());
+        movieTopDto.setYear(movie.year());
+        movieTopDto.setCount(count);
+        return movieTopDto;
+    }
+}
@@ -2,10 +2,14 @@ package com.movio.moviolab.services;
 
 import com.movio.moviolab.cache.InMemoryCache;
 import com.movio.moviolab.dao.MovieDao;
+import com.movio.moviolab.dao.MovieUserDao;
 import com.movio.moviolab.dao.UserDao;
 import com.movio.moviolab.dto.CommentDto;
 import com.movio.moviolab.dto.MovieDto;
+import com.movio.moviolab.dto.MovieUserLinkDto;
 import com.movio.moviolab.dto.UserDto;
+import com.movio.moviolab.events.MovieEvent;
+import com.movio.moviolab.events.MovieUserEvent;
 import com.movio.moviolab.exceptions.BadRequestException;
 import com.movio.moviolab.exceptions.MovieException;
 import com.movio.moviolab.exceptions.UserAlreadyAssociatedException;
@@ -14,10 +18,25 @@ import com.movio.moviolab.exceptions.ValidationException;
 import com.movio.moviolab.models.Comment;
 import com.movio.moviolab.models.Movie;
 import com.movio.moviolab.models.User;
+import com.movio.moviolab.readmodel.CommentCounters;
 import jakarta.transaction.Transactional;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
@@ -29,16 +48,55 @@ public class MovieService {
             "Фильм с таким названием, жанром и годом уже существует: ";
     private static final String MOVIE_NOT_FOUND_MESSAGE = "Фильм не найден: ";
     private static final String CACHE_PREFIX_MOVIE_GENRE = "movie_genre_";
+    private static final int MAX_BULK_LINKS = 10_000;
+    private static final int UNIQUE_LINKS_ATTEMPTS = 3;
+
+    private static final Logger log = LoggerFactory.getLogger(MovieService.class);
 
     private final MovieDao movieDao;
     private final UserDao userDao;
+    private final MovieUserDao movieUserDao;
     private final InMemoryCache inMemoryCache;
+    private final CommentCounters commentCounters;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Autowired
-    public MovieService(MovieDao movieDao, UserDao userDao, InMemoryCache inMemoryCache) {
+    public MovieService(MovieDao movieDao, UserDao userDao, MovieUserDao movieUserDao,
+                        InMemoryCache inMemoryCache, CommentCounters commentCounters,
+                        ApplicationEventPublisher eventPublisher) {
         this.movieDao = movieDao;
         this.userDao = userDao;
+        this.movieUserDao = movieUserDao;
         this.inMemoryCache = inMemoryCache;
+        this.commentCounters = commentCounters;
+        this.eventPublisher = eventPublisher;
+    }
+
+    // Уникальный индекс movie_user появился позже самой таблицы, и Hibernate
+    // (ddl-auto=update) молча не создает его, если в таблице уже есть повторы.
+    // Повторы удаляются, затем индекс добавляется. Если вставка успела создать
+    // новый повтор между этими шагами, попытка повторяется. Выполняется до
+    // построения индексов, которые считают связи.
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureUniqueUserLinks() {
+        for (int attempt = 1; !movieUserDao.hasUniqueLinkIndex(); attempt++) {
+            int removed = movieUserDao.deleteDuplicateLinks();
+            try {
+                movieUserDao.addUniqueLinkIndex();
+                log.info("Добавлен уникальный индекс связей фильм - пользователь, "
+                        + "удалено повторов: {}", removed);
+            } catch (DataIntegrityViolationException e) {
+                if (attempt == UNIQUE_LINKS_ATTEMPTS) {
+                    log.error("Не удалось добавить уникальный индекс movie_user: в таблице "
+                            + "остаются повторы", e);
+                    return;
+                }
+            } catch (DataAccessException e) {
+                log.error("Не удалось добавить уникальный индекс movie_user", e);
+                return;
+            }
+        }
     }
 
     public List<MovieDto> getMovies(String genre, Integer year, String title) {
@@ -56,6 +114,10 @@ public class MovieService {
         return movies;
     }
 
+    public boolean existsById(Integer id) {
+        return movieDao.existsById(id);
+    }
+
     public MovieDto getMovieById(Integer id) {
         Movie movie = movieDao.findById(id)
                 .orElseThrow(() -> new MovieException(MOVIE_NOT_FOUND_MESSAGE + id));
@@ -83,12 +145,15 @@ public class MovieService {
 
     @Transactional
     public void deleteMovieById(Integer id) {
-        movieDao.findById(id)
+        Movie movie = movieDao.findById(id)
                 .orElseThrow(() -> new MovieException(MOVIE_NOT_FOUND_MESSAGE + id));
 
         inMemoryCache.removeAll();
 
-        movieDao.deleteById(id);
+        Map<Integer, Long> commentCounts = movieDao.deleteWithAssociations(id);
+
+        eventPublisher.publishEvent(new MovieEvent(MovieEvent.Type.DELETED, id,
+                movie.getGenre(), null, commentCounts));
     }
 
     @Transactional
@@ -110,6 +175,9 @@ public class MovieService {
         inMemoryCache.remove(CACHE_PREFIX_MOVIE_GENRE + oldGenre);
         inMemoryCache.remove(CACHE_PREFIX_MOVIE_GENRE + updatedMovie.getGenre());
 
+        eventPublisher.publishEvent(new MovieEvent(MovieEvent.Type.UPDATED, id,
+                oldGenre, updatedMovie.getGenre()));
+
         return convertToDto(updatedMovie);
     }
 
@@ -138,13 +206,10 @@ public class MovieService {
         inMemoryCache.remove(CACHE_PREFIX_MOVIE_GENRE + oldGenre);
         inMemoryCache.remove(CACHE_PREFIX_MOVIE_GENRE + updatedMovie.getGenre());
 
-        return convertToDto(updatedMovie);
-    }
+        eventPublisher.publishEvent(new MovieEvent(MovieEvent.Type.UPDATED, id,
+                oldGenre, updatedMovie.getGenre()));
 
-    public List<CommentDto> getCommentsByMovieId(Integer id) {
-        Movie movie = movieDao.findById(id)
-                .orElseThrow(() -> new MovieException(MOVIE_NOT_FOUND_MESSAGE + id));
-        return movie.getComments().stream().map(this::convertToDto).toList();
+        return convertToDto(updatedMovie);
     }
 
     @Transactional
@@ -160,6 +225,7 @@ public class MovieService {
 
         movie.getUsers().add(user);
         user.getMovies().add(movie);
+        movie.setUpdatedAt(LocalDateTime.now());
 
         movieDao.save(movie);
         userDao.save(user);
@@ -170,6 +236,9 @@ public class MovieService {
             inMemoryCache.remove(key);
         }
 
+        eventPublisher.publishEvent(new MovieUserEvent(MovieUserEvent.Type.LINKED,
+                movieId, userId));
+
         return ResponseEntity.status(HttpStatus.CREATED).build();
     }
 
@@ -186,15 +255,58 @@ public class MovieService {
             inMemoryCache.remove(key);
         }
 
-        movie.getUsers().remove(user);
+        boolean wasLinked = movie.getUsers().remove(user);
         user.getMovies().remove(movie);
+        movie.setUpdatedAt(LocalDateTime.now());
 
         movieDao.save(movie);
         userDao.save(user);
 
+        if (wasLinked) {
+            eventPublisher.publishEvent(new MovieUserEvent(MovieUserEvent.Type.UNLINKED,
+                    movieId, userId));
+        }
+
         return ResponseEntity.status(HttpStatus.NO_CONTENT).build();
     }
 
+    @Transactional
+    public int addUsersToMoviesBulk(List<MovieUserLinkDto> links) {
+        if (links == null || links.isEmpty()) {
+            throw new BadRequestException("Список связей не может быть пуст");
+        }
+        if (links.size() > MAX_BULK_LINKS) {
+            throw new BadRequestException("За один запрос можно передать не более "
+                    + MAX_BULK_LINKS + " связей");
+        }
+        Set<MovieUserLinkDto> uniqueLinks = new LinkedHashSet<>();
+        for (MovieUserLinkDto link : links) {
+            if (link == null || link.getMovieId() == null || link.getUserId() == null) {
+                throw new BadRequestException("В каждой связи нужны movieId и userId");
+            }
+            uniqueLinks.add(link);
+        }
+
+        List<MovieUserLinkDto> inserted = movieUserDao.insertIfAbsent(
+                new ArrayList<>(uniqueLinks));
+        if (inserted.isEmpty()) {
+            return 0;
+        }
+
+        Set<Integer> movieIds = new LinkedHashSet<>();
+        inserted.forEach(link -> movieIds.add(link.getMovieId()));
+        movieUserDao.touchMovies(movieIds);
+        for (String genre : movieUserDao.findGenres(movieIds)) {
+            inMemoryCache.remove(CACHE_PREFIX_MOVIE_GENRE + genre);
+        }
+
+        for (MovieUserLinkDto link : inserted) {
+            eventPublisher.publishEvent(new MovieUserEvent(MovieUserEvent.Type.LINKED,
+                    link.getMovieId(), link.getUserId()));
+        }
+        return inserted.size();
+    }
+
     public List<UserDto> getUsersForMovie(Integer movieId) {
         Movie movie = movieDao.findById(movieId)
                 .orElseThrow(() -> new MovieException("Фильм не найден по id: " + movieId));
@@ -202,6 +314,10 @@ public class MovieService {
         return movie.getUsers().stream().map(this::convertToDto).toList();
     }
 
+    public void validateNewMovie(MovieDto movieDto) {
+        validateMovieDto(movieDto, false);
+    }
+
     private void validateMovieDto(MovieDto movieDto, boolean isPartial) {
 
         if (!isPartial) {
@@ -249,6 +365,7 @@ public class MovieService {
         movieDto.setTitle(movie.getTitle());
         movieDto.setGenre(movie.getGenre());
         movieDto.setYear(movie.getYear());
+        movieDto.setCommentCount(commentCounters.movieCount(movie));
 
         if (movie.getComments() != null) {
             List<CommentDto> commentDtos = movie.getComments().stream()
@@ -6,20 +6,31 @@ import com.movio.moviolab.dao.UserDao;
 import com.movio.moviolab.dto.CommentDto;
 import com.movio.moviolab.dto.MovieDto;
 import com.movio.moviolab.dto.UserDto;
+import com.movio.moviolab.events.UserEvent;
 import com.movio.moviolab.exceptions.UserException;
 import com.movio.moviolab.exceptions.ValidationException;
 import com.movio.moviolab.models.Comment;
 import com.movio.moviolab.models.Movie;
 import com.movio.moviolab.models.User;
+import com.movio.moviolab.readmodel.CommentCounters;
 import jakarta.transaction.Transactional;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.function.Function;
+import java.util.function.ToIntFunction;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 
@@ -33,16 +44,24 @@ public class UserService {
     private final UserDao userDao;
     private final MovieDao movieDao;
     private final InMemoryCache inMemoryCache;
+    private final CommentCounters commentCounters;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Autowired
-    public UserService(UserDao userDao, MovieDao movieDao, InMemoryCache inMemoryCache) {
+    public UserService(UserDao userDao, MovieDao movieDao, InMemoryCache inMemoryCache,
+                       CommentCounters commentCounters,
+                       ApplicationEventPublisher eventPublisher) {
         this.userDao = userDao;
         this.movieDao = movieDao;
         this.inMemoryCache = inMemoryCache;
+        this.commentCounters = commentCounters;
+        this.eventPublisher = eventPublisher;
     }
 
     private static final Logger log = LoggerFactory.getLogger(UserService.class);
     private static final String CACHE_KEY = "movie_genre_";
+    private static final int BACKFILL_BATCH_SIZE = 10_000;
+    private static final int BACKFILL_REPORT_LIMIT = 100;
 
     public List<UserDto> getUsers(String name, String email) {
         List<User> users;
@@ -75,35 +94,140 @@ public class UserService {
         validateUser(userDto, false);
 
         User user = convertToEntity(userDto);
+        user.normalizeIdentity();
 
-        if (!userDao.findByNameIgnoreCase(user.getName()).isEmpty()) {
-            throw new IllegalArgumentException(USER_ALREADY_EXISTS_MESSAGE + user.getName());
-        }
-        if (!userDao.findByEmailIgnoreCase(user.getEmail()).isEmpty()) {
-            throw new IllegalArgumentException(USER_ALREADY_EXISTS_MESSAGE + user.getEmail());
+        List<String> conflicts = userDao.findConflictingNames(user.getNameNormalized(),
+                user.getEmailNormalized());
+        if (!conflicts.isEmpty()) {
+            throw alreadyExists(user, conflicts);
         }
 
-        User savedUser = userDao.save(user);
+        // Между проверкой и вставкой параллельная регистрация могла занять имя или почту:
+        // окончательное решение за уникальными индексами.
+        User savedUser;
+        try {
+            savedUser = userDao.save(user);
+        } catch (DataIntegrityViolationException e) {
+            List<String> raced = userDao.findConflictingNames(user.getNameNormalized(),
+                    user.getEmailNormalized());
+            if (raced.isEmpty()) {
+                throw e;
+            }
+            throw alreadyExists(user, raced);
+        }
 
         return convertToDto(savedUser);
     }
 
-    @Transactional
-    public ResponseEntity<String> deleteUserById(Integer id) {
-        User user = userDao.findById(id)
-                .orElseThrow(() -> new UserException(USER_NOT_FOUND_MESSAGE + id));
+    // Каждая пачка в своей транзакции: на миллионах строк одно UPDATE держало бы
+    // блокировки всей таблицы до конца миграции. Пользователи, чьи имя или почта
+    // совпадают с чужими без учета регистра, пропускаются: уникальный индекс не даст
+    // их заполнить, а падение здесь остановило бы запуск приложения. Их id выводятся
+    // в лог, конфликт разрешается вручную; до тех пор поиск и проверка занятости
+    // сравнивают такие строки по LOWER(name) и LOWER(email).
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillNormalizedColumns() {
+        // Обычно миграция давно завершена: одна строка по индексу вместо полного прохода.
+        if (!userDao.hasUnnormalizedRows()) {
+            return;
+        }
+        Set<Integer> duplicateNames = new HashSet<>(
+                userDao.findUnnormalizedIdsWithDuplicateName());
+        Set<Integer> duplicateEmails = new HashSet<>(
+                userDao.findUnnormalizedIdsWithDuplicateEmail());
+        Set<Integer> skipped = new TreeSet<>(duplicateNames);
+        skipped.addAll(duplicateEmails);
+
+        long total = 0;
+        int afterId = 0;
+        List<Object[]> batch;
+        do {
+            batch = userDao.findWithoutNormalizedColumns(afterId, BACKFILL_BATCH_SIZE);
+            List<Integer> names = new ArrayList<>(batch.size());
+            List<Integer> emails = new ArrayList<>(batch.size());
+            for (Object[] row : batch) {
+                Integer id = ((Number) row[0]).intValue();
+                if (row[1] != null && row[3] == null && !duplicateNames.contains(id)) {
+                    names.add(id);
+                }
+                if (row[2] != null && row[4] == null && !duplicateEmails.contains(id)) {
+                    emails.add(id);
+                }
+                afterId = id;
+            }
+            total += fill(names, userDao::fillNormalizedNames, skipped)
+                    + fill(emails, userDao::fillNormalizedEmails, skipped);
+        } while (batch.size() == BACKFILL_BATCH_SIZE);
 
-        for (Movie movie : user.getMovies()) {
-            String genre = movie.getGenre();
+        if (total > 0) {
+            log.info("Заполнены нормализованные имя и почта у {} пользователей", total);
+        }
+        if (!skipped.isEmpty()) {
+            log.warn("У {} пользователей имя или почта совпадают с другими без учета регистра, "
+                    + "нормализованные столбцы не заполнены. id: {}", skipped.size(),
+                    skipped.stream().limit(BACKFILL_REPORT_LIMIT).toList());
+        }
+    }
 
-            String key = CACHE_KEY + genre;
-            inMemoryCache.remove(key);
+    // Конфликт мог появиться уже после проверки (параллельная регистрация): тогда
+    // пачка заполняется построчно и пропускаются только конфликтующие строки.
+    private int fill(List<Integer> ids, ToIntFunction<List<Integer>> filler,
+                     Set<Integer> skipped) {
+        try {
+            return filler.applyAsInt(ids);
+        } catch (DataIntegrityViolationException e) {
+            int filled = 0;
+            for (Integer id : ids) {
+                try {
+                    filled += filler.applyAsInt(List.of(id));
+                } catch (DataIntegrityViolationException conflict) {
+                    skipped.add(id);
+                }
+            }
+            return filled;
+        }
+    }
+
+    // Проверка идет до изменения сущности: иначе запрос сбросил бы изменения в базу
+    // раньше проверки, и вместо понятной ошибки сработал бы уникальный индекс.
+    private void checkConflicts(Integer id, String name, String email) {
+        User candidate = new User();
+        candidate.setName(name);
+        candidate.setEmail(email);
+        candidate.normalizeIdentity();
+        List<String> conflicts = userDao.findConflictingNames(candidate.getNameNormalized(),
+                candidate.getEmailNormalized(), id);
+        if (!conflicts.isEmpty()) {
+            throw alreadyExists(candidate, conflicts);
+        }
+    }
+
+    private IllegalArgumentException alreadyExists(User user, List<String> conflictingNames) {
+        String value = conflictingNames.contains(user.getNameNormalized())
+                ? user.getName() : user.getEmail();
+        return new IllegalArgumentException(USER_ALREADY_EXISTS_MESSAGE + value);
+    }
+
+    @Transactional
+    public ResponseEntity<String> deleteUserById(Integer id) {
+        if (!userDao.existsById(id)) {
+            throw new UserException(USER_NOT_FOUND_MESSAGE + id);
+        }
 
-            movie.getUsers().remove(user);
-            movieDao.save(movie);
+        List<Integer> movieIds = new ArrayList<>();
+        Set<String> genres = new HashSet<>();
+        for (Object[] row : userDao.findMovieIdsAndGenresByUserId(id)) {
+            movieIds.add(((Number) row[0]).intValue());
+            genres.add((String) row[1]);
+        }
+        for (String genre : genres) {
+            inMemoryCache.remove(CACHE_KEY + genre);
         }
 
-        userDao.deleteById(id);
+        Map<Integer, Long> commentCounts = userDao.deleteWithAssociations(id);
+
+        eventPublisher.publishEvent(new UserEvent(UserEvent.Type.DELETED, id, movieIds,
+                commentCounts));
 
         return ResponseEntity.noContent().build();
     }
@@ -115,6 +239,7 @@ public class UserService {
 
         User user = userDao.findById(id)
                 .orElseThrow(() -> new UserException(USER_NOT_FOUND_MESSAGE + id));
+        checkConflicts(id, updatedUserDto.getName(), updatedUserDto.getEmail());
 
         user.setName(updatedUserDto.getName());
         user.setEmail(updatedUserDto.getEmail());
@@ -122,13 +247,17 @@ public class UserService {
 
         User updatedUser = userDao.save(user);
 
+        List<Integer> movieIds = new ArrayList<>();
         for (Movie movie : user.getMovies()) {
             String genre = movie.getGenre();
 
             String key = CACHE_KEY + genre;
             inMemoryCache.remove(key);
+            movieIds.add(movie.getId());
         }
 
+        eventPublisher.publishEvent(new UserEvent(UserEvent.Type.UPDATED, id, movieIds));
+
         return convertToDto(updatedUser);
     }
 
@@ -139,6 +268,8 @@ public class UserService {
 
         User user = userDao.findById(id)
                 .orElseThrow(() -> new UserException(USER_NOT_FOUND_MESSAGE + id));
+        checkConflicts(id, Optional.ofNullable(partialUserDto.getName()).orElse(user.getName()),
+                Optional.ofNullable(partialUserDto.getEmail()).orElse(user.getEmail()));
 
         if (partialUserDto.getName() != null) {
             user.setName(partialUserDto.getName());
@@ -152,25 +283,18 @@ public class UserService {
 
         User updatedUser = userDao.save(user);
 
+        List<Integer> movieIds = new ArrayList<>();
         for (Movie movie : user.getMovies()) {
             String genre = movie.getGenre();
 
             String key = CACHE_KEY + genre;
             inMemoryCache.remove(key);
+            movieIds.add(movie.getId());
         }
 
-        return convertToDto(updatedUser);
-    }
-
-    public List<CommentDto> getCommentsByUserId(Integer id) {
-        User user = userDao.findById(id).orElseThrow(()
-                -> new UserException(USER_NOT_FOUND_MESSAGE + id));
+        eventPublisher.publishEvent(new UserEvent(UserEvent.Type.UPDATED, id, movieIds));
 
-        if (user.getComments() == null) {
-            user.setComments(new ArrayList<>());
-        }
-
-        return user.getComments().stream().map(this::convertToDto).toList();
+        return convertToDto(updatedUser);
     }
 
     public List<UserDto> getUsersByGenreFromCacheOrDb(String genre, Function<String,
@@ -271,6 +395,7 @@ public class UserService {
         userDto.setId(user.getId());
         userDto.setName(user.getName());
         userDto.setEmail(user.getEmail());
+        userDto.setCommentCount(commentCounters.userCount(user));
 
         if (user.getComments() != null) {
             List<CommentDto> commentDtos = user.getComments().stream()
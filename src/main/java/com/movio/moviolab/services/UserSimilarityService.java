@@ -0,0 +1,61 @@
+package com.movio.moviolab.services;
+
+import com.movio.moviolab.dao.UserDao;
+import com.movio.moviolab.dto.SimilarUserDto;
+import com.movio.moviolab.exceptions.BadRequestException;
+import com.movio.moviolab.exceptions.UserException;
+import com.movio.moviolab.index.SimilarUserIndex;
+import com.movio.moviolab.models.User;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+@Service
+public class UserSimilarityService {
+
+    private static final int MAX_LIMIT = 100;
+
+    private final SimilarUserIndex similarUserIndex;
+    private final UserDao userDao;
+
+    @Autowired
+    public UserSimilarityService(SimilarUserIndex similarUserIndex, UserDao userDao) {
+        this.similarUserIndex = similarUserIndex;
+        this.userDao = userDao;
+    }
+
+    public List<SimilarUserDto> getSimilarUsers(Integer userId, int limit) {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new BadRequestException("Параметр limit должен быть от 1 до " + MAX_LIMIT);
+        }
+        if (!userDao.existsById(userId)) {
+            throw new UserException("Пользователь не найден: " + userId);
+        }
+
+        List<SimilarUserIndex.Match> matches = similarUserIndex.similar(userId, limit);
+        if (matches.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Integer, User> users = userDao.findAllById(matches.stream()
+                        .map(SimilarUserIndex.Match::userId).toList()).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+
+        List<SimilarUserDto> result = new ArrayList<>(matches.size());
+        for (SimilarUserIndex.Match match : matches) {
+            User user = users.get(match.userId());
+            if (user != null) {
+                SimilarUserDto similarUserDto = new SimilarUserDto();
+                similarUserDto.setId(user.getId());
+                similarUserDto.setName(user.getName());
+                similarUserDto.setSimilarity(match.similarity());
+                result.add(similarUserDto);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,237 @@
+package com.movio.moviolab.testservice;
+
+import com.movio.moviolab.exceptions.LogQueueFullException;
+import com.movio.moviolab.index.LogTimeIndex;
+import com.movio.moviolab.services.AsyncLogService;
+import com.movio.moviolab.services.LogFileService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class AsyncLogServiceTest {
+
+    private static final LocalDate DAY = LocalDate.of(2025, 3, 1);
+
+    @TempDir
+    private Path dir;
+
+    private AsyncLogService asyncLogService;
+
+    @AfterEach
+    void tearDown() {
+        if (asyncLogService != null) {
+            asyncLogService.shutdownExecutor();
+        }
+    }
+
+    @Test
+    void testTask_CompletesWithoutDelayAndReportsBytes() throws Exception {
+        Path logFile = dir.resolve("application.log");
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            lines.add(DAY + " 12:00:00 - строка " + i);
+        }
+        Files.write(logFile, lines, StandardCharsets.UTF_8);
+        asyncLogService = new AsyncLogService(new LogFileService(logFile.toString(),
+                new LogTimeIndex(logFile.toString())), 1, 1, dir.resolve("cache").toString(), 1024);
+
+        String taskId = asyncLogService.createLogTask(DAY.toString());
+        Map<String, Object> status = awaitDone(taskId);
+
+        assertEquals(AsyncLogService.TaskState.COMPLETED, status.get("state"));
+        assertEquals(Files.size(logFile), status.get("totalBytes"));
+        assertEquals(Files.size(logFile), status.get("bytesScanned"));
+        assertEquals(Files.size(logFile), asyncLogService.getLogFile(taskId).getContentLength());
+    }
+
+    @Test
+    void testCancel_InterruptsRunningTaskAndFreesQueueSlot() throws Exception {
+        LogFileService logFileService = mock(LogFileService.class);
+        when(logFileService.parseDate(any()))
+                .thenAnswer(invocation -> LocalDate.parse(invocation.getArgument(0)));
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        when(logFileService.writeLines(any(), any(), any())).thenAnswer(invocation -> {
+            running.countDown();
+            try {
+                Thread.sleep(60_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                throw new InterruptedIOException("Чтение лога прервано");
+            }
+            return 0L;
+        });
+        asyncLogService = new AsyncLogService(logFileService, 1, 1, dir.toString(), 1024);
+
+        String runningTask = asyncLogService.createLogTask(DAY.toString());
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        String queuedTask = asyncLogService.createLogTask(DAY.plusDays(1).toString());
+        assertEquals(AsyncLogService.TaskState.QUEUED,
+                asyncLogService.getTaskStatus(queuedTask).get("state"));
+        assertThrows(LogQueueFullException.class,
+                () -> asyncLogService.createLogTask(DAY.plusDays(2).toString()));
+
+        asyncLogService.cancelTask(runningTask);
+
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertThrows(NoSuchElementException.class,
+                () -> asyncLogService.getTaskStatus(runningTask));
+        asyncLogService.cancelTask(queuedTask);
+        assertThrows(NoSuchElementException.class, () -> asyncLogService.cancelTask(queuedTask));
+    }
+
+    @Test
+    void testCreate_SameDateJoinsRunningTask() throws Exception {
+        LogFileService logFileService = mock(LogFileService.class);
+        when(logFileService.parseDate(any())).thenReturn(DAY);
+        CountDownLatch release = new CountDownLatch(1);
+        when(logFileService.writeLines(any(), any(), any())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return 0L;
+        });
+        asyncLogService = new AsyncLogService(logFileService, 1, 1, dir.toString(), 1024);
+
+        String first = asyncLogService.createLogTask(DAY.toString());
+        String second = asyncLogService.createLogTask(DAY.toString());
+        release.countDown();
+
+        assertNotEquals(first, second);
+        assertEquals(AsyncLogService.TaskState.COMPLETED, awaitDone(first).get("state"));
+        assertEquals(AsyncLogService.TaskState.COMPLETED, awaitDone(second).get("state"));
+        verify(logFileService, times(1)).writeLines(any(), any(), any());
+        // Результат текущего дня не кэшируется: новый запрос после завершения читает заново.
+        assertNotEquals(first, asyncLogService.createLogTask(DAY.toString()));
+    }
+
+    @Test
+    void testArchivedDay_ServedFromDiskCacheAfterRestart() throws Exception {
+        Path logFile = dir.resolve("application.log");
+        Path archive = dir.resolve("application.log." + DAY + ".0.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(archive))) {
+            for (int i = 0; i < 100; i++) {
+                out.write((DAY + " 12:00:00 - строка " + i + "\n")
+                        .getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        String cacheDir = dir.resolve("cache").toString();
+        LogFileService logFileService = spy(new LogFileService(logFile.toString(),
+                new LogTimeIndex(logFile.toString())));
+        asyncLogService = new AsyncLogService(logFileService, 1, 1, cacheDir, 1024);
+
+        String taskId = asyncLogService.createLogTask(DAY.toString());
+        assertEquals(AsyncLogService.TaskState.COMPLETED, awaitDone(taskId).get("state"));
+        long length = asyncLogService.getLogFile(taskId).getContentLength();
+        String joined = asyncLogService.createLogTask(DAY.toString());
+        assertEquals(length, asyncLogService.getLogFile(joined).getContentLength());
+        asyncLogService.shutdownExecutor();
+
+        asyncLogService = new AsyncLogService(logFileService, 1, 1, cacheDir, 1024);
+        String cachedTask = asyncLogService.createLogTask(DAY.toString());
+
+        Map<String, Object> status = asyncLogService.getTaskStatus(cachedTask);
+        assertEquals(AsyncLogService.TaskState.COMPLETED, status.get("state"));
+        assertEquals(true, status.get("cached"));
+        assertEquals(length, asyncLogService.getLogFile(cachedTask).getContentLength());
+        verify(logFileService, times(1)).writeLines(any(), any(), any());
+    }
+
+    @Test
+    void testCancel_SharedTaskStopsOnlyWhenLastJoinerLeaves() throws Exception {
+        LogFileService logFileService = mock(LogFileService.class);
+        when(logFileService.parseDate(any())).thenReturn(DAY);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        when(logFileService.writeLines(any(), any(), any())).thenAnswer(invocation -> {
+            running.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                throw new InterruptedIOException("Чтение лога прервано");
+            }
+            return 0L;
+        });
+        asyncLogService = new AsyncLogService(logFileService, 1, 1, dir.toString(), 1024);
+
+        String first = asyncLogService.createLogTask(DAY.toString());
+        String second = asyncLogService.createLogTask(DAY.toString());
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+
+        asyncLogService.cancelTask(first);
+        assertThrows(NoSuchElementException.class, () -> asyncLogService.getTaskStatus(first));
+        assertThrows(NoSuchElementException.class, () -> asyncLogService.cancelTask(first));
+        assertEquals(AsyncLogService.TaskState.RUNNING,
+                asyncLogService.getTaskStatus(second).get("state"));
+
+        asyncLogService.cancelTask(second);
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testCache_EvictsLeastRecentlyReadExtractsOverLimit() throws Exception {
+        Path logFile = dir.resolve("application.log");
+        for (LocalDate day : List.of(DAY, DAY.plusDays(1))) {
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(
+                    dir.resolve("application.log." + day + ".0.gz")))) {
+                out.write((day + " 12:00:00 - строка\n").getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        Path cacheDir = dir.resolve("cache");
+        // Нулевой лимит: на диске остаются только выгрузки живых задач.
+        asyncLogService = new AsyncLogService(new LogFileService(logFile.toString(),
+                new LogTimeIndex(logFile.toString())), 1, 1, cacheDir.toString(), 0);
+
+        String firstTask = asyncLogService.createLogTask(DAY.toString());
+        awaitDone(firstTask);
+        asyncLogService.cancelTask(firstTask);
+        String secondTask = asyncLogService.createLogTask(DAY.plusDays(1).toString());
+        awaitDone(secondTask);
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (cachedExtracts(cacheDir).size() > 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        List<Path> extracts = cachedExtracts(cacheDir);
+        assertEquals(1, extracts.size());
+        assertTrue(extracts.getFirst().getFileName().toString()
+                .startsWith("application.log." + DAY.plusDays(1)));
+        assertFalse(asyncLogService.getLogFile(secondTask).isEmpty());
+    }
+
+    private static List<Path> cachedExtracts(Path cacheDir) throws IOException {
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            return files.filter(path -> path.toString().endsWith(".log")).toList();
+        }
+    }
+
+    private Map<String, Object> awaitDone(String taskId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        Map<String, Object> status = asyncLogService.getTaskStatus(taskId);
+        while (!Boolean.TRUE.equals(status.get("isCompleted"))
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            status = asyncLogService.getTaskStatus(taskId);
+        }
+        return status;
+    }
+}
@@ -0,0 +1,127 @@
+package com.movio.moviolab.testservice;
+
+import com.movio.moviolab.dao.MovieDao;
+import com.movio.moviolab.dao.MovieUserDao;
+import com.movio.moviolab.events.MovieEvent;
+import com.movio.moviolab.events.MovieUserEvent;
+import com.movio.moviolab.events.UserEvent;
+import com.movio.moviolab.index.CoOccurrenceIndex;
+import com.movio.moviolab.index.CoOccurrenceIndex.MovieSummary;
+import com.movio.moviolab.index.CoOccurrenceIndex.Score;
+import com.movio.moviolab.models.Movie;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import java.sql.ResultSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CoOccurrenceIndexTest {
+
+    // {movieId, userId}
+    private static final int[][] LINKS = {
+        {1, 10}, {2, 10}, {3, 10},
+        {1, 11}, {2, 11},
+        {2, 12}, {4, 12}
+    };
+
+    @Mock
+    private MovieUserDao movieUserDao;
+
+    @Mock
+    private MovieDao movieDao;
+
+    @InjectMocks
+    private CoOccurrenceIndex coOccurrenceIndex;
+
+    @BeforeEach
+    void setUp() {
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(0);
+            ResultSet rs = mock(ResultSet.class);
+            for (int[] link : LINKS) {
+                when(rs.getInt(1)).thenReturn(link[0]);
+                when(rs.getInt(2)).thenReturn(link[1]);
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(movieUserDao).streamLinks(any());
+        coOccurrenceIndex.rebuild();
+    }
+
+    @Test
+    void testSimilar_RankedByCoOccurrence() {
+        assertEquals(List.of(new Score(1, 2), new Score(3, 1), new Score(4, 1)),
+                coOccurrenceIndex.similar(2, 10));
+        assertEquals(List.of(new Score(1, 2)), coOccurrenceIndex.similar(2, 1));
+        assertTrue(coOccurrenceIndex.similar(99, 10).isEmpty());
+    }
+
+    @Test
+    void testRecommendations_ExcludeWatchedMovies() {
+        assertEquals(List.of(new Score(3, 2), new Score(4, 1)),
+                coOccurrenceIndex.recommendations(11, 10));
+        assertArrayEquals(new int[]{1, 2}, coOccurrenceIndex.moviesOf(11));
+    }
+
+    @Test
+    void testLinkAndUnlink_UpdateMatrixIncrementally() {
+        coOccurrenceIndex.onMovieUserEvent(new MovieUserEvent(MovieUserEvent.Type.LINKED, 4, 11));
+        coOccurrenceIndex.onMovieUserEvent(new MovieUserEvent(MovieUserEvent.Type.LINKED, 4, 11));
+
+        assertEquals(List.of(new Score(2, 2), new Score(1, 1)), coOccurrenceIndex.similar(4, 10));
+
+        coOccurrenceIndex.onMovieUserEvent(new MovieUserEvent(MovieUserEvent.Type.UNLINKED, 2, 10));
+
+        assertEquals(List.of(new Score(2, 1), new Score(3, 1), new Score(4, 1)),
+                coOccurrenceIndex.similar(1, 10));
+        assertEquals(List.of(new Score(1, 1)), coOccurrenceIndex.similar(3, 10));
+    }
+
+    @Test
+    void testDeletes_RemoveMovieAndUserFromMatrix() {
+        coOccurrenceIndex.onMovieEvent(new MovieEvent(MovieEvent.Type.DELETED, 1, "Action", null));
+        coOccurrenceIndex.onUserEvent(new UserEvent(UserEvent.Type.DELETED, 12, List.of(2, 4)));
+
+        assertTrue(coOccurrenceIndex.similar(1, 10).isEmpty());
+        assertTrue(coOccurrenceIndex.similar(4, 10).isEmpty());
+        assertEquals(List.of(new Score(3, 1)), coOccurrenceIndex.similar(2, 10));
+        assertArrayEquals(new int[0], coOccurrenceIndex.moviesOf(12));
+    }
+
+    @Test
+    void testSummaries_LoadedOnceAndDroppedOnMovieUpdate() {
+        when(movieDao.findAllById(List.of(1, 3))).thenReturn(List.of(movie(1, "Alien"),
+                movie(3, "Heat")));
+        when(movieDao.findAllById(List.of(1))).thenReturn(List.of(movie(1, "Aliens")));
+
+        assertEquals("Alien", coOccurrenceIndex.summaries(List.of(1, 3)).get(1).title());
+        assertEquals(new MovieSummary(3, "Heat", "Drama", 1995),
+                coOccurrenceIndex.summaries(List.of(3)).get(3));
+        verify(movieDao, times(1)).findAllById(any());
+
+        coOccurrenceIndex.onMovieEvent(new MovieEvent(MovieEvent.Type.UPDATED, 1, "Drama", "Drama"));
+
+        assertEquals("Aliens", coOccurrenceIndex.summaries(List.of(1, 3)).get(1).title());
+        assertTrue(coOccurrenceIndex.hasMovie(1));
+        assertTrue(coOccurrenceIndex.hasUser(12));
+        assertFalse(coOccurrenceIndex.hasUser(99));
+    }
+
+    private static Movie movie(int id, String title) {
+        Movie movie = new Movie();
+        movie.setId(id);
+        movie.setTitle(title);
+        movie.setGenre("Drama");
+        movie.setYear(1995);
+        return movie;
+    }
+}
@@ -0,0 +1,123 @@
+package com.movio.moviolab.testservice;
+
+import com.movio.moviolab.dao.CommentBatchDao;
+import com.movio.moviolab.models.Comment;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Настоящие таблицы comments и comment_id_sequence (H2 в режиме MySQL).
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = {
+    "spring.datasource.url=jdbc:h2:mem:comments;MODE=MySQL;NON_KEYWORDS=YEAR,USER;"
+            + "DB_CLOSE_DELAY=-1",
+    "spring.datasource.username=sa",
+    "spring.datasource.password=",
+    "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+    "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@Import(CommentBatchDao.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CommentBatchDaoTest {
+
+    @Autowired
+    private CommentBatchDao commentBatchDao;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("INSERT INTO movies (id, title, genre, year, comment_count) "
+                + "VALUES (1, 'Heat', 'Drama', 1995, 0)");
+        jdbcTemplate.update("INSERT INTO users (id, name, email, comment_count) "
+                + "VALUES (10, 'Ann', 'ann@example.com', 0)");
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DROP TABLE IF EXISTS comment_id_sequence");
+        jdbcTemplate.update("DELETE FROM comments");
+        jdbcTemplate.update("DELETE FROM users");
+        jdbcTemplate.update("DELETE FROM movies");
+    }
+
+    @Test
+    void testReserveIds_StartsAboveStoredIdsAndNeverRepeats() {
+        jdbcTemplate.update("INSERT INTO comments (id, content, user_id, movie_id) "
+                + "VALUES (41, 'old', 10, 1)");
+        commentBatchDao.initIdSequence();
+        // Повторная инициализация (второй экземпляр) не сбрасывает последовательность.
+        assertEquals(42, commentBatchDao.reserveIds(100));
+        commentBatchDao.initIdSequence();
+
+        assertEquals(142, commentBatchDao.reserveIds(10));
+        assertEquals(152, commentBatchDao.reserveIds(1));
+    }
+
+    @Test
+    void testReserveIds_SurvivesCallerRollback() {
+        commentBatchDao.initIdSequence();
+        TransactionTemplate caller = new TransactionTemplate(transactionManager);
+        caller.executeWithoutResult(status -> {
+            assertEquals(1, commentBatchDao.reserveIds(100));
+            status.setRollbackOnly();
+        });
+
+        assertEquals(101, commentBatchDao.reserveIds(1));
+    }
+
+    @Test
+    void testInsertAll_SkipsStoredIdsAndCountsOnlyInsertedRows() {
+        List<Comment> first = commentBatchDao.insertAll(List.of(comment(1, "a"), comment(2, "b")));
+        List<Comment> replayed = commentBatchDao.insertAll(List.of(comment(2, "b"),
+                comment(3, "c")));
+
+        assertEquals(List.of(1, 2), first.stream().map(Comment::getId).toList());
+        assertEquals(List.of(3), replayed.stream().map(Comment::getId).toList());
+        assertEquals(3, jdbcTemplate.queryForObject(
+                "SELECT comment_count FROM movies WHERE id = 1", Integer.class));
+        assertEquals(3, jdbcTemplate.queryForObject(
+                "SELECT comment_count FROM users WHERE id = 10", Integer.class));
+    }
+
+    @Test
+    void testFindWithoutContentHash_PagesByIdPastFilledRows() {
+        jdbcTemplate.update("INSERT INTO comments (id, content, user_id, movie_id, content_hash) "
+                + "VALUES (1, 'a', 10, 1, NULL), (2, 'b', 10, 1, 7), (3, 'c', 10, 1, NULL), "
+                + "(4, 'd', 10, 1, NULL)");
+
+        assertEquals(List.of(1, 3), ids(commentBatchDao.findWithoutContentHash(0, 2)));
+        assertEquals(List.of(4), ids(commentBatchDao.findWithoutContentHash(3, 2)));
+    }
+
+    private static List<Integer> ids(List<Comment> comments) {
+        return comments.stream().map(Comment::getId).toList();
+    }
+
+    private static Comment comment(int id, String content) {
+        Comment comment = new Comment();
+        comment.setId(id);
+        comment.setContent(content);
+        comment.setUserId(10);
+        comment.setMovieId(1);
+        return comment;
+    }
+}
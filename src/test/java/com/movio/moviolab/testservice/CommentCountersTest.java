@@ -0,0 +1,190 @@
+package com.movio.moviolab.testservice;
+
+import com.movio.moviolab.dao.CommentBatchDao;
+import com.movio.moviolab.dao.MovieDao;
+import com.movio.moviolab.dao.UserDao;
+import com.movio.moviolab.events.CommentEvent;
+import com.movio.moviolab.events.MovieEvent;
+import com.movio.moviolab.events.UserEvent;
+import com.movio.moviolab.models.Movie;
+import com.movio.moviolab.models.User;
+import com.movio.moviolab.readmodel.CommentCounters;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CommentCountersTest {
+
+    @Mock
+    private MovieDao movieDao;
+
+    @Mock
+    private UserDao userDao;
+
+    @Mock
+    private CommentBatchDao commentBatchDao;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private CommentCounters commentCounters;
+
+    @Test
+    void testCounts_FromEntityUntilLoaded() {
+        assertEquals(7, commentCounters.movieCount(movie(1, 7L)));
+        assertEquals(0, commentCounters.userCount(user(1, null)));
+    }
+
+    @Test
+    void testRebuild_BackfillsInBatchesAndLoadsCounts() {
+        when(movieDao.backfillCommentCounts(10_000)).thenReturn(10_000, 3);
+        when(userDao.backfillCommentCounts(10_000)).thenReturn(0);
+        when(movieDao.findCommentCounts()).thenReturn(rows(new Object[]{1, 5L}));
+        when(userDao.findCommentCounts()).thenReturn(rows(new Object[]{2, 4L}));
+
+        commentCounters.rebuild();
+
+        verify(movieDao, times(2)).backfillCommentCounts(anyInt());
+        assertEquals(5, commentCounters.movieCount(movie(1, 0L)));
+        assertEquals(0, commentCounters.movieCount(movie(3, 9L)));
+        assertEquals(4, commentCounters.userCount(user(2, 0L)));
+    }
+
+    @Test
+    void testCommentEvents_AdjustMovieAndUserCounters() {
+        when(movieDao.findCommentCounts()).thenReturn(rows(new Object[]{1, 2L}));
+        when(userDao.findCommentCounts()).thenReturn(rows());
+        commentCounters.rebuild();
+
+        commentCounters.onCommentEvent(new CommentEvent(CommentEvent.Type.CREATED, 10, 1, 2, "a"));
+        commentCounters.onCommentEvent(new CommentEvent(CommentEvent.Type.CREATED, 11, 3, 2, "b"));
+        commentCounters.onCommentEvent(new CommentEvent(CommentEvent.Type.UPDATED, 11, 3, 2, "c"));
+        commentCounters.onCommentEvent(new CommentEvent(CommentEvent.Type.DELETED, 10, 1, 2, "a"));
+
+        assertEquals(2, commentCounters.movieCount(movie(1, 0L)));
+        assertEquals(1, commentCounters.movieCount(movie(3, 0L)));
+        assertEquals(1, commentCounters.userCount(user(2, 0L)));
+    }
+
+    @Test
+    void testDeletes_DropOwnCounterAndSubtractFromOtherSide() {
+        when(movieDao.findCommentCounts())
+                .thenReturn(rows(new Object[]{1, 2L}, new Object[]{2, 3L}));
+        when(userDao.findCommentCounts())
+                .thenReturn(rows(new Object[]{5, 4L}, new Object[]{6, 1L}));
+        commentCounters.rebuild();
+
+        commentCounters.onMovieEvent(new MovieEvent(MovieEvent.Type.DELETED, 1, "Drama", null,
+                Map.of(5, 2L)));
+        assertEquals(0, commentCounters.movieCount(movie(1, 2L)));
+        assertEquals(2, commentCounters.userCount(user(5, 0L)));
+        assertEquals(1, commentCounters.userCount(user(6, 0L)));
+
+        commentCounters.onUserEvent(new UserEvent(UserEvent.Type.DELETED, 5, List.of(),
+                Map.of(2, 2L)));
+        assertEquals(0, commentCounters.userCount(user(5, 1L)));
+        assertEquals(1, commentCounters.movieCount(movie(2, 0L)));
+        verify(movieDao, times(1)).findCommentCounts();
+        verify(userDao, times(1)).findCommentCounts();
+    }
+
+    @Test
+    void testRebuild_AppliesEventsCommittedAfterSnapshot() {
+        when(movieDao.findCommentCounts()).thenAnswer(invocation -> {
+            commentCounters.onCommentEvent(
+                    new CommentEvent(CommentEvent.Type.CREATED, 10, 1, 2, "a"));
+            return rows(new Object[]{1, 3L});
+        });
+        when(userDao.findCommentCounts()).thenReturn(rows(new Object[]{2, 3L}));
+        when(commentBatchDao.findExistingIds(List.of(10))).thenReturn(List.of());
+
+        commentCounters.rebuild();
+
+        assertEquals(4, commentCounters.movieCount(movie(1, 0L)));
+        assertEquals(4, commentCounters.userCount(user(2, 0L)));
+    }
+
+    @Test
+    void testRebuild_SkipsEventsAlreadyInSnapshot() {
+        when(movieDao.findCommentCounts()).thenAnswer(invocation -> {
+            commentCounters.onCommentEvent(
+                    new CommentEvent(CommentEvent.Type.CREATED, 10, 1, 2, "a"));
+            commentCounters.onCommentEvent(
+                    new CommentEvent(CommentEvent.Type.DELETED, 11, 1, 2, "b"));
+            return rows(new Object[]{1, 3L});
+        });
+        when(userDao.findCommentCounts()).thenReturn(rows(new Object[]{2, 3L}));
+        // Созданный комментарий уже виден в снимке, удаленный - уже не виден.
+        when(commentBatchDao.findExistingIds(List.of(10, 11))).thenReturn(List.of(10));
+
+        commentCounters.rebuild();
+
+        assertEquals(3, commentCounters.movieCount(movie(1, 0L)));
+        assertEquals(3, commentCounters.userCount(user(2, 0L)));
+    }
+
+    @Test
+    void testRebuild_ReplaysDeletesByVisibilityInSnapshot() {
+        when(movieDao.findCommentCounts()).thenAnswer(invocation -> {
+            // Комментарий и фильм удалены до снимка: снимок учел оба события.
+            commentCounters.onCommentEvent(
+                    new CommentEvent(CommentEvent.Type.CREATED, 10, 1, 5, "a"));
+            commentCounters.onMovieEvent(new MovieEvent(MovieEvent.Type.DELETED, 1, "Drama",
+                    null, Map.of(5, 3L)));
+            // Фильм 2 удален после снимка.
+            commentCounters.onMovieEvent(new MovieEvent(MovieEvent.Type.DELETED, 2, "Drama",
+                    null, Map.of(5, 1L)));
+            return rows(new Object[]{2, 1L});
+        });
+        when(userDao.findCommentCounts()).thenReturn(rows(new Object[]{5, 1L}));
+        when(movieDao.findExistingIds(List.of(1, 2))).thenReturn(List.of(2));
+
+        commentCounters.rebuild();
+
+        assertEquals(0, commentCounters.movieCount(movie(2, 1L)));
+        assertEquals(0, commentCounters.userCount(user(5, 1L)));
+        verify(commentBatchDao).findExistingIds(List.of(10));
+    }
+
+    @Test
+    void testEvents_BeforeRebuildAreLeftToSnapshot() {
+        commentCounters.onCommentEvent(new CommentEvent(CommentEvent.Type.CREATED, 10, 1, 2, "a"));
+        when(movieDao.findCommentCounts()).thenReturn(rows(new Object[]{1, 1L}));
+        when(userDao.findCommentCounts()).thenReturn(rows(new Object[]{2, 1L}));
+
+        commentCounters.rebuild();
+
+        assertEquals(1, commentCounters.movieCount(movie(1, 0L)));
+        verifyNoInteractions(commentBatchDao);
+    }
+
+    private static List<Object[]> rows(Object[]... rows) {
+        return new ArrayList<>(List.of(rows));
+    }
+
+    private static Movie movie(int id, Long commentCount) {
+        Movie movie = new Movie();
+        movie.setId(id);
+        movie.setCommentCount(commentCount);
+        return movie;
+    }
+
+    private static User user(int id, Long commentCount) {
+        User user = new User();
+        user.setId(id);
+        user.setCommentCount(commentCount);
+        return user;
+    }
+}
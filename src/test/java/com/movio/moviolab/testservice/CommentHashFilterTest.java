@@ -0,0 +1,65 @@
+package com.movio.moviolab.testservice;
+
+import com.movio.moviolab.dao.CommentBatchDao;
+import com.movio.moviolab.events.CommentEvent;
+import com.movio.moviolab.index.CommentHashFilter;
+import com.movio.moviolab.models.Comment;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import java.sql.ResultSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CommentHashFilterTest {
+
+    @Mock
+    private CommentBatchDao commentBatchDao;
+
+    @Test
+    void testMightContain_TrueUntilBuilt() {
+        CommentHashFilter filter = new CommentHashFilter(commentBatchDao, 16, 4);
+
+        assertFalse(filter.isReady());
+        assertTrue(filter.mightContain(1, 1, 42L));
+    }
+
+    @Test
+    void testRebuildAndEvents_TrackExistingComments() {
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(0);
+            ResultSet rs = mock(ResultSet.class);
+            for (int i = 0; i < 200; i++) {
+                when(rs.getInt(1)).thenReturn(i);
+                when(rs.getInt(2)).thenReturn(i % 7);
+                when(rs.getLong(3)).thenReturn(Comment.hashContent("comment " + i));
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(commentBatchDao).streamContentHashes(any());
+        CommentHashFilter filter = new CommentHashFilter(commentBatchDao, 16, 4);
+
+        filter.rebuild();
+
+        for (int i = 0; i < 200; i++) {
+            assertTrue(filter.mightContain(i, i % 7, Comment.hashContent("comment " + i)));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 200; i++) {
+            if (filter.mightContain(i, i % 7, Comment.hashContent("other " + i))) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 5);
+
+        long hash = Comment.hashContent("new text");
+        assertFalse(filter.mightContain(500, 1, hash));
+        filter.onCommentEvent(new CommentEvent(CommentEvent.Type.CREATED, 1, 1, 500, "new text"));
+        assertTrue(filter.mightContain(500, 1, hash));
+    }
+}
@@ -0,0 +1,133 @@
+package com.movio.moviolab.testservice;
+
+import com.movio.moviolab.dao.CommentBatchDao;
+import com.movio.moviolab.events.CommentEvent;
+import com.movio.moviolab.events.MovieEvent;
+import com.movio.moviolab.events.UserEvent;
+import com.movio.moviolab.index.CommentSearchIndex;
+import com.movio.moviolab.index.CommentSearchIndex.Hit;
+import com.movio.moviolab.index.CommentTokenizer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import java.sql.ResultSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CommentSearchIndexTest {
+
+    // {id, movieId, userId, content}
+    private static final Object[][] COMMENTS = {
+        {1, 10, 100, "Отличный фильм, смотрел дважды"},
+        {2, 10, 101, "Фильмы этого режиссёра всегда хороши"},
+        {3, 11, 100, "Great movie, loved the acting"},
+        {4, 11, 102, "Скучный фильм. Фильм ни о чём, фильм на один раз"}
+    };
+
+    @Mock
+    private CommentBatchDao commentBatchDao;
+
+    @InjectMocks
+    private CommentSearchIndex commentSearchIndex;
+
+    @BeforeEach
+    void setUp() {
+        doAnswer(invocation -> {
+            stream(invocation.getArgument(0));
+            return null;
+        }).when(commentBatchDao).streamComments(any());
+        commentSearchIndex.rebuild();
+    }
+
+    @Test
+    void testTokenize_StemsRussianAndEnglishAndDropsStopWords() {
+        assertEquals(List.of("фильм", "фильм", "ежик"), CommentTokenizer.tokenize("Фильмы и ФИЛЬМ: ёжик"));
+        assertEquals(List.of("movie", "lov", "act"), CommentTokenizer.tokenize("movies, the loved acting"));
+    }
+
+    @Test
+    void testSearch_RanksByTermFrequencyAndMatchesWordForms() {
+        CommentSearchIndex.Result result = commentSearchIndex.search("фильмы", null, null, 0, 10);
+
+        assertEquals(3, result.total());
+        assertEquals(4, result.hits().getFirst().commentId());
+        assertEquals(List.of(1, 2), result.hits().subList(1, 3).stream()
+                .map(Hit::commentId).sorted().toList());
+    }
+
+    @Test
+    void testSearch_RequiresAllTermsAndAppliesFiltersAndPaging() {
+        assertEquals(List.of(1), ids(commentSearchIndex.search("отличный фильм", null, null, 0, 10)));
+        assertTrue(commentSearchIndex.search("фильм неизвестное", null, null, 0, 10).hits().isEmpty());
+        assertEquals(List.of(3), ids(commentSearchIndex.search("MOVIE", 11, 100, 0, 10)));
+        assertEquals(List.of(2), ids(commentSearchIndex.search("фильм", 10, 101, 0, 10)));
+
+        CommentSearchIndex.Result second = commentSearchIndex.search("фильм", null, null, 1, 1);
+        assertEquals(3, second.total());
+        assertEquals(1, second.hits().size());
+        assertNotEquals(4, second.hits().getFirst().commentId());
+    }
+
+    @Test
+    void testEvents_KeepIndexCurrent() {
+        commentSearchIndex.onCommentEvent(new CommentEvent(CommentEvent.Type.CREATED, 5, 12, 103,
+                "Новый сериал"));
+        commentSearchIndex.onCommentEvent(new CommentEvent(CommentEvent.Type.UPDATED, 3, 11, 100,
+                "Changed my mind"));
+        commentSearchIndex.onCommentEvent(new CommentEvent(CommentEvent.Type.DELETED, 1, 10, 100,
+                null));
+
+        assertEquals(List.of(5), ids(commentSearchIndex.search("сериалы", null, null, 0, 10)));
+        assertTrue(commentSearchIndex.search("movie", null, null, 0, 10).hits().isEmpty());
+        assertEquals(2, commentSearchIndex.search("фильм", null, null, 0, 10).total());
+
+        commentSearchIndex.onMovieEvent(new MovieEvent(MovieEvent.Type.DELETED, 11, "Drama", null));
+        commentSearchIndex.onUserEvent(new UserEvent(UserEvent.Type.DELETED, 103, List.of()));
+
+        assertEquals(List.of(2), ids(commentSearchIndex.search("фильм", null, null, 0, 10)));
+        assertTrue(commentSearchIndex.search("сериал", null, null, 0, 10).hits().isEmpty());
+    }
+
+    @Test
+    void testRebuild_ServesOldIndexWhileLoadingAndReplaysEvents() {
+        doAnswer(invocation -> {
+            // Во время загрузки поиск идет по старому индексу и не ждет перестроения.
+            assertEquals(3, commentSearchIndex.search("фильм", null, null, 0, 10).total());
+            commentSearchIndex.onCommentEvent(new CommentEvent(CommentEvent.Type.CREATED, 5,
+                    12, 103, "Новый сериал"));
+            commentSearchIndex.onCommentEvent(new CommentEvent(CommentEvent.Type.DELETED, 4,
+                    11, 102, null));
+            assertEquals(List.of(5), ids(commentSearchIndex.search("сериал", null, null, 0, 10)));
+            stream(invocation.getArgument(0));
+            return null;
+        }).when(commentBatchDao).streamComments(any());
+
+        commentSearchIndex.rebuild();
+
+        assertEquals(List.of(5), ids(commentSearchIndex.search("сериал", null, null, 0, 10)));
+        assertEquals(2, commentSearchIndex.search("фильм", null, null, 0, 10).total());
+    }
+
+    private static void stream(RowCallbackHandler handler) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        for (Object[] comment : COMMENTS) {
+            when(rs.getInt("id")).thenReturn((Integer) comment[0]);
+            when(rs.getInt("movie_id")).thenReturn((Integer) comment[1]);
+            when(rs.getInt("user_id")).thenReturn((Integer) comment[2]);
+            when(rs.getString("content")).thenReturn((String) comment[3]);
+            handler.processRow(rs);
+        }
+    }
+
+    private static List<Integer> ids(CommentSearchIndex.Result result) {
+        return result.hits().stream().map(Hit::commentId).toList();
+    }
+}
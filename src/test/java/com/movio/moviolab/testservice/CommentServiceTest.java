@@ -1,25 +1,38 @@
 package com.movio.moviolab.testservice;
 
+import com.movio.moviolab.dao.CommentBatchDao;
 import com.movio.moviolab.dao.CommentDao;
 import com.movio.moviolab.dao.MovieDao;
 import com.movio.moviolab.dao.UserDao;
+import com.movio.moviolab.dto.CommentBulkResultDto;
 import com.movio.moviolab.dto.CommentDto;
+import com.movio.moviolab.dto.CommentPageDto;
+import com.movio.moviolab.events.CommentEvent;
+import com.movio.moviolab.exceptions.BadRequestException;
 import com.movio.moviolab.exceptions.CommentException;
 import com.movio.moviolab.exceptions.MovieException;
 import com.movio.moviolab.exceptions.UserException;
 import com.movio.moviolab.exceptions.ValidationException;
+import com.movio.moviolab.index.CommentHashFilter;
+import com.movio.moviolab.index.CommentSearchIndex;
 import com.movio.moviolab.models.Comment;
 import com.movio.moviolab.services.CommentService;
+import com.movio.moviolab.services.CommentWriteBehindService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -29,12 +42,27 @@ class CommentServiceTest {
     @Mock
     private CommentDao commentDao;
 
+    @Mock
+    private CommentBatchDao commentBatchDao;
+
     @Mock
     private MovieDao movieDao;
 
     @Mock
     private UserDao userDao;
 
+    @Mock
+    private CommentHashFilter commentHashFilter;
+
+    @Mock
+    private CommentSearchIndex commentSearchIndex;
+
+    @Mock
+    private CommentWriteBehindService commentWriteBehindService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     private CommentService commentService;
 
@@ -65,6 +93,27 @@ class CommentServiceTest {
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals("Комментарий создан успешно", response.getBody());
+        verify(movieDao).adjustCommentCount(1, 1);
+        verify(userDao).adjustCommentCount(1, 1);
+    }
+
+    @Test
+    void testAddComment_WriteBehindReturnsAccepted() {
+        CommentDto commentDto = new CommentDto();
+        commentDto.setContent("Great movie!");
+        commentDto.setUserId(1);
+        commentDto.setMovieId(1);
+
+        when(movieDao.existsById(1)).thenReturn(true);
+        when(userDao.existsById(1)).thenReturn(true);
+        when(commentWriteBehindService.isActive()).thenReturn(true);
+        when(commentWriteBehindService.enqueue(commentDto)).thenReturn(42);
+
+        ResponseEntity<String> response = commentService.addComment(commentDto);
+
+        assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+        assertEquals("/comments/42", String.valueOf(response.getHeaders().getLocation()));
+        verify(commentDao, never()).save(any());
     }
 
     @Test
@@ -148,6 +197,81 @@ class CommentServiceTest {
         assertEquals("Этот пользователь уже оставил такой комментарий к этому фильму.", exception.getMessage());
     }
 
+    @Test
+    void testAddComment_DuplicateOfCommentWaitingForWriteBehind() {
+        CommentDto commentDto = new CommentDto();
+        commentDto.setContent("Great movie!");
+        commentDto.setUserId(1);
+        commentDto.setMovieId(1);
+
+        when(movieDao.existsById(1)).thenReturn(true);
+        when(userDao.existsById(1)).thenReturn(true);
+        when(commentWriteBehindService.isPending(1, 1, "Great movie!")).thenReturn(true);
+
+        assertThrows(CommentException.class, () -> commentService.addComment(commentDto));
+        verify(commentWriteBehindService, never()).enqueue(any());
+        verifyNoInteractions(commentDao);
+    }
+
+    @Test
+    void testAddComment_FilterMissSkipsDuplicateQuery() {
+        CommentDto commentDto = new CommentDto();
+        commentDto.setContent("Great movie!");
+        commentDto.setUserId(1);
+        commentDto.setMovieId(1);
+
+        when(movieDao.existsById(1)).thenReturn(true);
+        when(userDao.existsById(1)).thenReturn(true);
+        when(commentHashFilter.isReady()).thenReturn(true);
+        when(commentHashFilter.mightContain(1, 1, Comment.hashContent("Great movie!")))
+                .thenReturn(false);
+        when(commentDao.save(any())).thenReturn(comment);
+
+        ResponseEntity<String> response = commentService.addComment(commentDto);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        verify(commentDao, never()).findContentsByHash(any(), any(), anyLong());
+        verify(commentDao, never()).existsByUserIdAndMovieIdAndContent(any(), any(), any());
+    }
+
+    @Test
+    void testAddComment_HashMatchComparesContent() {
+        CommentDto commentDto = new CommentDto();
+        commentDto.setContent("Great movie!");
+        commentDto.setUserId(1);
+        commentDto.setMovieId(1);
+        long hash = Comment.hashContent("Great movie!");
+
+        when(movieDao.existsById(1)).thenReturn(true);
+        when(userDao.existsById(1)).thenReturn(true);
+        when(commentHashFilter.isReady()).thenReturn(true);
+        when(commentHashFilter.mightContain(1, 1, hash)).thenReturn(true);
+        when(commentDao.findContentsByHash(1, 1, hash))
+                .thenReturn(List.of("Colliding text"), List.of("Great movie!"));
+        when(commentDao.save(any())).thenReturn(comment);
+
+        assertEquals(HttpStatus.OK, commentService.addComment(commentDto).getStatusCode());
+        assertThrows(CommentException.class, () -> commentService.addComment(commentDto));
+    }
+
+    @Test
+    void testBackfillContentHashes_UpdatesInBatchesThenBuildsFilter() {
+        Comment last = new Comment();
+        last.setId(1500);
+        List<Comment> fullBatch = new ArrayList<>(Collections.nCopies(999, comment));
+        fullBatch.add(last);
+        when(commentBatchDao.findWithoutContentHash(0, 1000)).thenReturn(fullBatch);
+        when(commentBatchDao.findWithoutContentHash(1500, 1000)).thenReturn(List.of(comment));
+
+        commentService.backfillContentHashes();
+
+        InOrder inOrder = inOrder(commentBatchDao, commentHashFilter);
+        inOrder.verify(commentBatchDao).updateContentHashes(fullBatch);
+        inOrder.verify(commentBatchDao).updateContentHashes(List.of(comment));
+        inOrder.verify(commentHashFilter).rebuild();
+        verify(commentBatchDao, times(2)).findWithoutContentHash(anyInt(), eq(1000));
+    }
+
     @Test
     void testGetAllComments_Success() {
         CommentDto commentDto = new CommentDto();
@@ -239,6 +363,10 @@ class CommentServiceTest {
         commentService.deleteComment(1);
 
         verify(commentDao, times(1)).delete(comment);
+        verify(movieDao).adjustCommentCount(1, -1);
+        verify(userDao).adjustCommentCount(1, -1);
+        verify(eventPublisher).publishEvent(new CommentEvent(CommentEvent.Type.DELETED,
+                1, 1, 1, "Great movie!"));
     }
 
     @Test
@@ -249,4 +377,166 @@ class CommentServiceTest {
 
         assertEquals("Не найден комментарйи с ID: 1", exception.getMessage());
     }
+
+    @Test
+    void testGetCommentsByMovieId_ReturnsPageWithNextCursor() {
+        Comment second = new Comment();
+        second.setId(5);
+        second.setContent("Second");
+        second.setMovieId(1);
+        second.setUserId(2);
+        Comment third = new Comment();
+        third.setId(9);
+        when(commentDao.findMoviePage(1, 0, 3)).thenReturn(List.of(comment, second, third));
+
+        CommentPageDto page = commentService.getCommentsByMovieId(1, 0, 2);
+
+        assertEquals(List.of(1, 5), page.getItems().stream().map(CommentDto::getId).toList());
+        assertEquals(5, page.getNextCursor());
+        verifyNoInteractions(movieDao);
+    }
+
+    @Test
+    void testGetCommentsByMovieId_LastPageHasNoCursor() {
+        when(commentDao.findMoviePage(1, 5, 21)).thenReturn(List.of(comment));
+
+        CommentPageDto page = commentService.getCommentsByMovieId(1, 5, 20);
+
+        assertEquals(1, page.getItems().size());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void testGetCommentsByMovieId_EmptyPageOfMissingMovie() {
+        when(commentDao.findMoviePage(404, 0, 21)).thenReturn(List.of());
+        when(movieDao.existsById(404)).thenReturn(false);
+
+        MovieException exception = assertThrows(MovieException.class,
+                () -> commentService.getCommentsByMovieId(404, 0, 20));
+        assertEquals("Фильм не найден: 404", exception.getMessage());
+    }
+
+    @Test
+    void testGetCommentsByUserId_EmptyPageOfExistingUser() {
+        when(commentDao.findUserPage(1, 0, 21)).thenReturn(List.of());
+        when(userDao.existsById(1)).thenReturn(true);
+
+        CommentPageDto page = commentService.getCommentsByUserId(1, 0, 20);
+
+        assertTrue(page.getItems().isEmpty());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void testGetCommentsByUserId_MissingUser() {
+        when(commentDao.findUserPage(1, 0, 21)).thenReturn(List.of());
+        when(userDao.existsById(1)).thenReturn(false);
+
+        assertThrows(UserException.class, () -> commentService.getCommentsByUserId(1, 0, 20));
+    }
+
+    @Test
+    void testGetComments_InvalidPageParameters() {
+        assertThrows(BadRequestException.class, () -> commentService.getCommentsByUserId(1, 0, 0));
+        assertThrows(BadRequestException.class,
+                () -> commentService.getCommentsByMovieId(1, 0, 101));
+        assertThrows(BadRequestException.class,
+                () -> commentService.getCommentsByMovieId(1, -1, 10));
+        verifyNoInteractions(commentDao);
+    }
+
+    @Test
+    void testSearchComments_KeepsRankingOrder() {
+        Comment best = new Comment();
+        best.setId(7);
+        best.setContent("Отличный фильм");
+        when(commentSearchIndex.search("фильм", 1, null, 0, 2)).thenReturn(
+                new CommentSearchIndex.Result(List.of(new CommentSearchIndex.Hit(7, 2.0),
+                        new CommentSearchIndex.Hit(1, 1.0)), 3));
+        when(commentDao.findAllById(List.of(7, 1))).thenReturn(List.of(comment, best));
+
+        CommentPageDto page = commentService.searchComments("фильм", 1, null, 0, 2);
+
+        assertEquals(List.of(7, 1), page.getItems().stream().map(CommentDto::getId).toList());
+        assertEquals(3, page.getTotal());
+        assertEquals(2, page.getNextOffset());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void testSearchComments_RejectsBlankQueryAndDeepPages() {
+        assertThrows(BadRequestException.class,
+                () -> commentService.searchComments(" ", null, null, 0, 10));
+        assertThrows(BadRequestException.class,
+                () -> commentService.searchComments("фильм", null, null, 950, 100));
+        verifyNoInteractions(commentSearchIndex);
+    }
+
+    @Test
+    void testAddComments_ReportsEachRowAndInsertsAcceptedInOneBatch() {
+        Comment stored = new Comment();
+        stored.setUserId(1);
+        stored.setMovieId(1);
+        stored.setContent("Уже было");
+        when(movieDao.findExistingIds(any())).thenReturn(List.of(1));
+        when(userDao.findExistingIds(any())).thenReturn(List.of(1));
+        when(commentHashFilter.isReady()).thenReturn(true);
+        when(commentHashFilter.mightContain(anyInt(), anyInt(), anyLong())).thenReturn(true);
+        when(commentBatchDao.findByContentHashes(any())).thenReturn(List.of(stored));
+        doAnswer(invocation -> {
+            List<Comment> comments = invocation.getArgument(0);
+            comments.get(0).setId(100);
+            comments.get(1).setId(101);
+            return null;
+        }).when(commentBatchDao).insertWithGeneratedIds(any());
+
+        CommentBulkResultDto result = commentService.addComments(List.of(
+                bulkRow(1, 1, "Первый"), bulkRow(1, 2, "Нет фильма"), bulkRow(1, 1, "x"),
+                bulkRow(1, 1, "Первый"), bulkRow(1, 1, "Уже было"), bulkRow(1, 1, "Второй")));
+
+        assertEquals(2, result.getCreated());
+        assertEquals(4, result.getRejected());
+        assertEquals(List.of(CommentBulkResultDto.Status.CREATED,
+                        CommentBulkResultDto.Status.REJECTED, CommentBulkResultDto.Status.REJECTED,
+                        CommentBulkResultDto.Status.REJECTED, CommentBulkResultDto.Status.REJECTED,
+                        CommentBulkResultDto.Status.CREATED),
+                result.getRows().stream().map(CommentBulkResultDto.Row::getStatus).toList());
+        assertEquals(100, result.getRows().get(0).getId());
+        assertEquals(101, result.getRows().get(5).getId());
+        assertEquals("Фильм не найден: 2", result.getRows().get(1).getMessage());
+        verify(commentBatchDao, times(1)).insertWithGeneratedIds(any());
+        verify(movieDao, never()).existsById(any());
+        verify(eventPublisher, times(2)).publishEvent(any(CommentEvent.class));
+    }
+
+    @Test
+    void testAddComments_TakesIdsFromWriteBehindAllocator() {
+        when(movieDao.findExistingIds(any())).thenReturn(List.of(1));
+        when(userDao.findExistingIds(any())).thenReturn(List.of(1));
+        when(commentHashFilter.isReady()).thenReturn(true);
+        when(commentWriteBehindService.isActive()).thenReturn(true);
+        when(commentWriteBehindService.reserveIds(2)).thenReturn(50);
+
+        CommentBulkResultDto result = commentService.addComments(List.of(
+                bulkRow(1, 1, "Первый"), bulkRow(1, 1, "Второй")));
+
+        assertEquals(List.of(50, 51),
+                result.getRows().stream().map(CommentBulkResultDto.Row::getId).toList());
+        verify(commentBatchDao).insertAll(any());
+        verify(commentBatchDao, never()).findByContentHashes(any());
+    }
+
+    @Test
+    void testAddComments_RejectsEmptyBatch() {
+        List<CommentDto> empty = List.of();
+        assertThrows(BadRequestException.class, () -> commentService.addComments(empty));
+    }
+
+    private static CommentDto bulkRow(Integer userId, Integer movieId, String content) {
+        CommentDto commentDto = new CommentDto();
+        commentDto.setUserId(userId);
+        commentDto.setMovieId(movieId);
+        commentDto.setContent(content);
+        return commentDto;
+    }
 }
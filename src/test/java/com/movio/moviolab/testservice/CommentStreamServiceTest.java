@@ -0,0 +1,111 @@
+package com.movio.moviolab.testservice;
+
+import com.movio.moviolab.dao.MovieDao;
+import com.movio.moviolab.dto.CommentDto;
+import com.movio.moviolab.events.CommentEvent;
+import com.movio.moviolab.exceptions.MovieException;
+import com.movio.moviolab.services.CommentStreamService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CommentStreamServiceTest {
+
+    @Mock
+    private MovieDao movieDao;
+
+    private final BlockingQueue<Object> sent = new LinkedBlockingQueue<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private volatile boolean blockSends;
+
+    private CommentStreamService streamService() {
+        return new CommentStreamService(movieDao, 60_000, 2, 60_000) {
+            @Override
+            protected SseEmitter newEmitter(long timeout) {
+                return new RecordingEmitter();
+            }
+        };
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+    }
+
+    @Test
+    void testSubscribe_UnknownMovie() {
+        when(movieDao.existsById(404)).thenReturn(false);
+        CommentStreamService streamService = streamService();
+
+        assertThrows(MovieException.class, () -> streamService.subscribe(404));
+        assertEquals(0, streamService.subscriberCount(404));
+    }
+
+    @Test
+    void testCreatedComment_DeliveredOnlyToMovieSubscribers() throws Exception {
+        when(movieDao.existsById(1)).thenReturn(true);
+        CommentStreamService streamService = streamService();
+        streamService.subscribe(1);
+
+        streamService.onCommentEvent(new CommentEvent(CommentEvent.Type.CREATED, 7, 2, 3, "other"));
+        streamService.onCommentEvent(new CommentEvent(CommentEvent.Type.DELETED, 8, 1, 3, "gone"));
+        streamService.onCommentEvent(new CommentEvent(CommentEvent.Type.CREATED, 9, 1, 3, "hello"));
+
+        CommentDto delivered = (CommentDto) sent.poll(5, TimeUnit.SECONDS);
+        assertNotNull(delivered);
+        assertEquals(9, delivered.getId());
+        assertEquals("hello", delivered.getContent());
+        assertNull(sent.poll(100, TimeUnit.MILLISECONDS));
+        assertEquals(1, streamService.subscriberCount(1));
+        streamService.shutdown();
+        assertEquals(0, streamService.subscriberCount(1));
+    }
+
+    @Test
+    void testSlowConsumer_DroppedWhenBufferOverflows() throws Exception {
+        when(movieDao.existsById(1)).thenReturn(true);
+        CommentStreamService streamService = streamService();
+        blockSends = true;
+        streamService.subscribe(1);
+
+        streamService.onCommentEvent(new CommentEvent(CommentEvent.Type.CREATED, 1, 1, 3, "first"));
+        assertNotNull(sent.poll(5, TimeUnit.SECONDS));
+        for (int id = 2; id <= 4; id++) {
+            streamService.onCommentEvent(new CommentEvent(CommentEvent.Type.CREATED, id, 1, 3,
+                    "next"));
+        }
+
+        assertEquals(0, streamService.subscriberCount(1));
+    }
+
+    private final class RecordingEmitter extends SseEmitter {
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            builder.build().stream()
+                    .map(ResponseBodyEmitter.DataWithMediaType::getData)
+                    .filter(CommentDto.class::isInstance)
+                    .forEach(sent::add);
+            if (blockSends) {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.movio.moviolab.testservice;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.movio.moviolab.dao.CommentBatchDao;
+import com.movio.moviolab.dto.CommentDto;
+import com.movio.moviolab.events.CommentEvent;
+import com.movio.moviolab.exceptions.CommentException;
+import com.movio.moviolab.exceptions.CommentQueueFullException;
+import com.movio.moviolab.models.Comment;
+import com.movio.moviolab.services.CommentWriteBehindService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CommentWriteBehindServiceTest {
+
+    private static final int ID_BLOCK_SIZE = 1000;
+
+    @Mock
+    private CommentBatchDao commentBatchDao;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @TempDir
+    private Path tempDir;
+
+    private CommentWriteBehindService service;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (service != null) {
+            service.stop();
+        }
+    }
+
+    @Test
+    void testEnqueue_JournalsAssignsIdsAndFlushesInBatches() throws Exception {
+        when(commentBatchDao.reserveIds(ID_BLOCK_SIZE)).thenReturn(42);
+        when(commentBatchDao.insertAll(anyList()))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        service = create(1000, 3, 1000);
+        service.start();
+
+        assertEquals(42, service.enqueue(comment("first")));
+        assertEquals(43, service.enqueue(comment("second")));
+        assertTrue(Files.readString(journal()).contains("\"content\":\"second\""));
+        assertEquals(44, service.enqueue(comment("third")));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Comment>> batch = ArgumentCaptor.forClass(List.class);
+        verify(commentBatchDao, timeout(5000)).insertAll(batch.capture());
+        assertEquals(List.of(42, 43, 44), batch.getValue().stream().map(Comment::getId).toList());
+        verify(eventPublisher, timeout(5000)).publishEvent(
+                new CommentEvent(CommentEvent.Type.CREATED, 44, 1, 1, "third"));
+        waitUntilJournalEmpty();
+    }
+
+    @Test
+    void testStart_ReplaysJournalAndTakesIdsFromDatabaseSequence() throws Exception {
+        Files.writeString(journal(),
+                "{\"id\":7,\"content\":\"hello\",\"userId\":1,\"movieId\":2}\n{\"id\":8,\"con",
+                StandardCharsets.UTF_8);
+        when(commentBatchDao.insertAll(anyList())).thenReturn(List.of());
+        when(commentBatchDao.reserveIds(ID_BLOCK_SIZE)).thenReturn(1001);
+        service = create(10, 100, 50);
+
+        service.start();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Comment>> replayed = ArgumentCaptor.forClass(List.class);
+        verify(commentBatchDao).initIdSequence();
+        verify(commentBatchDao).insertAll(replayed.capture());
+        assertEquals(1, replayed.getValue().size());
+        assertEquals("hello", replayed.getValue().getFirst().getContent());
+        assertEquals(0, Files.size(journal()));
+        assertEquals(1001, service.enqueue(comment("next")));
+        verify(eventPublisher, never()).publishEvent(any(CommentEvent.class));
+    }
+
+    @Test
+    void testFlush_PublishesOnlyInsertedRowsAndDropsRowsWithBrokenReferences() throws Exception {
+        when(commentBatchDao.reserveIds(ID_BLOCK_SIZE)).thenReturn(1);
+        when(commentBatchDao.insertAll(anyList())).thenAnswer(invocation -> {
+            List<Comment> comments = invocation.getArgument(0);
+            if (comments.stream().anyMatch(comment -> comment.getMovieId() == 99)) {
+                throw new DataIntegrityViolationException("fk_comments_movie");
+            }
+            return comments;
+        });
+        service = create(10, 2, 1000);
+        service.start();
+
+        service.enqueue(comment("kept"));
+        CommentDto orphan = comment("orphan");
+        orphan.setMovieId(99);
+        service.enqueue(orphan);
+
+        verify(eventPublisher, timeout(5000)).publishEvent(
+                new CommentEvent(CommentEvent.Type.CREATED, 1, 1, 1, "kept"));
+        waitUntilJournalEmpty();
+        verify(eventPublisher, times(1)).publishEvent(any(CommentEvent.class));
+    }
+
+    @Test
+    void testEnqueue_RejectsWhenQueueIsFull() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        when(commentBatchDao.reserveIds(ID_BLOCK_SIZE)).thenReturn(1);
+        doAnswer(invocation -> {
+            blocked.await(5, TimeUnit.SECONDS);
+            throw new DataAccessResourceFailureException("db down");
+        }).when(commentBatchDao).insertAll(anyList());
+        service = create(1, 1, 10);
+        service.start();
+
+        service.enqueue(comment("taken by flusher"));
+        verify(commentBatchDao, timeout(5000)).insertAll(anyList());
+        service.enqueue(comment("fills queue"));
+
+        CommentDto overflow = comment("overflow");
+        assertThrows(CommentQueueFullException.class, () -> service.enqueue(overflow));
+        blocked.countDown();
+        verify(eventPublisher, never()).publishEvent(any(CommentEvent.class));
+    }
+
+    @Test
+    void testEnqueue_RejectsRepeatUntilFirstCopyIsFlushed() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        when(commentBatchDao.reserveIds(ID_BLOCK_SIZE)).thenReturn(1);
+        when(commentBatchDao.insertAll(anyList())).thenAnswer(invocation -> {
+            blocked.await(5, TimeUnit.SECONDS);
+            return invocation.getArgument(0);
+        });
+        service = create(10, 1, 10);
+        service.start();
+
+        service.enqueue(comment("twice"));
+        assertTrue(service.isPending(1, 1, "twice"));
+        CommentDto repeat = comment("twice");
+        assertThrows(CommentException.class, () -> service.enqueue(repeat));
+
+        blocked.countDown();
+        verify(eventPublisher, timeout(5000)).publishEvent(
+                new CommentEvent(CommentEvent.Type.CREATED, 1, 1, 1, "twice"));
+        waitUntilJournalEmpty();
+        assertFalse(service.isPending(1, 1, "twice"));
+    }
+
+    private CommentWriteBehindService create(int capacity, int batchSize, long flushIntervalMs) {
+        return new CommentWriteBehindService(commentBatchDao, new ObjectMapper(), eventPublisher,
+                true, capacity, batchSize, flushIntervalMs, journal().toString(), ID_BLOCK_SIZE);
+    }
+
+    private Path journal() {
+        return tempDir.resolve("comments.journal");
+    }
+
+    private void waitUntilJournalEmpty() throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (Files.size(journal()) > 0 && System.currentTimeMillis() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertEquals(0, Files.size(journal()));
+    }
+
+    private CommentDto comment(String content) {
+        CommentDto commentDto = new CommentDto();
+        commentDto.setContent(content);
+        commentDto.setUserId(1);
+        commentDto.setMovieId(1);
+        return commentDto;
+    }
+}
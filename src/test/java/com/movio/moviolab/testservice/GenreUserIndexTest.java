@@ -0,0 +1,111 @@
+package com.movio.moviolab.testservice;
+
+import com.movio.moviolab.dao.MovieDao;
+import com.movio.moviolab.events.MovieEvent;
+import com.movio.moviolab.events.MovieUserEvent;
+import com.movio.moviolab.events.UserEvent;
+import com.movio.moviolab.index.GenreUserIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class GenreUserIndexTest {
+
+    @Mock
+    private MovieDao movieDao;
+
+    @InjectMocks
+    private GenreUserIndex genreUserIndex;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(movieDao.findAllGenres()).thenReturn(List.of(
+                new Object[]{1, "Action"}, new Object[]{2, "Action"}, new Object[]{3, "Drama"}));
+        lenient().when(movieDao.countLinksByGenreAndUser()).thenReturn(List.of(
+                new Object[]{"Action", 5, 2L}, new Object[]{"Action", 7, 1L},
+                new Object[]{"Drama", 7, 1L}));
+    }
+
+    @Test
+    void testUserIds_EmptyUntilBuilt() {
+        assertEquals(Optional.empty(), genreUserIndex.userIds("Action"));
+    }
+
+    @Test
+    void testRebuild_GenreLookupIsCaseInsensitive() {
+        genreUserIndex.rebuild();
+
+        assertEquals(Optional.of(List.of(5, 7)), genreUserIndex.userIds("action"));
+        assertEquals(Optional.of(List.of()), genreUserIndex.userIds("Comedy"));
+    }
+
+    @Test
+    void testUnlink_KeepsUserWhileOtherMoviesOfGenreRemain() {
+        genreUserIndex.rebuild();
+
+        genreUserIndex.onMovieUserEvent(new MovieUserEvent(MovieUserEvent.Type.UNLINKED, 1, 5));
+        assertEquals(Optional.of(List.of(5, 7)), genreUserIndex.userIds("Action"));
+
+        genreUserIndex.onMovieUserEvent(new MovieUserEvent(MovieUserEvent.Type.UNLINKED, 2, 5));
+        assertEquals(Optional.of(List.of(7)), genreUserIndex.userIds("Action"));
+
+        genreUserIndex.onMovieUserEvent(new MovieUserEvent(MovieUserEvent.Type.LINKED, 3, 5));
+        assertEquals(Optional.of(List.of(5, 7)), genreUserIndex.userIds("Drama"));
+    }
+
+    @Test
+    void testGenreChange_ReloadsBothGenres() {
+        genreUserIndex.rebuild();
+        when(movieDao.countLinksByUserForGenre("action"))
+                .thenReturn(List.<Object[]>of(new Object[]{5, 1L}));
+        when(movieDao.countLinksByUserForGenre("comedy"))
+                .thenReturn(List.<Object[]>of(new Object[]{7, 1L}));
+
+        genreUserIndex.onMovieEvent(new MovieEvent(MovieEvent.Type.UPDATED, 1, "Action", "Comedy"));
+
+        assertEquals(Optional.of(List.of(5)), genreUserIndex.userIds("Action"));
+        assertEquals(Optional.of(List.of(7)), genreUserIndex.userIds("Comedy"));
+    }
+
+    @Test
+    void testReload_ReadsDatabaseWithoutBlockingLookupsAndRetriesOnConcurrentChange() {
+        genreUserIndex.rebuild();
+        when(movieDao.countLinksByUserForGenre("action"))
+                .thenReturn(List.<Object[]>of(new Object[]{5, 1L}));
+        // Пока первый пересчет комедий читает базу, поиск из другого потока не ждет его,
+        // а к жанру привязывают пользователя 9: прочитанное устарело и перечитывается.
+        when(movieDao.countLinksByUserForGenre("comedy")).thenAnswer(invocation -> {
+            assertEquals(Optional.of(List.of(5)), CompletableFuture
+                    .supplyAsync(() -> genreUserIndex.userIds("Action"))
+                    .get(5, TimeUnit.SECONDS));
+            genreUserIndex.onMovieUserEvent(new MovieUserEvent(MovieUserEvent.Type.LINKED, 1, 9));
+            return List.<Object[]>of(new Object[]{7, 1L});
+        }).thenReturn(List.<Object[]>of(new Object[]{7, 1L}, new Object[]{9, 1L}));
+
+        genreUserIndex.onMovieEvent(new MovieEvent(MovieEvent.Type.UPDATED, 1, "Action", "Comedy"));
+
+        assertEquals(Optional.of(List.of(7, 9)), genreUserIndex.userIds("Comedy"));
+        verify(movieDao, times(2)).countLinksByUserForGenre("comedy");
+    }
+
+    @Test
+    void testUserDeleted_RemovedFromAllGenres() {
+        genreUserIndex.rebuild();
+
+        genreUserIndex.onUserEvent(new UserEvent(UserEvent.Type.DELETED, 7, List.of(1, 3)));
+
+        assertEquals(Optional.of(List.of(5)), genreUserIndex.userIds("Action"));
+        assertEquals(Optional.of(List.of()), genreUserIndex.userIds("Drama"));
+    }
+}
@@ -0,0 +1,55 @@
+package com.movio.moviolab.testservice;
+
+import com.movio.moviolab.index.IntCountMap;
+import org.junit.jupiter.api.Test;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntCountMapTest {
+
+    @Test
+    void testAdd_RemovesEntryWhenCountDropsToZero() {
+        IntCountMap map = new IntCountMap();
+
+        assertEquals(2, map.add(7, 2));
+        assertEquals(0, map.add(7, -2));
+
+        assertFalse(map.contains(7));
+        assertTrue(map.isEmpty());
+        assertEquals(0, map.add(8, -1));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    void testRandomOperations_MatchHashMap() {
+        IntCountMap map = new IntCountMap();
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 200_000; i++) {
+            int key = random.nextInt(5_000);
+            if (random.nextInt(4) == 0) {
+                map.remove(key);
+                expected.remove(key);
+            } else {
+                int delta = random.nextInt(5) - 2;
+                map.add(key, delta);
+                int updated = expected.getOrDefault(key, 0) + delta;
+                if (updated > 0) {
+                    expected.put(key, updated);
+                } else {
+                    expected.remove(key);
+                }
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        expected.forEach((key, count) -> assertEquals(count, map.get(key)));
+        Map<Integer, Integer> actual = new HashMap<>();
+        map.forEach(actual::put);
+        assertEquals(expected, actual);
+    }
+}
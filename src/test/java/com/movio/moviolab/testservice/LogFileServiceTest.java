@@ -0,0 +1,80 @@
+package com.movio.moviolab.testservice;
+
+import com.movio.moviolab.exceptions.BadRequestException;
+import com.movio.moviolab.index.LogTimeIndex;
+import com.movio.moviolab.services.LogFileService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogFileServiceTest {
+
+    @TempDir
+    private Path dir;
+
+    @Test
+    void testWriteLines_ArchiveThenCurrentFileFiltered() throws IOException {
+        LocalDate today = LocalDate.now();
+        Path logFile = dir.resolve("application.log");
+        writeGzip(dir.resolve("application.log." + today + ".0.gz"), List.of(
+                today + " 00:00:01 - Старт",
+                today + " 00:00:02 - INFO - Вход в метод контроллера: getMovies"));
+        Files.write(logFile, List.of(
+                today.minusDays(1) + " 23:59:59 - Вчера",
+                today + " 12:00:00 - Полдень",
+                "    at com.movio.moviolab.Trace"), StandardCharsets.UTF_8);
+        LogFileService logFileService = logFileService(logFile);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long written = logFileService.writeLines(today, out);
+
+        assertEquals(2, written);
+        assertEquals(today + " 00:00:01 - Старт\n" + today + " 12:00:00 - Полдень\n",
+                out.toString(StandardCharsets.UTF_8));
+        assertTrue(logFileService.hasLines(today));
+    }
+
+    @Test
+    void testCurrentFileServesPastDayBeforeRotation() throws IOException {
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        Path logFile = dir.resolve("application.log");
+        Files.write(logFile, List.of(
+                yesterday.minusDays(1) + " 10:00:00 - Позавчера",
+                yesterday + " 23:59:59 - Вчера",
+                LocalDate.now() + " 00:00:01 - Сегодня"), StandardCharsets.UTF_8);
+        LogFileService logFileService = logFileService(logFile);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(1, logFileService.writeLines(yesterday, out));
+        assertEquals(yesterday + " 23:59:59 - Вчера\n", out.toString(StandardCharsets.UTF_8));
+        assertFalse(logFileService.hasLines(yesterday.minusDays(5)));
+    }
+
+    @Test
+    void testParseDate_RejectsPaths() {
+        LogFileService logFileService = logFileService(dir.resolve("app.log"));
+
+        assertEquals(LocalDate.of(2025, 3, 1), logFileService.parseDate("2025-03-01"));
+        assertThrows(BadRequestException.class, () -> logFileService.parseDate("../../etc"));
+    }
+
+    private static LogFileService logFileService(Path logFile) {
+        return new LogFileService(logFile.toString(), new LogTimeIndex(logFile.toString()));
+    }
+
+    private static void writeGzip(Path path, List<String> lines) throws IOException {
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(path))) {
+            out.write((String.join("\n", lines) + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
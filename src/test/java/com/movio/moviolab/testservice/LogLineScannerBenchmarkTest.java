@@ -0,0 +1,131 @@
+package com.movio.moviolab.testservice;
+
+import com.movio.moviolab.index.LogTimeIndex;
+import com.movio.moviolab.services.LogFileService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Сравнивает отбор строк за день байтовым сканером по отображенному в память файлу
+// с прежним чтением через BufferedReader. Оба пути читают один и тот же отрезок дня
+// по индексу, сначала прогреваются, затем выполняются поочередно несколько раз;
+// в лог пишется медиана. Файл на сотни тысяч строк, поэтому в обычный прогон не входит:
+//   mvn test -Dtest=LogLineScannerBenchmarkTest -Dmoviolab.benchmark.logs=true
+//       -Dmoviolab.benchmark.log-lines=300000
+@EnabledIfSystemProperty(named = "moviolab.benchmark.logs", matches = "true")
+class LogLineScannerBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(LogLineScannerBenchmarkTest.class);
+    private static final String SKIPPED = "INFO - Вход в метод контроллера";
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int ITERATIONS = 15;
+
+    @TempDir
+    private Path dir;
+
+    @Test
+    void testBenchmark_MappedScannerMatchesReaderPath() throws IOException {
+        int lineCount = Integer.getInteger("moviolab.benchmark.log-lines", 300_000);
+        LocalDate day = LocalDate.of(2025, 3, 1);
+        Path logFile = dir.resolve("application.log");
+        int dayLines = writeLog(logFile, day, lineCount);
+
+        LogTimeIndex logTimeIndex = new LogTimeIndex(logFile.toString());
+        LogFileService logFileService = new LogFileService(logFile.toString(), logTimeIndex);
+        LogTimeIndex.Range range = logTimeIndex.range(day.atStartOfDay(),
+                day.plusDays(1).atStartOfDay());
+        // День последний в файле, поэтому его отрезок кончается концом файла.
+        assertEquals(Files.size(logFile), range.end());
+
+        byte[] expected = readerPath(logFile, range.start(), day.toString());
+        ByteArrayOutputStream out = new ByteArrayOutputStream(expected.length);
+        assertEquals(dayLines, logFileService.writeLines(day, out));
+        assertArrayEquals(expected, out.toByteArray());
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            readerPath(logFile, range.start(), day.toString());
+            logFileService.writeLines(day, new ByteArrayOutputStream(expected.length));
+        }
+        long[] readerNanos = new long[ITERATIONS];
+        long[] scannerNanos = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            readerPath(logFile, range.start(), day.toString());
+            readerNanos[i] = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            logFileService.writeLines(day, new ByteArrayOutputStream(expected.length));
+            scannerNanos[i] = System.nanoTime() - start;
+        }
+
+        log.info("Отбор {} строк за день из {} байт, медиана {} замеров: BufferedReader {} мкс, "
+                        + "байтовый сканер {} мкс", dayLines, range.end() - range.start(),
+                ITERATIONS, median(readerNanos) / 1_000, median(scannerNanos) / 1_000);
+    }
+
+    // Каждая десятая строка относится к предыдущему дню, каждая третья - вход
+    // в контроллер, изредка попадаются строки стека без даты.
+    private static int writeLog(Path logFile, LocalDate day, int lineCount) throws IOException {
+        int previousDayLines = lineCount / 10;
+        int dayLines = 0;
+        try (BufferedWriter writer = Files.newBufferedWriter(logFile, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < lineCount; i++) {
+                LocalDate lineDay = i < previousDayLines ? day.minusDays(1) : day;
+                int second = (int) ((long) i * 86_399 / lineCount);
+                String time = String.format("%02d:%02d:%02d", second / 3600, second / 60 % 60,
+                        second % 60);
+                boolean skipped = i % 3 == 0;
+                String message = skipped ? SKIPPED + ": getMovieById"
+                        : "Пользователь " + i + " добавил комментарий к фильму " + (i % 97);
+                writer.write(lineDay + " " + time + " - " + message);
+                writer.newLine();
+                if (i % 1000 == 0) {
+                    writer.write("    at com.movio.moviolab.services.MovieService.trace");
+                    writer.newLine();
+                }
+                if (lineDay.equals(day) && !skipped) {
+                    dayLines++;
+                }
+            }
+        }
+        return dayLines;
+    }
+
+    private static byte[] readerPath(Path logFile, long start, String date) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.READ);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(
+                     Channels.newInputStream(channel.position(start)), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(date) && !line.contains(SKIPPED)) {
+                    out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
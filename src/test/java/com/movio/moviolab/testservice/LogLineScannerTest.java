@@ -0,0 +1,57 @@
+package com.movio.moviolab.testservice;
+
+import com.movio.moviolab.services.LogLineScanner;
+import org.junit.jupiter.api.Test;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogLineScannerTest {
+
+    private static final String SKIPPED = "INFO - Вход в метод контроллера";
+
+    @Test
+    void testScan_FindsNewlineAtEveryWordOffset() throws IOException {
+        LogLineScanner scanner = new LogLineScanner("2025", SKIPPED);
+        for (int length = 4; length < 24; length++) {
+            String line = "2025" + "x".repeat(length - 4);
+            String text = line + "\n" + line + "\r\n" + "1999 чужая\n" + line;
+            List<String> lines = new ArrayList<>();
+
+            int consumed = scanner.scan(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)),
+                    0, text.getBytes(StandardCharsets.UTF_8).length, false, collect(lines));
+
+            assertEquals(List.of(line, line), lines);
+            assertEquals(text.getBytes(StandardCharsets.UTF_8).length - line.length(), consumed);
+        }
+    }
+
+    @Test
+    void testScan_ExcludesControllerEntriesAndStopsOnRequest() throws IOException {
+        LogLineScanner scanner = new LogLineScanner("2025-03-01", SKIPPED);
+        byte[] text = ("2025-03-01 10:00:00 - " + SKIPPED + ": getMovies\n"
+                + "2025-03-01 10:00:01 - Фильм создан\n"
+                + "2025-03-01 10:00:02 - Ещё строка").getBytes(StandardCharsets.UTF_8);
+        List<String> lines = new ArrayList<>();
+
+        assertEquals(text.length, scanner.scan(ByteBuffer.wrap(text), 0, text.length, true,
+                collect(lines)));
+        assertEquals(List.of("2025-03-01 10:00:01 - Фильм создан",
+                "2025-03-01 10:00:02 - Ещё строка"), lines);
+        assertEquals(-1, scanner.scan(ByteBuffer.wrap(text), 0, text.length, true,
+                (buffer, start, end) -> false));
+    }
+
+    private static LogLineScanner.LineConsumer collect(List<String> lines) {
+        return (buffer, start, end) -> {
+            byte[] bytes = new byte[end - start];
+            buffer.get(start, bytes);
+            lines.add(new String(bytes, StandardCharsets.UTF_8));
+            return true;
+        };
+    }
+}
@@ -0,0 +1,176 @@
+package com.movio.moviolab.testservice;
+
+import com.movio.moviolab.exceptions.BadRequestException;
+import com.movio.moviolab.exceptions.LogQueueFullException;
+import com.movio.moviolab.index.LogTimeIndex;
+import com.movio.moviolab.services.AsyncLogService;
+import com.movio.moviolab.services.LogFileService;
+import com.movio.moviolab.services.LogRangeService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogRangeServiceTest {
+
+    private static final Logger log = LoggerFactory.getLogger(LogRangeServiceTest.class);
+    private static final LocalDate FIRST_DAY = LocalDate.of(2025, 3, 1);
+    private static final String SKIPPED = "INFO - Вход в метод контроллера";
+
+    @TempDir
+    private Path dir;
+
+    private Path logFile;
+    private Path cacheDir;
+    private LogFileService logFileService;
+    private AsyncLogService asyncLogService;
+    private LogRangeService logRangeService;
+
+    @BeforeEach
+    void setUp() {
+        logFile = dir.resolve("application.log");
+        cacheDir = dir.resolve("cache");
+        logFileService = new LogFileService(logFile.toString(),
+                new LogTimeIndex(logFile.toString()));
+        asyncLogService = new AsyncLogService(logFileService, 1, 1, cacheDir.toString(), 1024);
+        logRangeService = new LogRangeService(logFileService, asyncLogService, 4, 8);
+    }
+
+    @AfterEach
+    void tearDown() {
+        logRangeService.shutdownExecutor();
+        asyncLogService.shutdownExecutor();
+    }
+
+    @Test
+    void testParseRange_RejectsReversedAndTooLongRanges() {
+        assertEquals(3, logRangeService.parseRange("2025-03-01", "2025-03-03").size());
+        assertThrows(BadRequestException.class,
+                () -> logRangeService.parseRange("2025-03-03", "2025-03-01"));
+        assertThrows(BadRequestException.class,
+                () -> logRangeService.parseRange("2025-03-01", "2025-04-01"));
+        assertThrows(BadRequestException.class,
+                () -> logRangeService.parseRange("2025-03-01", "03-01"));
+    }
+
+    @Test
+    void testWriteZip_OneEntryPerNonEmptyDayInDateOrder() throws IOException {
+        writeArchive(FIRST_DAY, 3);
+        writeArchive(FIRST_DAY.plusDays(2), 2);
+        List<LocalDate> days = logRangeService.parseRange(FIRST_DAY.toString(),
+                FIRST_DAY.plusDays(2).toString());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        logRangeService.writeZip(logRangeService.reserve(days), out);
+
+        List<String> names = new ArrayList<>();
+        List<Integer> sizes = new ArrayList<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                names.add(entry.getName());
+                sizes.add(new String(zip.readAllBytes(), StandardCharsets.UTF_8)
+                        .split("\n").length);
+            }
+        }
+        assertEquals(List.of("logs-2025-03-01.log", "logs-2025-03-03.log"), names);
+        // Каждая третья строка архива - вход в контроллер, она в выгрузку не попадает.
+        assertEquals(List.of(2, 1), sizes);
+    }
+
+    @Test
+    void testWriteLines_PastDaysReuseCachedExtractsAndCurrentDaySpoolsToTempFile()
+            throws IOException {
+        writeArchive(FIRST_DAY, 3);
+        LocalDate today = LocalDate.now();
+        Files.writeString(logFile, today + " 10:00:00 - Фильм создан\n");
+        List<LocalDate> days = List.of(FIRST_DAY, today);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        logRangeService.writeLines(logRangeService.reserve(days), out);
+
+        String expected = FIRST_DAY + " 00:00:01 - Пользователь 1 добавил комментарий к фильму 1\n"
+                + FIRST_DAY + " 00:00:02 - Пользователь 2 добавил комментарий к фильму 2\n"
+                + today + " 10:00:00 - Фильм создан\n";
+        assertEquals(expected, out.toString(StandardCharsets.UTF_8));
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    void testReserve_RejectsBeforeResponseWhenPoolIsFullAndFreesOnWrite() throws IOException {
+        logRangeService.shutdownExecutor();
+        logRangeService = new LogRangeService(logFileService, asyncLogService, 2, 1);
+        List<LocalDate> days = logRangeService.parseRange(FIRST_DAY.toString(),
+                FIRST_DAY.plusDays(4).toString());
+
+        LogRangeService.Reservation first = logRangeService.reserve(days);
+        assertThrows(LogQueueFullException.class, () -> logRangeService.reserve(days));
+        LogRangeService.Reservation single = logRangeService.reserve(List.of(FIRST_DAY));
+        single.close();
+
+        logRangeService.writeLines(first, new ByteArrayOutputStream());
+        logRangeService.reserve(days).close();
+    }
+
+    // Сравнивает параллельную выгрузку недели с последовательной распаковкой архивов
+    // по одному: результат должен совпадать байт в байт, время пишется в лог.
+    @Test
+    void testBenchmark_ParallelRangeMatchesSequentialPath() throws IOException {
+        int dayCount = 7;
+        for (int i = 0; i < dayCount; i++) {
+            writeArchive(FIRST_DAY.plusDays(i), 100_000);
+        }
+        List<LocalDate> days = logRangeService.parseRange(FIRST_DAY.toString(),
+                FIRST_DAY.plusDays(dayCount - 1).toString());
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        long sequentialStart = System.nanoTime();
+        for (LocalDate day : days) {
+            logFileService.writeLines(day, expected);
+        }
+        long sequentialNanos = System.nanoTime() - sequentialStart;
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(expected.size());
+        long parallelStart = System.nanoTime();
+        logRangeService.writeLines(logRangeService.reserve(days), out);
+        long parallelNanos = System.nanoTime() - parallelStart;
+
+        assertArrayEquals(expected.toByteArray(), out.toByteArray());
+        log.info("Выгрузка {} дней из архивов: последовательно {} мс, параллельно {} мс "
+                        + "({} потоков, {} процессоров)", dayCount, sequentialNanos / 1_000_000,
+                parallelNanos / 1_000_000, 4, Runtime.getRuntime().availableProcessors());
+    }
+
+    private void writeArchive(LocalDate day, int lines) throws IOException {
+        Path archive = dir.resolve("application.log." + day + ".0.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(archive))) {
+            for (int i = 0; i < lines; i++) {
+                String message = i % 3 == 0 ? SKIPPED + ": getMovies"
+                        : "Пользователь " + i + " добавил комментарий к фильму " + (i % 97);
+                out.write((day + " " + String.format("%02d:%02d:%02d", i / 4200 % 24,
+                        i / 60 % 60, i % 60) + " - " + message + "\n")
+                        .getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+}
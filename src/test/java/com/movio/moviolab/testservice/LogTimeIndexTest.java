@@ -0,0 +1,89 @@
+package com.movio.moviolab.testservice;
+
+import com.movio.moviolab.index.LogTimeIndex;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogTimeIndexTest {
+
+    private static final LocalDateTime DAY = LocalDateTime.of(2025, 3, 1, 0, 0);
+
+    @TempDir
+    private Path dir;
+
+    @Test
+    void testRange_SeeksToMinuteBuckets() throws IOException {
+        Path logFile = dir.resolve("application.log");
+        String first = "2025-02-28 23:59:30 - вчера\n";
+        String second = "2025-03-01 10:15:00 - утро\n    at Trace.line\n";
+        String third = "2025-03-01 10:16:05 - позже\n";
+        String fourth = "2025-03-02 00:00:00 - завтра\n";
+        write(logFile, first + second + third + fourth);
+        LogTimeIndex index = new LogTimeIndex(logFile.toString());
+
+        LogTimeIndex.Range day = index.range(DAY, DAY.plusDays(1));
+        assertEquals(bytes(first), day.start());
+        assertEquals(bytes(first + second + third), day.end());
+
+        LogTimeIndex.Range minute = index.range(DAY.plusHours(10).plusMinutes(16),
+                DAY.plusHours(10).plusMinutes(16).plusSeconds(30));
+        assertEquals(bytes(first + second), minute.start());
+        assertEquals(bytes(first + second + third), minute.end());
+
+        assertTrue(index.range(DAY.plusDays(5), DAY.plusDays(6)).isEmpty());
+    }
+
+    @Test
+    void testRange_IndexesAppendedLinesAndSkipsUnfinishedOne() throws IOException {
+        Path logFile = dir.resolve("application.log");
+        String first = "2025-03-01 09:00:00 - первая\n";
+        write(logFile, first);
+        LogTimeIndex index = new LogTimeIndex(logFile.toString());
+        assertEquals(bytes(first), index.range(DAY, DAY.plusDays(1)).end());
+
+        Files.writeString(logFile, "2025-03-01 09:05:00 - не дописана", StandardOpenOption.APPEND);
+        assertEquals(bytes(first), index.range(DAY, DAY.plusDays(1)).end());
+
+        Files.writeString(logFile, "\n2025-03-02 00:00:01 - новый день\n",
+                StandardOpenOption.APPEND);
+        LogTimeIndex.Range nextDay = index.range(DAY.plusDays(1), DAY.plusDays(2));
+        assertEquals(bytes(first + "2025-03-01 09:05:00 - не дописана\n"), nextDay.start());
+    }
+
+    @Test
+    void testSidecar_ReloadedAfterRestartAndResetOnRotation() throws IOException {
+        Path logFile = dir.resolve("application.log");
+        String morning = "2025-03-01 08:00:00 - утро\n";
+        String evening = "2025-03-01 20:00:00 - вечер\n";
+        write(logFile, morning + evening);
+        new LogTimeIndex(logFile.toString()).range(DAY, DAY.plusDays(1));
+        assertTrue(Files.readString(dir.resolve("application.log.idx"))
+                .startsWith("# 2025-03-01 08:00:00\n"));
+
+        LogTimeIndex restarted = new LogTimeIndex(logFile.toString());
+        LogTimeIndex.Range evenings = restarted.range(DAY.plusHours(20), DAY.plusDays(1));
+        assertEquals(bytes(morning), evenings.start());
+
+        String rotated = "2025-03-02 00:00:05 - после ротации\n";
+        write(logFile, rotated);
+        assertTrue(restarted.range(DAY, DAY.plusDays(1)).isEmpty());
+        assertEquals(0, restarted.range(DAY.plusDays(1), DAY.plusDays(2)).start());
+        assertEquals(bytes(rotated), restarted.range(DAY.plusDays(1), DAY.plusDays(2)).end());
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+    }
+
+    private static long bytes(String content) {
+        return content.getBytes(StandardCharsets.UTF_8).length;
+    }
+}
@@ -0,0 +1,71 @@
+package com.movio.moviolab.testservice;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.movio.moviolab.dto.MovieDto;
+import com.movio.moviolab.events.CommentEvent;
+import com.movio.moviolab.events.MovieEvent;
+import com.movio.moviolab.readmodel.MovieDetailReadModel;
+import com.movio.moviolab.services.MovieService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+class MovieDetailReadModelTest {
+
+    private MovieService movieService;
+    private MovieDetailReadModel readModel;
+
+    @BeforeEach
+    void setUp() {
+        movieService = mock(MovieService.class);
+        when(movieService.getMovieById(anyInt())).thenAnswer(invocation -> {
+            MovieDto movieDto = new MovieDto();
+            movieDto.setId(invocation.getArgument(0));
+            movieDto.setTitle("Movie");
+            return movieDto;
+        });
+        readModel = new MovieDetailReadModel(movieService, new ObjectMapper(),
+                mock(PlatformTransactionManager.class), 2);
+    }
+
+    @Test
+    void testGetJson_EvictsLeastRecentlyReadBeyondLimit() {
+        readModel.getJson(1);
+        readModel.getJson(2);
+        readModel.getJson(1);
+        readModel.getJson(3);
+
+        assertEquals(2, readModel.size());
+        readModel.getJson(1);
+        verify(movieService, times(1)).getMovieById(1);
+        readModel.getJson(2);
+        verify(movieService, times(2)).getMovieById(2);
+    }
+
+    @Test
+    void testMovieDeleted_RemovesEntry() {
+        readModel.getJson(1);
+
+        readModel.onMovieEvent(new MovieEvent(MovieEvent.Type.DELETED, 1, "Drama", null));
+
+        assertEquals(0, readModel.size());
+    }
+
+    @Test
+    void testInvalidationDuringLoad_ResultNotCached() {
+        when(movieService.getMovieById(5)).thenAnswer(invocation -> {
+            readModel.onCommentEvent(new CommentEvent(CommentEvent.Type.CREATED, 1, 5, 1, "t"));
+            MovieDto movieDto = new MovieDto();
+            movieDto.setId(5);
+            return movieDto;
+        });
+
+        assertNotNull(readModel.getJson(5));
+
+        assertEquals(0, readModel.size());
+    }
+}
@@ -0,0 +1,163 @@
+package com.movio.moviolab.testservice;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.movio.moviolab.cache.InMemoryCache;
+import com.movio.moviolab.readmodel.CommentCounters;
+import com.movio.moviolab.dao.MovieDao;
+import com.movio.moviolab.dao.MovieUserDao;
+import com.movio.moviolab.dao.UserDao;
+import com.movio.moviolab.exceptions.BadRequestException;
+import com.movio.moviolab.services.MovieImportService;
+import com.movio.moviolab.services.MovieService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.mock.web.MockMultipartFile;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Collections.emptyList;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MovieImportServiceTest {
+
+    @Mock
+    private MovieDao movieDao;
+
+    @Mock
+    private UserDao userDao;
+
+    @Mock
+    private InMemoryCache inMemoryCache;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private MovieImportService movieImportService;
+
+    @BeforeEach
+    void setUp() {
+        MovieService movieService = new MovieService(movieDao, userDao, mock(MovieUserDao.class),
+                inMemoryCache, mock(CommentCounters.class), eventPublisher);
+        movieImportService = new MovieImportService(movieService, movieDao, new ObjectMapper());
+    }
+
+    @AfterEach
+    void tearDown() {
+        movieImportService.shutdownExecutors();
+    }
+
+    @Test
+    void testImportNdjson_ReportsInvalidRows() throws InterruptedException {
+        String body = """
+                {"title":"Movie 1","genre":"Action","year":2020}
+                {"title":"","genre":"Action","year":2020}
+                not a json
+                {"title":"Movie 2","genre":"Drama","year":2021}
+                """;
+        when(movieDao.findKeysByTitlesAndYears(anyCollection(), anyCollection()))
+                .thenReturn(emptyList());
+
+        Map<String, Object> status = runImport("movies.ndjson", body, null);
+
+        assertEquals("COMPLETED", status.get("state").toString());
+        assertEquals(4L, status.get("processedRows"));
+        assertEquals(2L, status.get("importedRows"));
+        assertEquals(2L, status.get("errorRows"));
+        List<?> errors = (List<?>) status.get("errors");
+        assertEquals(2L, ((Map<?, ?>) errors.get(0)).get("line"));
+        assertEquals(3L, ((Map<?, ?>) errors.get(1)).get("line"));
+    }
+
+    @Test
+    void testImportCsv_SkipsHeaderAndDuplicates() throws InterruptedException {
+        String body = """
+                title,genre,year
+                "Movie, with comma",Action,2020
+                "Movie, with comma",Action,2020
+                Movie 3,Drama,abc
+                """;
+        when(movieDao.findKeysByTitlesAndYears(anyCollection(), anyCollection()))
+                .thenReturn(emptyList());
+
+        Map<String, Object> status = runImport("movies.csv", body, null);
+
+        assertEquals(3L, status.get("processedRows"));
+        assertEquals(1L, status.get("importedRows"));
+        assertEquals(2L, status.get("errorRows"));
+        verify(movieDao).saveAll(argThat(list -> list.size() == 1
+                && list.getFirst().getTitle().equals("Movie, with comma")));
+    }
+
+    @Test
+    void testImport_CommitsInChunks() throws InterruptedException {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 1200; i++) {
+            body.append("Movie ").append(i).append(",Action,2020\n");
+        }
+        when(movieDao.findKeysByTitlesAndYears(anyCollection(), anyCollection()))
+                .thenReturn(emptyList());
+
+        Map<String, Object> status = runImport("movies.txt", body.toString(), "csv");
+
+        assertEquals(1200L, status.get("importedRows"));
+        verify(movieDao, times(3)).saveAll(anyList());
+        verify(movieDao, times(3)).findKeysByTitlesAndYears(anyCollection(), anyCollection());
+    }
+
+    @Test
+    void testImport_RejectsRowsAlreadyStoredCaseInsensitively() throws InterruptedException {
+        String body = """
+                Movie 1,Action,2020
+                Movie 2,Drama,2020
+                """;
+        when(movieDao.findKeysByTitlesAndYears(anyCollection(), anyCollection()))
+                .thenReturn(List.<Object[]>of(new Object[] {"action", 2020, "MOVIE 1"},
+                        new Object[] {"Comedy", 2020, "Movie 2"}));
+
+        Map<String, Object> status = runImport("movies.csv", body, null);
+
+        assertEquals(1L, status.get("importedRows"));
+        assertEquals(1L, status.get("errorRows"));
+        verify(movieDao).saveAll(argThat(list -> list.size() == 1
+                && list.getFirst().getTitle().equals("Movie 2")));
+    }
+
+    @Test
+    void testImport_EmptyFile() {
+        MockMultipartFile file = new MockMultipartFile("file", "movies.csv",
+                "text/csv", new byte[0]);
+
+        assertThrows(BadRequestException.class, () -> movieImportService.startImport(file, null));
+    }
+
+    @Test
+    void testImport_UnknownFormat() {
+        MockMultipartFile file = new MockMultipartFile("file", "movies.xml",
+                "text/xml", "<movies/>".getBytes(StandardCharsets.UTF_8));
+
+        assertThrows(BadRequestException.class, () -> movieImportService.startImport(file, "xml"));
+    }
+
+    private Map<String, Object> runImport(String filename, String body, String format)
+            throws InterruptedException {
+        MockMultipartFile file = new MockMultipartFile("file", filename,
+                "application/octet-stream", body.getBytes(StandardCharsets.UTF_8));
+        String taskId = movieImportService.startImport(file, format);
+
+        Map<String, Object> status = movieImportService.getImportStatus(taskId);
+        for (int i = 0; i < 100 && "RUNNING".equals(status.get("state").toString()); i++) {
+            Thread.sleep(50);
+            status = movieImportService.getImportStatus(taskId);
+        }
+        return status;
+    }
+}
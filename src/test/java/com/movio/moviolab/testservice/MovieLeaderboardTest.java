@@ -0,0 +1,117 @@
+package com.movio.moviolab.testservice;
+
+import com.movio.moviolab.dao.CommentDao;
+import com.movio.moviolab.dao.MovieDao;
+import com.movio.moviolab.events.CommentEvent;
+import com.movio.moviolab.events.MovieEvent;
+import com.movio.moviolab.events.MovieUserEvent;
+import com.movio.moviolab.events.UserEvent;
+import com.movio.moviolab.index.MovieLeaderboard;
+import com.movio.moviolab.index.MovieLeaderboard.Entry;
+import com.movio.moviolab.index.MovieLeaderboard.Metric;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MovieLeaderboardTest {
+
+    @Mock
+    private CommentDao commentDao;
+
+    @Mock
+    private MovieDao movieDao;
+
+    @InjectMocks
+    private MovieLeaderboard movieLeaderboard;
+
+    @BeforeEach
+    void setUp() {
+        when(commentDao.countCommentsByMovie()).thenReturn(List.of(
+                new Object[]{1, 5L}, new Object[]{2, 7L}, new Object[]{3, 1L}));
+        when(movieDao.countUsersByMovie()).thenReturn(List.<Object[]>of(new Object[]{1, 2L}));
+        movieLeaderboard.rebuild();
+    }
+
+    @Test
+    void testRebuild_RanksByCount() {
+        List<Entry> top = movieLeaderboard.top(Metric.COMMENTS, 2);
+
+        assertEquals(List.of(new Entry(2, 7L), new Entry(1, 5L)), top);
+    }
+
+    @Test
+    void testCommentEvents_UpdateRanking() {
+        for (int i = 0; i < 3; i++) {
+            movieLeaderboard.onCommentEvent(comment(CommentEvent.Type.CREATED, 1));
+        }
+        movieLeaderboard.onCommentEvent(comment(CommentEvent.Type.DELETED, 2));
+        movieLeaderboard.onCommentEvent(comment(CommentEvent.Type.UPDATED, 3));
+
+        List<Entry> top = movieLeaderboard.top(Metric.COMMENTS, 10);
+
+        assertEquals(List.of(new Entry(1, 8L), new Entry(2, 6L), new Entry(3, 1L)), top);
+    }
+
+    @Test
+    void testMovieUserEvents_DropMoviesWithoutUsers() {
+        movieLeaderboard.onMovieUserEvent(new MovieUserEvent(MovieUserEvent.Type.LINKED, 4, 1));
+        movieLeaderboard.onMovieUserEvent(new MovieUserEvent(MovieUserEvent.Type.UNLINKED, 1, 1));
+        movieLeaderboard.onMovieUserEvent(new MovieUserEvent(MovieUserEvent.Type.UNLINKED, 1, 2));
+
+        assertEquals(List.of(new Entry(4, 1L)), movieLeaderboard.top(Metric.USERS, 10));
+    }
+
+    @Test
+    void testMovieDeleted_RemovedFromAllBoards() {
+        movieLeaderboard.onMovieEvent(new MovieEvent(MovieEvent.Type.DELETED, 1, "Action", null));
+
+        assertTrue(movieLeaderboard.top(Metric.USERS, 10).isEmpty());
+        assertEquals(List.of(new Entry(2, 7L), new Entry(3, 1L)),
+                movieLeaderboard.top(Metric.COMMENTS, 10));
+    }
+
+    @Test
+    void testUserDeleted_SubtractsItsCommentsWithoutRecount() {
+        movieLeaderboard.onUserEvent(new UserEvent(UserEvent.Type.DELETED, 9, List.of(1),
+                Map.of(2, 4L, 3, 1L)));
+
+        assertEquals(List.of(new Entry(1, 5L), new Entry(2, 3L)),
+                movieLeaderboard.top(Metric.COMMENTS, 10));
+        assertEquals(List.of(new Entry(1, 1L)), movieLeaderboard.top(Metric.USERS, 10));
+        verify(commentDao, times(1)).countCommentsByMovie();
+    }
+
+    @Test
+    void testRebuild_KeepsEventsArrivingDuringQuery() {
+        when(commentDao.countCommentsByMovie()).thenAnswer(invocation -> {
+            movieLeaderboard.onCommentEvent(comment(CommentEvent.Type.CREATED, 3));
+            return List.<Object[]>of(new Object[]{2, 7L});
+        });
+        when(movieDao.countUsersByMovie()).thenAnswer(invocation -> {
+            movieLeaderboard.onMovieUserEvent(
+                    new MovieUserEvent(MovieUserEvent.Type.LINKED, 5, 1));
+            return List.<Object[]>of(new Object[]{1, 2L});
+        });
+
+        movieLeaderboard.rebuild();
+        movieLeaderboard.onCommentEvent(comment(CommentEvent.Type.CREATED, 2));
+
+        assertEquals(List.of(new Entry(2, 8L), new Entry(3, 1L)),
+                movieLeaderboard.top(Metric.COMMENTS, 10));
+        assertEquals(List.of(new Entry(1, 2L), new Entry(5, 1L)),
+                movieLeaderboard.top(Metric.USERS, 10));
+    }
+
+    private CommentEvent comment(CommentEvent.Type type, Integer movieId) {
+        return new CommentEvent(type, 100, movieId, 1, "text");
+    }
+}
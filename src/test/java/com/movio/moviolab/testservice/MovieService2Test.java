@@ -1,9 +1,13 @@
 package com.movio.moviolab.testservice;
 
 import com.movio.moviolab.cache.InMemoryCache;
+import com.movio.moviolab.readmodel.CommentCounters;
 import com.movio.moviolab.dao.MovieDao;
+import com.movio.moviolab.dao.MovieUserDao;
 import com.movio.moviolab.dao.UserDao;
 import com.movio.moviolab.dto.MovieDto;
+import com.movio.moviolab.dto.MovieUserLinkDto;
+import com.movio.moviolab.events.MovieUserEvent;
 import com.movio.moviolab.exceptions.BadRequestException;
 import com.movio.moviolab.exceptions.MovieException;
 import com.movio.moviolab.exceptions.UserException;
@@ -17,6 +21,8 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 
 import java.time.LocalDate;
 import java.util.*;
@@ -36,15 +42,76 @@ class MovieService2Test {
     @Mock
     private UserDao userDao;
 
+    @Mock
+    private MovieUserDao movieUserDao;
+
     @Mock
     private InMemoryCache inMemoryCache;
 
+    @Mock
+    private CommentCounters commentCounters;
+
     @Mock
     private Movie movie;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     private MovieService movieService;
 
+    @Test
+    void testAddUsersToMoviesBulk_InsertsOnlyNewLinksAndInvalidatesTheirGenres() {
+        MovieUserLinkDto first = new MovieUserLinkDto(1, 10);
+        MovieUserLinkDto second = new MovieUserLinkDto(2, 10);
+        List<MovieUserLinkDto> links = List.of(first, second, new MovieUserLinkDto(1, 10));
+
+        when(movieUserDao.insertIfAbsent(List.of(first, second))).thenReturn(List.of(second));
+        when(movieUserDao.findGenres(Set.of(2))).thenReturn(List.of("Drama"));
+
+        int inserted = movieService.addUsersToMoviesBulk(links);
+
+        assertEquals(1, inserted);
+        verify(movieUserDao).touchMovies(Set.of(2));
+        verify(inMemoryCache).remove(CACHE_PREFIX_MOVIE_GENRE + "Drama");
+        verify(eventPublisher).publishEvent(new MovieUserEvent(MovieUserEvent.Type.LINKED, 2, 10));
+        verifyNoInteractions(movieDao, userDao);
+    }
+
+    @Test
+    void testEnsureUniqueUserLinks_RemovesDuplicatesAndRetriesIfNewOnesAppear() {
+        when(movieUserDao.hasUniqueLinkIndex()).thenReturn(false, false, true);
+        when(movieUserDao.deleteDuplicateLinks()).thenReturn(3, 1);
+        doThrow(new DataIntegrityViolationException("Duplicate entry for key 'uk_movie_user'"))
+                .doNothing()
+                .when(movieUserDao).addUniqueLinkIndex();
+
+        movieService.ensureUniqueUserLinks();
+
+        verify(movieUserDao, times(2)).deleteDuplicateLinks();
+        verify(movieUserDao, times(2)).addUniqueLinkIndex();
+    }
+
+    @Test
+    void testEnsureUniqueUserLinks_SkippedWhenIndexExists() {
+        when(movieUserDao.hasUniqueLinkIndex()).thenReturn(true);
+
+        movieService.ensureUniqueUserLinks();
+
+        verify(movieUserDao, never()).deleteDuplicateLinks();
+        verify(movieUserDao, never()).addUniqueLinkIndex();
+    }
+
+    @Test
+    void testAddUsersToMoviesBulk_MissingIds() {
+        List<MovieUserLinkDto> links = List.of(new MovieUserLinkDto(1, null));
+
+        BadRequestException exception = assertThrows(BadRequestException.class, () -> movieService.addUsersToMoviesBulk(links));
+
+        assertEquals("В каждой связи нужны movieId и userId", exception.getMessage());
+        verifyNoInteractions(movieUserDao);
+    }
+
     @Test
     void testAddMoviesBulk_EmptyList() {
         List<MovieDto> emptyList = emptyList();
@@ -118,14 +185,6 @@ class MovieService2Test {
         assertEquals("Фильм не найден: 99", exception.getMessage());
     }
 
-    @Test
-    void testGetCommentsByMovieId_NotFound() {
-        when(movieDao.findById(404)).thenReturn(Optional.empty());
-
-        MovieException exception = assertThrows(MovieException.class, () -> movieService.getCommentsByMovieId(404));
-        assertEquals("Фильм не найден: 404", exception.getMessage());
-    }
-
     @Test
     void testAddUserToMovie_MovieNotFound() {
         when(movieDao.findById(1)).thenReturn(Optional.empty());
@@ -1,22 +1,23 @@
 package com.movio.moviolab.testservice;
 
 import com.movio.moviolab.dao.MovieDao;
+import com.movio.moviolab.dao.MovieUserDao;
 import com.movio.moviolab.dao.UserDao;
 import com.movio.moviolab.cache.InMemoryCache;
+import com.movio.moviolab.readmodel.CommentCounters;
 import com.movio.moviolab.dto.MovieDto;
-import com.movio.moviolab.dto.CommentDto;
 import com.movio.moviolab.dto.UserDto;
 import com.movio.moviolab.exceptions.MovieException;
 import com.movio.moviolab.exceptions.ValidationException;
 import com.movio.moviolab.models.Movie;
 import com.movio.moviolab.models.User;
-import com.movio.moviolab.models.Comment;
 import com.movio.moviolab.services.MovieService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.*;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import java.util.*;
@@ -33,9 +34,18 @@ class MovieServiceTest {
     @Mock
     private UserDao userDao;
 
+    @Mock
+    private MovieUserDao movieUserDao;
+
     @Mock
     private InMemoryCache inMemoryCache;
 
+    @Mock
+    private CommentCounters commentCounters;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     private MovieService movieService;
 
@@ -162,34 +172,15 @@ class MovieServiceTest {
     @Test
     void testDeleteMovieById_Success() {
         when(movieDao.findById(1)).thenReturn(Optional.of(movie));
-        doNothing().when(movieDao).deleteById(1);
+        when(movieDao.deleteWithAssociations(1)).thenReturn(Map.of(5, 2L));
         doNothing().when(inMemoryCache).removeAll();
 
         movieService.deleteMovieById(1);
 
-        verify(movieDao, times(1)).deleteById(1);
+        verify(movieDao, times(1)).deleteWithAssociations(1);
         verify(inMemoryCache, times(1)).removeAll();
     }
 
-    @Test
-    void testGetCommentsByMovieId_Success() {
-        Comment comment = new Comment();
-        comment.setContent("Great movie!");
-        comment.setUserId(1);
-        comment.setMovieId(1);
-
-        List<Comment> comments = List.of(comment);
-        movie.setComments(comments);
-
-        when(movieDao.findById(1)).thenReturn(Optional.of(movie));
-
-        List<CommentDto> result = movieService.getCommentsByMovieId(1);
-
-        assertNotNull(result);
-        assertEquals(1, result.size());
-        assertEquals(comment.getContent(), result.getFirst().getContent());
-    }
-
     @Test
     void testAddUserToMovie_Success() {
         when(movieDao.findById(1)).thenReturn(Optional.of(movie));
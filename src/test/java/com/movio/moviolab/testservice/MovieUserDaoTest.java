@@ -0,0 +1,98 @@
+package com.movio.moviolab.testservice;
+
+import com.movio.moviolab.dao.MovieUserDao;
+import com.movio.moviolab.dto.MovieUserLinkDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Настоящая таблица movie_user с уникальным индексом uk_movie_user (H2 в режиме MySQL).
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = {
+    "spring.datasource.url=jdbc:h2:mem:links;MODE=MySQL;NON_KEYWORDS=YEAR,USER;"
+            + "DB_CLOSE_DELAY=-1",
+    "spring.datasource.username=sa",
+    "spring.datasource.password=",
+    "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+    "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@Import(MovieUserDao.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class MovieUserDaoTest {
+
+    private static final int THREADS = 8;
+
+    @Autowired
+    private MovieUserDao movieUserDao;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("INSERT INTO movies (id, title, genre, year) "
+                + "VALUES (1, 'Heat', 'Drama', 1995)");
+        jdbcTemplate.update("INSERT INTO users (id, name, email, comment_count) "
+                + "VALUES (10, 'Ann', 'ann@example.com', 0)");
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM movie_user");
+        jdbcTemplate.update("DELETE FROM users");
+        jdbcTemplate.update("DELETE FROM movies");
+    }
+
+    @Test
+    void testInsertIfAbsent_ParallelInsertsOfSameLinkStoreItOnce() throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<List<MovieUserLinkDto>>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return movieUserDao.insertIfAbsent(List.of(new MovieUserLinkDto(1, 10)));
+                }));
+            }
+            start.countDown();
+
+            int inserted = 0;
+            for (Future<List<MovieUserLinkDto>> future : futures) {
+                inserted += future.get().size();
+            }
+
+            assertEquals(1, inserted);
+            assertEquals(1, jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM movie_user", Integer.class));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testInsertIfAbsent_SkipsMissingMovieOrUser() {
+        List<MovieUserLinkDto> inserted = movieUserDao.insertIfAbsent(List.of(
+                new MovieUserLinkDto(1, 10), new MovieUserLinkDto(2, 10),
+                new MovieUserLinkDto(1, 11)));
+
+        assertEquals(List.of(new MovieUserLinkDto(1, 10)), inserted);
+    }
+}
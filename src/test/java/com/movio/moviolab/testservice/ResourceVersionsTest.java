@@ -0,0 +1,32 @@
+package com.movio.moviolab.testservice;
+
+import com.movio.moviolab.events.MovieEvent;
+import com.movio.moviolab.readmodel.ResourceVersions;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResourceVersionsTest {
+
+    @Test
+    void testMatches_WildcardOnlyForExistingResource() {
+        ResourceVersions versions = new ResourceVersions();
+        String etag = versions.movieETag(1);
+
+        assertTrue(ResourceVersions.matches("*", etag, () -> true));
+        assertFalse(ResourceVersions.matches("*", etag, () -> false));
+        assertTrue(ResourceVersions.matches("\"other\", W/" + etag, etag, () -> {
+            throw new AssertionError("Точное совпадение не должно проверять существование");
+        }));
+    }
+
+    @Test
+    void testMovieEvent_ChangesETag() {
+        ResourceVersions versions = new ResourceVersions();
+        String before = versions.movieETag(1);
+
+        versions.onMovieEvent(new MovieEvent(MovieEvent.Type.UPDATED, 1, "Drama", "Drama"));
+
+        assertFalse(ResourceVersions.matches(before, versions.movieETag(1), () -> true));
+    }
+}
@@ -0,0 +1,81 @@
+package com.movio.moviolab.testservice;
+
+import com.movio.moviolab.events.MovieEvent;
+import com.movio.moviolab.events.MovieUserEvent;
+import com.movio.moviolab.events.UserEvent;
+import com.movio.moviolab.index.CoOccurrenceIndex;
+import com.movio.moviolab.index.SimilarUserIndex;
+import com.movio.moviolab.index.SimilarUserIndex.Match;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SimilarUserIndexTest {
+
+    @Mock
+    private CoOccurrenceIndex coOccurrenceIndex;
+
+    private SimilarUserIndex similarUserIndex;
+
+    @BeforeEach
+    void setUp() {
+        when(coOccurrenceIndex.users()).thenReturn(new int[]{1, 2, 3});
+        when(coOccurrenceIndex.moviesOf(1)).thenReturn(range(1, 21));
+        when(coOccurrenceIndex.moviesOf(2)).thenReturn(range(1, 20));
+        when(coOccurrenceIndex.moviesOf(3)).thenReturn(range(100, 120));
+
+        similarUserIndex = new SimilarUserIndex(coOccurrenceIndex, 20, 5, 1000);
+        similarUserIndex.rebuild();
+    }
+
+    @Test
+    void testSimilar_FindsOverlappingUsersOnly() {
+        List<Match> matches = similarUserIndex.similar(1, 10);
+
+        assertEquals(1, matches.size());
+        assertEquals(2, matches.getFirst().userId());
+        assertTrue(matches.getFirst().similarity() > 0.7);
+        assertTrue(similarUserIndex.similar(99, 10).isEmpty());
+    }
+
+    @Test
+    void testMovieUserEvent_RecomputesSignature() {
+        when(coOccurrenceIndex.moviesOf(3)).thenReturn(range(1, 21));
+        similarUserIndex.onMovieUserEvent(new MovieUserEvent(MovieUserEvent.Type.LINKED, 20, 3));
+
+        List<Match> matches = similarUserIndex.similar(1, 10);
+
+        assertEquals(3, matches.getFirst().userId());
+        assertEquals(1.0, matches.getFirst().similarity());
+        assertEquals(2, matches.size());
+    }
+
+    @Test
+    void testMovieDeleted_ExcludesMovieBeforeCoOccurrenceIndexDropsIt() {
+        when(coOccurrenceIndex.usersOf(20)).thenReturn(new int[]{1});
+
+        similarUserIndex.onMovieEvent(new MovieEvent(MovieEvent.Type.DELETED, 20, "Drama", null));
+
+        assertEquals(List.of(new Match(2, 1.0)), similarUserIndex.similar(1, 10));
+    }
+
+    @Test
+    void testUserDeleted_RemovedFromBuckets() {
+        similarUserIndex.onUserEvent(new UserEvent(UserEvent.Type.DELETED, 2, List.of()));
+
+        assertTrue(similarUserIndex.similar(1, 10).isEmpty());
+        assertTrue(similarUserIndex.similar(2, 10).isEmpty());
+    }
+
+    private static int[] range(int from, int to) {
+        return IntStream.range(from, to).toArray();
+    }
+}
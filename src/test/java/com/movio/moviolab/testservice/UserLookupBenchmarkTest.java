@@ -0,0 +1,118 @@
+package com.movio.moviolab.testservice;
+
+import com.movio.moviolab.models.User;
+import com.movio.moviolab.repositories.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Замер поиска пользователя по имени и почте на нескольких миллионах строк. Нужен MySQL,
+// поэтому в обычный прогон не входит. Запуск на пустой отдельной базе (таблицы
+// пересоздаются и удаляются):
+//   mvn test -Dtest=UserLookupBenchmarkTest
+//       -Dmoviolab.benchmark.mysql-url=jdbc:mysql://localhost:3306/moviobench?rewriteBatchedStatements=true
+//       -Dmoviolab.benchmark.mysql-user=root -Dmoviolab.benchmark.mysql-password=...
+//       -Dmoviolab.benchmark.users=3000000
+// Проверяет по EXPLAIN, что поиск идет по уникальным индексам, и пишет в лог среднее
+// время поиска по индексу и прежнего upper(col) = upper(?) на той же таблице.
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = {
+    "spring.datasource.url=${moviolab.benchmark.mysql-url}",
+    "spring.datasource.username=${moviolab.benchmark.mysql-user:root}",
+    "spring.datasource.password=${moviolab.benchmark.mysql-password:}",
+    "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@EnabledIfSystemProperty(named = "moviolab.benchmark.mysql-url", matches = ".+")
+class UserLookupBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(UserLookupBenchmarkTest.class);
+    private static final int INSERT_BATCH = 10_000;
+    private static final int WARMUP_LOOKUPS = 2_000;
+    private static final int LOOKUPS = 10_000;
+    private static final int SCAN_LOOKUPS = 5;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${moviolab.benchmark.users:3000000}")
+    private int users;
+
+    @Test
+    void testBenchmark_NormalizedLookupsUseUniqueIndexes() {
+        long seedStart = System.nanoTime();
+        seed();
+        log.info("Заполнено {} пользователей за {} с", users,
+                (System.nanoTime() - seedStart) / 1_000_000_000);
+
+        assertEquals("uk_users_name_normalized",
+                explainKey("SELECT id FROM users WHERE name_normalized = 'user42'"));
+        assertEquals("uk_users_email_normalized",
+                explainKey("SELECT id FROM users WHERE email_normalized = 'user42@example.com'"));
+
+        Random random = new Random(42);
+        for (int i = 0; i < WARMUP_LOOKUPS; i++) {
+            lookup(random.nextInt(users));
+        }
+        long indexedStart = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            assertEquals(1, lookup(random.nextInt(users)));
+        }
+        long indexedMicros = (System.nanoTime() - indexedStart) / 1_000 / LOOKUPS;
+
+        long scanStart = System.nanoTime();
+        for (int i = 0; i < SCAN_LOOKUPS; i++) {
+            jdbcTemplate.queryForList("SELECT id FROM users WHERE UPPER(name) = UPPER(?)",
+                    Integer.class, "USER" + random.nextInt(users));
+        }
+        long scanMicros = (System.nanoTime() - scanStart) / 1_000 / SCAN_LOOKUPS;
+
+        log.info("Поиск среди {} пользователей: по индексу {} мкс, upper(col) = upper(?) {} мкс",
+                users, indexedMicros, scanMicros);
+    }
+
+    private int lookup(int id) {
+        String name = "user" + id;
+        List<User> found = userRepository.findByNameNormalizedAndEmailNormalized(
+                name, name + "@example.com");
+        return found.size();
+    }
+
+    private void seed() {
+        List<Object[]> batch = new ArrayList<>(INSERT_BATCH);
+        for (int id = 0; id < users; id++) {
+            String name = "User" + id;
+            String email = name + "@Example.com";
+            batch.add(new Object[]{name, email, name.toLowerCase(), email.toLowerCase()});
+            if (batch.size() == INSERT_BATCH || id == users - 1) {
+                jdbcTemplate.batchUpdate("INSERT INTO users (name, email, name_normalized, "
+                        + "email_normalized, comment_count) VALUES (?, ?, ?, ?, 0)", batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private String explainKey(String sql) {
+        Map<String, Object> plan = jdbcTemplate.queryForList("EXPLAIN " + sql).get(0);
+        return (String) plan.get("key");
+    }
+}
@@ -1,8 +1,8 @@
 package com.movio.moviolab.testservice;
 
 import com.movio.moviolab.cache.InMemoryCache;
+import com.movio.moviolab.readmodel.CommentCounters;
 import com.movio.moviolab.dao.UserDao;
-import com.movio.moviolab.dto.CommentDto;
 import com.movio.moviolab.dto.UserDto;
 import com.movio.moviolab.exceptions.UserException;
 import com.movio.moviolab.exceptions.ValidationException;
@@ -15,6 +15,7 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -30,6 +31,12 @@ class UserService2Test {
     @Mock
     private InMemoryCache inMemoryCache;
 
+    @Mock
+    private CommentCounters commentCounters;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     private UserService userService;
 
@@ -80,6 +87,7 @@ class UserService2Test {
         expectedDto.setId(newUser.getId());
         expectedDto.setName(newUser.getName());
         expectedDto.setEmail(newUser.getEmail());
+        expectedDto.setCommentCount(0L);
 
         List<User> usersFromDb = List.of(newUser);
 
@@ -192,24 +200,6 @@ class UserService2Test {
         assertEquals("Длинна пароля должна быть от 5 до 20 символов", exception.getMessage());
     }
 
-    @Test
-    void testGetCommentsByUserId_Success() {
-        when(userDao.findById(1)).thenReturn(Optional.of(user));
-
-        List<CommentDto> comments = userService.getCommentsByUserId(1);
-
-        assertNotNull(comments);
-    }
-
-    @Test
-    void testGetCommentsByUserId_UserNotFound() {
-        when(userDao.findById(1)).thenReturn(Optional.empty());
-
-        UserException exception = assertThrows(UserException.class, () -> userService.getCommentsByUserId(1));
-
-        assertEquals("Пользователь не найден: 1", exception.getMessage());
-    }
-
     @Test
     void testGetUsersByNameAndEmail() {
         String name = "John";
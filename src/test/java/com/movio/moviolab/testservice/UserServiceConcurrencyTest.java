@@ -0,0 +1,161 @@
+package com.movio.moviolab.testservice;
+
+import com.movio.moviolab.cache.InMemoryCache;
+import com.movio.moviolab.dao.MovieDao;
+import com.movio.moviolab.dao.UserDao;
+import com.movio.moviolab.dto.UserDto;
+import com.movio.moviolab.readmodel.CommentCounters;
+import com.movio.moviolab.repositories.UserRepository;
+import com.movio.moviolab.services.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+// Работает с настоящей базой (H2 в режиме MySQL) и настоящими уникальными индексами
+// users: дубликат отсекает сама база, а сервис переводит DataIntegrityViolationException
+// в ответ о занятом имени. Транзакция теста отключена, чтобы потоки видели коммиты друг друга.
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = {
+    "spring.datasource.url=jdbc:h2:mem:users;MODE=MySQL;NON_KEYWORDS=YEAR,USER;"
+            + "DB_CLOSE_DELAY=-1",
+    "spring.datasource.username=sa",
+    "spring.datasource.password=",
+    "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+    "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@Import(UserDao.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class UserServiceConcurrencyTest {
+
+    private static final int THREADS = 8;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserDao userDao;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void tearDown() {
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void testAddUser_ParallelDuplicateSignupsOnlyOneSucceeds() throws Exception {
+        UserService userService = userService();
+
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<UserDto>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < THREADS; i++) {
+                String name = i % 2 == 0 ? "John Doe" : "JOHN DOE";
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return userService.addUser(userDto(name));
+                }));
+            }
+            start.countDown();
+
+            int succeeded = 0;
+            int rejected = 0;
+            for (Future<UserDto> future : futures) {
+                try {
+                    assertNotNull(future.get().getId());
+                    succeeded++;
+                } catch (Exception e) {
+                    assertInstanceOf(IllegalArgumentException.class, e.getCause());
+                    rejected++;
+                }
+            }
+
+            assertEquals(1, succeeded);
+            assertEquals(THREADS - 1, rejected);
+            assertEquals(1, userRepository.count());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testBackfill_SkipsLegacyDuplicatesInsteadOfFailingStartup() {
+        // Строки, записанные до появления нормализованных столбцов.
+        jdbcTemplate.update("INSERT INTO users (name, email, comment_count) VALUES "
+                + "('Ann', 'ann@example.com', 0), ('ANN', 'ann2@example.com', 0), "
+                + "('Bob', 'bob@example.com', 0)");
+        // Уже заполненная строка, с которой совпадает незаполненная.
+        jdbcTemplate.update("INSERT INTO users (name, email, name_normalized, "
+                + "email_normalized, comment_count) VALUES "
+                + "('eve', 'eve@example.com', 'eve', 'eve@example.com', 0)");
+        jdbcTemplate.update("INSERT INTO users (name, email, comment_count) VALUES "
+                + "('Eve', 'eve2@example.com', 0)");
+
+        assertDoesNotThrow(() -> userService().backfillNormalizedColumns());
+
+        assertEquals(List.of("bob", "eve"), jdbcTemplate.queryForList(
+                "SELECT name_normalized FROM users WHERE name_normalized IS NOT NULL "
+                        + "ORDER BY name_normalized", String.class));
+        assertEquals(5, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM users WHERE email_normalized IS NOT NULL", Integer.class));
+        assertTrue(userDao.hasUnnormalizedRows());
+    }
+
+    @Test
+    void testLegacyDuplicates_StayVisibleToLookupsAndConflictChecks() {
+        jdbcTemplate.update("INSERT INTO users (name, email, comment_count) VALUES "
+                + "('Ann', 'ann@example.com', 0), ('ANN', 'ann2@example.com', 0)");
+        UserService userService = userService();
+        userService.backfillNormalizedColumns();
+        Integer annId = jdbcTemplate.queryForObject(
+                "SELECT id FROM users WHERE name = 'Ann'", Integer.class);
+
+        assertEquals(2, userDao.findByNameIgnoreCase("ann").size());
+        assertEquals(1, userDao.findByEmailIgnoreCase("ANN2@example.com").size());
+        assertEquals(1, userDao.findByNameIgnoreCaseAndEmailIgnoreCase("ANN",
+                "ann2@example.com").size());
+        assertThrows(IllegalArgumentException.class,
+                () -> userService.addUser(userDto("aNN")));
+
+        UserDto rename = userDto("Ann");
+        rename.setEmail("ann@example.com");
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> userService.updateUser(annId, rename));
+        assertEquals("Пользователь с таким именем и почтой уже существует: Ann",
+                exception.getMessage());
+    }
+
+    private UserService userService() {
+        return new UserService(userDao, mock(MovieDao.class),
+                mock(InMemoryCache.class), mock(CommentCounters.class),
+                mock(ApplicationEventPublisher.class));
+    }
+
+    private UserDto userDto(String name) {
+        UserDto userDto = new UserDto();
+        userDto.setName(name);
+        userDto.setEmail(name.toLowerCase().replace(' ', '.') + "@example.com");
+        userDto.setPassword("password123");
+        return userDto;
+    }
+}
@@ -1,21 +1,25 @@
 package com.movio.moviolab.testservice;
 
 import com.movio.moviolab.cache.InMemoryCache;
+import com.movio.moviolab.readmodel.CommentCounters;
 import com.movio.moviolab.dao.UserDao;
 import com.movio.moviolab.dto.UserDto;
+import com.movio.moviolab.events.UserEvent;
 import com.movio.moviolab.exceptions.UserException;
-import com.movio.moviolab.models.Movie;
 import com.movio.moviolab.models.User;
 import com.movio.moviolab.services.UserService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import java.util.List;
 import java.util.Optional;
 import static java.util.Collections.emptyList;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.*;
 import static org.junit.jupiter.api.Assertions.*;
 import org.slf4j.Logger;
@@ -29,6 +33,12 @@ class UserServiceTest {
     @Mock
     private InMemoryCache inMemoryCache;
 
+    @Mock
+    private CommentCounters commentCounters;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     private UserService userService;
 
@@ -83,8 +93,8 @@ class UserServiceTest {
         savedUser.setEmail("valid.email@example.com");
         savedUser.setPassword("validpassword123");
 
-        when(userDao.findByNameIgnoreCase(validUserDto.getName())).thenReturn(emptyList());
-        when(userDao.findByEmailIgnoreCase(validUserDto.getEmail())).thenReturn(emptyList());
+        when(userDao.findConflictingNames("valid name", "valid.email@example.com"))
+                .thenReturn(emptyList());
         when(userDao.save(any(User.class))).thenReturn(savedUser);
 
         UserDto result = userService.addUser(validUserDto);
@@ -106,7 +116,8 @@ class UserServiceTest {
         userTest.setName("John Doe");
         userTest.setEmail("john@example.com");
 
-        when(userDao.findByNameIgnoreCase(userTest.getName())).thenReturn(List.of(userTest));
+        when(userDao.findConflictingNames("john doe", "john.doe@example.com"))
+                .thenReturn(List.of("john doe"));
         IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> userService.addUser(userDto));
         assertEquals("Пользователь с таким именем и почтой уже существует: John Doe", exception.getMessage());
     }
@@ -122,45 +133,108 @@ class UserServiceTest {
         userJohn.setName("John");
         userJohn.setEmail("john.doe@example.com");
 
-        when(userDao.findByEmailIgnoreCase(user.getEmail())).thenReturn(List.of(user));
+        when(userDao.findConflictingNames("john doe", "john.doe@example.com"))
+                .thenReturn(List.of("john"));
 
         IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> userService.addUser(userDto));
         assertEquals("Пользователь с таким именем и почтой уже существует: john.doe@example.com", exception.getMessage());
     }
 
+    @Test
+    void testAddUser_ConflictOnInsert() {
+        UserDto userDto = new UserDto();
+        userDto.setName("John Doe");
+        userDto.setEmail("john.doe@example.com");
+        userDto.setPassword("password123");
+
+        when(userDao.findConflictingNames("john doe", "john.doe@example.com"))
+                .thenReturn(emptyList(), List.of("john doe"));
+        when(userDao.save(any(User.class)))
+                .thenThrow(new DataIntegrityViolationException("uk_users_name_normalized"));
+
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> userService.addUser(userDto));
+        assertEquals("Пользователь с таким именем и почтой уже существует: John Doe", exception.getMessage());
+    }
+
+    @Test
+    void testBackfillNormalizedColumns_SkipsCaseInsensitiveDuplicates() {
+        when(userDao.hasUnnormalizedRows()).thenReturn(true);
+        when(userDao.findUnnormalizedIdsWithDuplicateName()).thenReturn(List.of(2, 3));
+        when(userDao.findUnnormalizedIdsWithDuplicateEmail()).thenReturn(List.of(3));
+        when(userDao.findWithoutNormalizedColumns(0, 10_000)).thenReturn(List.of(
+                new Object[]{1, "Ann", "ann@example.com", null, null},
+                new Object[]{2, "Bob", "bob@example.com", null, null},
+                new Object[]{3, "Eve", "eve@example.com", null, null}));
+
+        assertDoesNotThrow(() -> userService.backfillNormalizedColumns());
+
+        verify(userDao).fillNormalizedNames(List.of(1));
+        verify(userDao).fillNormalizedEmails(List.of(1, 2));
+        verify(userDao, never()).findWithoutNormalizedColumns(3, 10_000);
+    }
+
+    @Test
+    void testBackfillNormalizedColumns_FallsBackToSingleRowsOnConflict() {
+        when(userDao.hasUnnormalizedRows()).thenReturn(true);
+        when(userDao.findWithoutNormalizedColumns(0, 10_000)).thenReturn(List.of(
+                new Object[]{1, "Ann", null, null, null},
+                new Object[]{2, "Bob", null, null, null}));
+        when(userDao.fillNormalizedNames(List.of(1, 2)))
+                .thenThrow(new DataIntegrityViolationException("uk_users_name_normalized"));
+        when(userDao.fillNormalizedNames(List.of(2)))
+                .thenThrow(new DataIntegrityViolationException("uk_users_name_normalized"));
+
+        assertDoesNotThrow(() -> userService.backfillNormalizedColumns());
+
+        verify(userDao).fillNormalizedNames(List.of(1));
+        verify(userDao).fillNormalizedEmails(List.of());
+    }
+
+    @Test
+    void testBackfillNormalizedColumns_SkipsScansWhenAllRowsAreFilled() {
+        when(userDao.hasUnnormalizedRows()).thenReturn(false);
+
+        userService.backfillNormalizedColumns();
+
+        verify(userDao, never()).findUnnormalizedIdsWithDuplicateName();
+        verify(userDao, never()).findUnnormalizedIdsWithDuplicateEmail();
+        verify(userDao, never()).findWithoutNormalizedColumns(anyInt(), anyInt());
+    }
+
     @Test
     void testDeleteUserById_Success() {
-        when(userDao.findById(1)).thenReturn(Optional.of(user));
+        when(userDao.existsById(1)).thenReturn(true);
 
         ResponseEntity<String> response = userService.deleteUserById(1);
 
-        verify(userDao, times(1)).deleteById(1);
+        verify(userDao, times(1)).deleteWithAssociations(1);
+        verify(userDao, never()).findById(1);
         assertEquals(HttpStatus.NO_CONTENT, response.getStatusCode());
     }
 
     @Test
     void testDeleteUserById_RemoveMoviesFromCache() {
-        when(userDao.findById(1)).thenReturn(Optional.of(user));
+        when(userDao.existsById(1)).thenReturn(true);
+        when(userDao.findMovieIdsAndGenresByUserId(1)).thenReturn(List.of(
+                new Object[]{10, "Action"}, new Object[]{11, "Action"}, new Object[]{12, "Drama"}));
 
         ResponseEntity<String> response = userService.deleteUserById(1);
 
-        for (Movie movie : user.getMovies()) {
-            String genre = movie.getGenre();
-
-            String key = "movie_genre_" + genre;
-
-            verify(inMemoryCache, times(1)).remove(key);
-            assertEquals(HttpStatus.NO_CONTENT, response.getStatusCode());
-        }
+        verify(inMemoryCache, times(1)).remove("movie_genre_Action");
+        verify(inMemoryCache, times(1)).remove("movie_genre_Drama");
+        verify(eventPublisher).publishEvent(new UserEvent(UserEvent.Type.DELETED, 1,
+                List.of(10, 11, 12)));
+        assertEquals(HttpStatus.NO_CONTENT, response.getStatusCode());
     }
 
     @Test
     void testDeleteUserById_UserNotFound() {
-        when(userDao.findById(1)).thenReturn(Optional.empty());
+        when(userDao.existsById(1)).thenReturn(false);
 
         UserException exception = assertThrows(UserException.class, () -> userService.deleteUserById(1));
 
         assertEquals("Пользователь не найден: 1", exception.getMessage());
+        verify(userDao, never()).deleteWithAssociations(1);
     }
 
     @Test
@@ -180,6 +254,42 @@ class UserServiceTest {
         assertEquals("updated.email@example.com", updatedUser.getEmail());
     }
 
+    @Test
+    void testUpdateUser_NameTakenByAnotherUser() {
+        UserDto updatedUserDto = new UserDto();
+        updatedUserDto.setName("John Doe");
+        updatedUserDto.setEmail("updated.email@example.com");
+        updatedUserDto.setPassword("newpassword123");
+
+        when(userDao.findById(1)).thenReturn(Optional.of(user));
+        when(userDao.findConflictingNames("john doe", "updated.email@example.com", 1))
+                .thenReturn(List.of("john doe"));
+
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> userService.updateUser(1, updatedUserDto));
+
+        assertEquals("Пользователь с таким именем и почтой уже существует: John Doe",
+                exception.getMessage());
+        verify(userDao, never()).save(any());
+    }
+
+    @Test
+    void testPatchUser_EmailTakenByAnotherUser() {
+        UserDto partialUserDto = new UserDto();
+        partialUserDto.setEmail("Taken@example.com");
+
+        when(userDao.findById(1)).thenReturn(Optional.of(user));
+        when(userDao.findConflictingNames(User.normalize(user.getName()), "taken@example.com",
+                1)).thenReturn(List.of("someone"));
+
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> userService.patchUser(1, partialUserDto));
+
+        assertEquals("Пользователь с таким именем и почтой уже существует: Taken@example.com",
+                exception.getMessage());
+        verify(userDao, never()).save(any());
+    }
+
     @Test
     void testUpdateUser_UserNotFound() {
         UserDto updatedUserDto = new UserDto();
@@ -251,22 +361,12 @@ class UserServiceTest {
     @Test
     void testDeleteUser() {
         Integer userId = 1;
-        User existingUser = new User();
-        existingUser.setName("Jane");
-        existingUser.setEmail("jane@example.com");
-        existingUser.setId(userId);
-
-        when(userDao.findById(userId)).thenReturn(Optional.of(existingUser));
 
-        for (Movie movie : existingUser.getMovies()) {
-            String genre = movie.getGenre();
+        when(userDao.existsById(userId)).thenReturn(true);
 
-            String key = "movie_genre_" + genre;
-
-            verify(userDao, times(1)).deleteById(userId);
-            verify(inMemoryCache, times(1)).remove(key);
-        }
         ResponseEntity<String> result = userService.deleteUserById(userId);
+
+        verify(userDao, times(1)).deleteWithAssociations(userId);
         assertEquals(ResponseEntity.noContent().build(), result);
     }
 }